@@ -0,0 +1,55 @@
+package jwebsec;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <code>EntropyModeBenchmark</code> measures the number of 64-character
+ * alphanumeric tokens per second generated in each {@link RNGUtil.EntropyMode}.
+ * The entropy mode is read once when <code>RNGUtil</code> is initialized, so
+ * each mode runs in its own forked JVM.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntropyModeBenchmark {
+    
+    @Param({"DRBG", "NON_BLOCKING", "STRONG"})
+    public String mode;
+    
+    private RandomTokenGenerator generator;
+    
+    @Setup
+    public void setup() {
+        System.setProperty(RNGUtil.ENTROPY_MODE_PROPERTY, mode);
+        if (RNGUtil.getEntropyMode() != RNGUtil.EntropyMode.valueOf(mode)) {
+            throw new IllegalStateException("entropy mode was not applied");
+        }
+        generator = new RandomTokenGenerator();
+    }
+    
+    @Benchmark
+    public Token createAlphanumericToken() {
+        return generator.createAlphanumericToken(
+                "session", 64, System.currentTimeMillis() + 3600000);
+    }
+}
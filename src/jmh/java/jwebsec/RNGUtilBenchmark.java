@@ -0,0 +1,80 @@
+package jwebsec;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <code>RNGUtilBenchmark</code> measures how the striped pool behind the
+ * <code>RNGUtil</code> convenience methods scales with the number of
+ * calling threads, against a single shared <code>SecureRandom</code>, by
+ * drawing 32 random bytes per operation on 1, 4 and 16 threads.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RNGUtilBenchmark {
+    
+    private final SecureRandom shared =
+            (SecureRandom)RNGUtil.createRandomInstance();
+    
+    @Benchmark
+    @Threads(1)
+    public byte[] pooled1() {
+        return RNGUtil.nextBytes(32);
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public byte[] pooled4() {
+        return RNGUtil.nextBytes(32);
+    }
+    
+    @Benchmark
+    @Threads(16)
+    public byte[] pooled16() {
+        return RNGUtil.nextBytes(32);
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public byte[] shared1() {
+        byte[] bytes = new byte[32];
+        shared.nextBytes(bytes);
+        return bytes;
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public byte[] shared4() {
+        byte[] bytes = new byte[32];
+        shared.nextBytes(bytes);
+        return bytes;
+    }
+    
+    @Benchmark
+    @Threads(16)
+    public byte[] shared16() {
+        byte[] bytes = new byte[32];
+        shared.nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,79 @@
+package jwebsec;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <code>TokenStoreGcBenchmark</code> compares the garbage collection pause
+ * caused by a heap <code>InMemoryTokenStore</code> and an off-heap
+ * <code>MappedTokenStore</code> holding the same number of tokens, measured
+ * as the time of a full, stop-the-world collection of a heap which holds
+ * nothing else of note.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-XX:+UseG1GC"})
+public class TokenStoreGcBenchmark {
+    
+    @Param({"heap", "mapped"})
+    public String store;
+    
+    @Param({"1000000"})
+    public int tokens;
+    
+    private TokenStore tokenStore;
+    private Path path;
+    
+    @Setup
+    public void setup() throws IOException {
+        if (store.equals("heap")) {
+            tokenStore = new InMemoryTokenStore();
+        } else {
+            path = Files.createTempFile("jwebsec", ".db");
+            Files.delete(path);
+            tokenStore = new MappedTokenStore(path, tokens);
+        }
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < tokens; i++) {
+            tokenStore.put(new Token("session",
+                    String.format("%032x", i), now, now + 86400000));
+        }
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        tokenStore.close();
+        if (path != null) {
+            Files.delete(path);
+        }
+    }
+    
+    @Benchmark
+    public int fullGc() {
+        System.gc();
+        return tokenStore.size();
+    }
+}
@@ -0,0 +1,63 @@
+package jwebsec.crypto;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <code>PBKDF2HashProviderBenchmark</code> measures the time per hash of
+ * the JRE and pure-Java engines, at one iteration, where the fixed cost of
+ * each hash dominates, and at the default iteration count.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class PBKDF2HashProviderBenchmark {
+    
+    @Param({"1", "65536"})
+    private int iterations;
+    
+    private final PBKDF2HashProvider jce = new PBKDF2HashProvider();
+    private final PBKDF2HashProvider java = new PBKDF2HashProvider();
+    private final byte[] salt = new byte[16];
+    private final byte[] out = new byte[PBKDF2HashProvider.HASH_LENGTH];
+    
+    @Setup
+    public void setup() {
+        jce.setIterationCount(iterations);
+        java.setIterationCount(iterations);
+        java.setEngine(PBKDF2HashProvider.Engine.JAVA);
+    }
+    
+    @Benchmark
+    public byte[] jce() throws HashException {
+        jce.hash("correct horse".toCharArray(), salt, out, 0);
+        return out;
+    }
+    
+    @Benchmark
+    public byte[] pureJava() throws HashException {
+        java.hash("correct horse".toCharArray(), salt, out, 0);
+        return out;
+    }
+}
@@ -1,23 +1,66 @@
 package jwebsec;
 
 import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import static jwebsec.JavaUtils.nullSafeCompare;
 import static jwebsec.JavaUtils.nullSafeEquals;
 
 /**
  * <code>HttpClient</code> identifies a remote HTTP client.
  * <p>
+ *   The IP address is parsed once into a packed 128-bit {@link IPAddress}
+ *   value, so different textual forms of the same address are equal, and
+ *   matching, hashing and ordering work on numbers. The address text is only
+ *   formatted when {@link #getIpAddress()} is called. An address which
+ *   cannot be parsed is kept as text, and a client may have no address at
+ *   all; neither is ever treated as a numeric address. Such clients sort
+ *   after clients with numeric addresses, and clients with no address sort
+ *   last.
+ * </p>
+ * <p>
+ *   The <code>User-Agent</code> header value is replaced with its canonical
+ *   instance from {@link UserAgentDictionary}, so clients with the same
+ *   value share one string.
+ * </p>
+ * <p>
+ *   The fingerprint token is accessed without locking, and can be set
+ *   atomically with {@link #setFingerprintIfAbsent(Token)} and
+ *   {@link #replaceFingerprint(Token, Token)}, so fingerprint checks never
+ *   block or pin virtual threads.
+ * </p>
+ * <p>
  *   &copy;2025 jWebSec. All rights reserved.
  * </p>
  * 
- * @version 0.1.1
+ * @version 0.4.0
  * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
  */
 public final class HttpClient implements Comparable<HttpClient>, Serializable {
     
-    private static final long serialVersionUID = 202502221500L;
+    private static final long serialVersionUID = 202610181300L;
+    
+    /* Atomic access to the fingerprint field. */
+    private static final VarHandle FINGERPRINT;
+    
+    static {
+        try {
+            FINGERPRINT = MethodHandles.lookup().findVarHandle(
+                    HttpClient.class, "fingerprint", Token.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    
+    private final long ipHigh;
+    private final long ipLow;
+    
+    /* True if the address was parsed into ipHigh and ipLow. */
+    private final boolean parsed;
+    
+    /* Address text if it cannot be parsed, otherwise null. */
+    private final String ipText;
     
-    private final String ipAddress;
     private final String userAgent;
     private final long initTime = System.currentTimeMillis();
     private volatile Token fingerprint = null;
@@ -25,21 +68,56 @@ public final class HttpClient implements Comparable<HttpClient>, Serializable {
     /**
      * Public constructor.
      * 
-     * @param ipAddress the client's IP address
+     * @param ipAddress the client's IP address, may be null
      * @param userAgent the client's user-agent header value
      */
     public HttpClient(String ipAddress, String userAgent) {
-        this.ipAddress = ipAddress;
-        this.userAgent = userAgent;
+        IPAddress address = IPAddress.tryParse(ipAddress);
+        if (address != null) {
+            ipHigh = address.getHigh();
+            ipLow = address.getLow();
+            parsed = true;
+            ipText = null;
+        } else {
+            ipHigh = ipLow = 0;
+            parsed = false;
+            ipText = ipAddress;
+        }
+        this.userAgent = UserAgentDictionary.intern(userAgent);
     }
     
     /**
-     * Get this client's IP address.
+     * Public constructor.
+     * 
+     * @param address the client's IP address
+     * @param userAgent the client's user-agent header value
+     */
+    public HttpClient(IPAddress address, String userAgent) {
+        ipHigh = address.getHigh();
+        ipLow = address.getLow();
+        parsed = true;
+        ipText = null;
+        this.userAgent = UserAgentDictionary.intern(userAgent);
+    }
+    
+    /**
+     * Get this client's IP address. Parsed addresses are returned in
+     * canonical form.
      * 
-     * @return remote IP address
+     * @return remote IP address, or null if the client has no address
      */
     public String getIpAddress() {
-        return ipAddress;
+        return parsed ? IPAddress.toString(ipHigh, ipLow) : ipText;
+    }
+    
+    /**
+     * Get this client's parsed IP address, or null if the address could not be
+     * parsed or the client has no address.
+     * 
+     * @return remote IP address or null
+     */
+    public IPAddress getAddress() {
+        return parsed ? new IPAddress(ipHigh, ipLow) : null;
     }
     
     /**
@@ -65,7 +143,7 @@ public final class HttpClient implements Comparable<HttpClient>, Serializable {
      * 
      * @return the fingerprint token or null
      */
-    synchronized public Token getFingerprint() {
+    public Token getFingerprint() {
         return fingerprint;
     }
     
@@ -74,10 +152,32 @@ public final class HttpClient implements Comparable<HttpClient>, Serializable {
      * 
      * @param t  the fingerprint token
      */
-    synchronized public void setFingerprint(Token t) {
+    public void setFingerprint(Token t) {
         fingerprint = t;
     }
     
+    /**
+     * Set this client's fingerprint token if it has not already been set.
+     * 
+     * @param t the fingerprint token
+     * @return true if the fingerprint was set
+     */
+    public boolean setFingerprintIfAbsent(Token t) {
+        return FINGERPRINT.compareAndSet(this, null, t);
+    }
+    
+    /**
+     * Replace this client's fingerprint token, only if the current
+     * fingerprint is the expected token instance.
+     * 
+     * @param expected the expected current fingerprint token, or null
+     * @param t the new fingerprint token
+     * @return true if the fingerprint was replaced
+     */
+    public boolean replaceFingerprint(Token expected, Token t) {
+        return FINGERPRINT.compareAndSet(this, expected, t);
+    }
+    
     /**
      * Returns true if this client matches the specified IP address and
      * User-Agent header value. The User-Agent header may be null.
@@ -88,7 +188,26 @@ public final class HttpClient implements Comparable<HttpClient>, Serializable {
      *         User-Agent header value
      */
     public boolean matches(String ipAddress, String userAgent) {
-        return this.ipAddress.equals(ipAddress)
+        if (!parsed) {
+            return nullSafeEquals(ipText, ipAddress)
+                    && nullSafeEquals(this.userAgent, userAgent);
+        }
+        return IPAddress.matches(ipAddress, ipHigh, ipLow)
+                && nullSafeEquals(this.userAgent, userAgent);
+    }
+    
+    /**
+     * Returns true if this client matches the specified IP address and
+     * User-Agent header value. The User-Agent header may be null.
+     * 
+     * @param address remote IP address
+     * @param userAgent User-Agent header value
+     * @return true if this client matches the specified IP address and
+     *         User-Agent header value
+     */
+    public boolean matches(IPAddress address, String userAgent) {
+        return address != null && parsed
+                && ipHigh == address.getHigh() && ipLow == address.getLow()
                 && nullSafeEquals(this.userAgent, userAgent);
     }
     
@@ -96,7 +215,9 @@ public final class HttpClient implements Comparable<HttpClient>, Serializable {
     public boolean equals(final Object ref) {
         boolean eq = this == ref;
         if (!eq && ref instanceof HttpClient client) {
-            eq = ipAddress.equals(client.ipAddress)
+            eq = parsed == client.parsed
+                    && ipHigh == client.ipHigh && ipLow == client.ipLow
+                    && nullSafeEquals(ipText, client.ipText)
                     && nullSafeEquals(userAgent, client.userAgent)
                     && nullSafeEquals(fingerprint, client.fingerprint);
         }
@@ -105,7 +226,8 @@ public final class HttpClient implements Comparable<HttpClient>, Serializable {
     
     @Override
     public int hashCode() {
-        return 31 * ipAddress.hashCode()
+        return 31 * (parsed ? IPAddress.hashCode(ipHigh, ipLow) :
+                        ipText == null ? -1 : ipText.hashCode())
                 + 29 * (userAgent == null ? -1 : userAgent.hashCode())
                 + 17 * (fingerprint == null ? -1 : fingerprint.hashCode());
     }
@@ -117,11 +239,34 @@ public final class HttpClient implements Comparable<HttpClient>, Serializable {
             result = 0;
         } else if (client == null) {
             result = -1;
-        } else if ((result = ipAddress.compareTo(client.ipAddress)) == 0
+        } else if ((result = compareAddress(client)) == 0
                 && (result =
                         nullSafeCompare(userAgent, client.userAgent)) == 0) {
             result = nullSafeCompare(fingerprint, client.fingerprint);
         }
         return result;
     }
+    
+    /**
+     * Compare this client's IP address with another client's IP address.
+     * Parsed addresses are ordered numerically, before unparsed addresses,
+     * and missing addresses are ordered last.
+     * 
+     * @param client the other client
+     * @return the comparison result
+     */
+    private int compareAddress(final HttpClient client) {
+        if (parsed) {
+            return client.parsed ?
+                    IPAddress.compare(
+                            ipHigh, ipLow, client.ipHigh, client.ipLow) :
+                    -1;
+        }
+        if (client.parsed) {
+            return 1;
+        } else if (ipText == null || client.ipText == null) {
+            return ipText == client.ipText ? 0 : ipText == null ? 1 : -1;
+        }
+        return ipText.compareTo(client.ipText);
+    }
 }
@@ -0,0 +1,363 @@
+package jwebsec;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <code>HttpClientRegistry</code> maps session IDs or fingerprint token
+ * values to the canonical <code>HttpClient</code> bound to them, so that
+ * session hijacking can be detected with a single hash probe per request
+ * instead of building and comparing a new <code>HttpClient</code>.
+ * <p>
+ *   Registered clients hold their IP address in packed binary form and share
+ *   User-Agent strings through {@link UserAgentDictionary}, so each check
+ *   compares numbers and a canonical string. Callers which already hold the
+ *   parsed client address, such as the address resolved once per request by
+ *   <code>jwebsec.filters.ClientAddressResolver</code>, should pass it to
+ *   {@link #check(String, IPAddress, String)} so that the address text is
+ *   not parsed again for each check. The registry
+ *   is bounded: when it grows beyond its maximum size the least recently
+ *   used entries are evicted in a batch, using an access time cutoff
+ *   estimated from a uniform random sample of entries (approximate LRU), so
+ *   no shared access order has to be maintained on the request path. Each
+ *   batch evicts at most the excess entries plus 1/8 of the maximum size.
+ * </p>
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.2
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public final class HttpClientRegistry {
+    
+    /* Default maximum number of registered clients (100,000). */
+    public static final int DEFAULT_MAX_SIZE = 100000;
+    
+    /* Number of entries sampled to estimate the eviction cutoff (64). */
+    private static final int EVICTION_SAMPLE_SIZE = 64;
+    
+    /* Fraction of entries evicted when the registry is full (1/8). */
+    private static final int EVICTION_RATIO = 8;
+    
+    /**
+     * <code>Verdict</code> is the result of checking a request against the
+     * registered client.
+     */
+    public static enum Verdict {
+        
+        /* The request matches the registered client. */
+        MATCH,
+        
+        /* The request does not match the registered client. */
+        MISMATCH,
+        
+        /* No client is registered for the key. */
+        UNKNOWN
+    }
+    
+    /**
+     * <code>Entry</code> is a registered client and its last access time.
+     */
+    private static final class Entry {
+        
+        private final HttpClient client;
+        private volatile long accessTime = System.nanoTime();
+        
+        private Entry(HttpClient client) {
+            this.client = client;
+        }
+    }
+    
+    private final Map<String, Entry> CLIENTS = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final int maxSize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder mismatches = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    
+    /**
+     * Default <code>HttpClientRegistry</code> constructor.
+     */
+    public HttpClientRegistry() {
+        this(DEFAULT_MAX_SIZE);
+    }
+    
+    /**
+     * Construct a new <code>HttpClientRegistry</code> with the specified
+     * maximum size.
+     * 
+     * @param maxSize the maximum number of registered clients
+     */
+    public HttpClientRegistry(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("invalid maximum size");
+        }
+        this.maxSize = maxSize;
+    }
+    
+    /**
+     * Register the canonical client for a session ID or fingerprint, replacing
+     * any client already registered for the key.
+     * 
+     * @param key the session ID or fingerprint token value
+     * @param ipAddress the client's IP address
+     * @param userAgent the client's user-agent header value
+     * @return the registered client
+     */
+    public HttpClient register(String key, String ipAddress, String userAgent) {
+        return put(key, new HttpClient(ipAddress, userAgent));
+    }
+    
+    /**
+     * Register the canonical client for a session ID or fingerprint, replacing
+     * any client already registered for the key.
+     * 
+     * @param key the session ID or fingerprint token value
+     * @param address the client's parsed IP address
+     * @param userAgent the client's user-agent header value
+     * @return the registered client
+     */
+    public HttpClient register(
+            String key, IPAddress address, String userAgent) {
+        return put(key, new HttpClient(address, userAgent));
+    }
+    
+    /**
+     * Add a client to the registry, evicting entries if it is full.
+     * 
+     * @param key the session ID or fingerprint token value
+     * @param client the client
+     * @return the client
+     */
+    private HttpClient put(String key, HttpClient client) {
+        CLIENTS.put(key, new Entry(client));
+        if (CLIENTS.size() > maxSize) {
+            evict();
+        }
+        return client;
+    }
+    
+    /**
+     * Register a client for its fingerprint token value. The client must have
+     * a fingerprint.
+     * 
+     * @param client the client
+     * @return the registered client
+     */
+    public HttpClient register(HttpClient client) {
+        Token fingerprint = client.getFingerprint();
+        if (fingerprint == null) {
+            throw new IllegalArgumentException("client has no fingerprint");
+        }
+        HttpClient registered = register(fingerprint.getValue(),
+                client.getIpAddress(), client.getUserAgent());
+        registered.setFingerprint(fingerprint);
+        return registered;
+    }
+    
+    /**
+     * Get the client registered for a session ID or fingerprint, or null.
+     * 
+     * @param key the session ID or fingerprint token value
+     * @return the registered client or null
+     */
+    public HttpClient get(String key) {
+        Entry e = key == null ? null : CLIENTS.get(key);
+        return e == null ? null : e.client;
+    }
+    
+    /**
+     * Check a request's IP address and User-Agent header value against the
+     * client registered for a session ID or fingerprint. The address text is
+     * parsed on each call; use {@link #check(String, IPAddress, String)} when
+     * the parsed address is available.
+     * 
+     * @param key the session ID or fingerprint token value
+     * @param ipAddress the request's remote IP address
+     * @param userAgent the request's User-Agent header value
+     * @return the verdict
+     */
+    public Verdict check(String key, String ipAddress, String userAgent) {
+        Entry e = access(key);
+        if (e == null) {
+            return Verdict.UNKNOWN;
+        }
+        return verdict(e.client.matches(ipAddress, userAgent));
+    }
+    
+    /**
+     * Check a request's parsed IP address and User-Agent header value against
+     * the client registered for a session ID or fingerprint. A null address
+     * matches no client.
+     * 
+     * @param key the session ID or fingerprint token value
+     * @param address the request's parsed client address, may be null
+     * @param userAgent the request's User-Agent header value
+     * @return the verdict
+     */
+    public Verdict check(String key, IPAddress address, String userAgent) {
+        Entry e = access(key);
+        if (e == null) {
+            return Verdict.UNKNOWN;
+        }
+        return verdict(e.client.matches(address, userAgent));
+    }
+    
+    /**
+     * Get the entry for a key and record its access, or count a miss.
+     * 
+     * @param key the session ID or fingerprint token value, may be null
+     * @return the entry or null
+     */
+    private Entry access(String key) {
+        Entry e = key == null ? null : CLIENTS.get(key);
+        if (e == null) {
+            misses.increment();
+        } else {
+            e.accessTime = System.nanoTime();
+        }
+        return e;
+    }
+    
+    /**
+     * Count a hit or mismatch and return its verdict.
+     * 
+     * @param matches true if the request matches the registered client
+     * @return the verdict
+     */
+    private Verdict verdict(boolean matches) {
+        if (matches) {
+            hits.increment();
+            return Verdict.MATCH;
+        }
+        mismatches.increment();
+        return Verdict.MISMATCH;
+    }
+    
+    /**
+     * Remove the client registered for a session ID or fingerprint.
+     * 
+     * @param key the session ID or fingerprint token value
+     * @return true if a client was removed
+     */
+    public boolean remove(String key) {
+        return key != null && CLIENTS.remove(key) != null;
+    }
+    
+    /**
+     * Get the number of registered clients.
+     * 
+     * @return the number of registered clients
+     */
+    public int size() {
+        return CLIENTS.size();
+    }
+    
+    /**
+     * Get the maximum number of registered clients.
+     * 
+     * @return the maximum size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+    
+    /**
+     * Get the number of checks which matched the registered client.
+     * 
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+    
+    /**
+     * Get the number of checks which did not match the registered client.
+     * 
+     * @return the mismatch count
+     */
+    public long getMismatchCount() {
+        return mismatches.sum();
+    }
+    
+    /**
+     * Get the number of checks for which no client was registered.
+     * 
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+    
+    /**
+     * Get the number of clients evicted because the registry was full.
+     * 
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+    
+    /**
+     * Remove all registered clients.
+     */
+    public void clear() {
+        CLIENTS.clear();
+    }
+    
+    /**
+     * Evict the least recently used entries. The access time cutoff is the
+     * oldest 1/8 of a uniform random sample of entries, taken by reservoir
+     * sampling over all entries, so about 1/8 of the registry is evicted;
+     * at most the excess entries plus 1/8 of the maximum size are evicted.
+     * Only one thread evicts at a time.
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            long[] sample = new long[EVICTION_SAMPLE_SIZE];
+            int n = 0;
+            long seen = 0;
+            Iterator<Entry> it = CLIENTS.values().iterator();
+            while (it.hasNext()) {
+                final long accessTime = it.next().accessTime;
+                if (n < sample.length) {
+                    sample[n++] = accessTime;
+                } else {
+                    final long i = random.nextLong(seen + 1);
+                    if (i < sample.length) {
+                        sample[(int)i] = accessTime;
+                    }
+                }
+                seen++;
+            }
+            if (n == 0) {
+                return;
+            }
+            Arrays.sort(sample, 0, n);
+            final long cutoff = sample[(n - 1) / EVICTION_RATIO];
+            final long limit = seen - maxSize + maxSize / EVICTION_RATIO;
+            int removed = 0;
+            it = CLIENTS.values().iterator();
+            while (removed < limit && it.hasNext()) {
+                if (it.next().accessTime - cutoff <= 0) {
+                    it.remove();
+                    removed++;
+                }
+            }
+            evictions.add(removed);
+        } finally {
+            evicting.set(false);
+        }
+    }
+}
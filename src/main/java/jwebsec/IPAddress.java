@@ -0,0 +1,436 @@
+package jwebsec;
+
+import java.io.Serializable;
+
+/**
+ * <code>IPAddress</code> is an immutable IPv4 or IPv6 address in packed
+ * binary form, held as two longs in network byte order. IPv4 addresses are
+ * stored as IPv4-mapped IPv6 addresses (<code>::ffff:a.b.c.d</code>), so
+ * every address can be compared, hashed and sorted numerically in a single
+ * 128-bit address space, and different textual forms of the same address,
+ * such as <code>2001:DB8:0::1</code> and <code>2001:db8::1</code>, parse to
+ * the same value.
+ * <p>
+ *   Addresses are parsed without DNS lookups. IPv4 addresses must be in
+ *   dotted-quad form with no leading zeros, and IPv6 zone IDs are not
+ *   supported. {@link #toString()} formats IPv4 addresses in dotted-quad form
+ *   and IPv6 addresses in the canonical form of RFC 5952.
+ * </p>
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.1
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public final class IPAddress implements Comparable<IPAddress>, Serializable {
+    
+    private static final long serialVersionUID = 202610181300L;
+    
+    /* High 64 bits of an IPv4-mapped address. */
+    private static final long IPV4_MAPPED_HIGH = 0;
+    
+    /* Low 64 bits of an IPv4-mapped address, without the IPv4 address. */
+    private static final long IPV4_MAPPED_LOW = 0xFFFF00000000L;
+    
+    private final long high;
+    private final long low;
+    
+    /**
+     * Construct a new <code>IPAddress</code> from its 128-bit value.
+     * 
+     * @param high the high 64 bits
+     * @param low the low 64 bits
+     */
+    public IPAddress(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+    
+    /**
+     * Get the <code>IPAddress</code> for a 32-bit IPv4 address.
+     * 
+     * @param ipv4 the IPv4 address
+     * @return the address
+     */
+    public static IPAddress ofIPv4(int ipv4) {
+        return new IPAddress(IPV4_MAPPED_HIGH, mappedLow(ipv4));
+    }
+    
+    /**
+     * Parse an IPv4 or IPv6 address.
+     * 
+     * @param s the address text
+     * @return the address
+     * @throws IllegalArgumentException if the text is not a valid address
+     */
+    public static IPAddress parse(String s) {
+        IPAddress address = tryParse(s);
+        if (address == null) {
+            throw new IllegalArgumentException("invalid IP address: " + s);
+        }
+        return address;
+    }
+    
+    /**
+     * Parse an IPv4 or IPv6 address, returning null if the text is not a valid
+     * address.
+     * 
+     * @param s the address text, may be null
+     * @return the address or null
+     */
+    public static IPAddress tryParse(String s) {
+        return s == null ? null : tryParse(s, 0, s.length());
+    }
+    
+    /**
+     * Parse an IPv4 or IPv6 address from a region of a string, returning null
+     * if the region is not a valid address.
+     * 
+     * @param s the text
+     * @param start the start index, inclusive
+     * @param end the end index, exclusive
+     * @return the address or null
+     */
+    public static IPAddress tryParse(String s, int start, int end) {
+        if (start < 0 || end > s.length() || start >= end
+                || end - start > 45) {
+            return null;
+        }
+        final int colon = s.indexOf(':', start);
+        if (colon < 0 || colon >= end) {
+            long ipv4 = parseIPv4(s, start, end);
+            return ipv4 < 0 ? null : ofIPv4((int)ipv4);
+        }
+        return parseIPv6(s, start, end);
+    }
+    
+    /**
+     * Returns true if the text is a valid address equal to the specified
+     * 128-bit address. IPv4 addresses are compared without allocation.
+     * 
+     * @param s the address text, may be null
+     * @param high the high 64 bits
+     * @param low the low 64 bits
+     * @return true if the text is an equal address
+     */
+    static boolean matches(String s, long high, long low) {
+        if (s == null || s.isEmpty() || s.length() > 45) {
+            return false;
+        }
+        if (s.indexOf(':') < 0) {
+            long ipv4 = parseIPv4(s, 0, s.length());
+            return ipv4 >= 0
+                    && high == IPV4_MAPPED_HIGH && low == mappedLow((int)ipv4);
+        }
+        IPAddress address = parseIPv6(s, 0, s.length());
+        return address != null && high == address.high && low == address.low;
+    }
+    
+    /**
+     * Get the low 64 bits of the IPv4-mapped address for an IPv4 address.
+     * 
+     * @param ipv4 the IPv4 address
+     * @return the low 64 bits
+     */
+    private static long mappedLow(int ipv4) {
+        return IPV4_MAPPED_LOW | (ipv4 & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * Parse a dotted-quad IPv4 address.
+     * 
+     * @param s the text
+     * @param start the start index, inclusive
+     * @param end the end index, exclusive
+     * @return the unsigned IPv4 address, or -1 if the text is invalid
+     */
+    private static long parseIPv4(String s, int start, int end) {
+        long address = 0;
+        int parts = 0;
+        int i = start;
+        while (parts < 4) {
+            int value = 0;
+            int digits = 0;
+            while (i < end) {
+                char c = s.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                if (digits > 0 && value == 0) {
+                    return -1;
+                }
+                value = value * 10 + (c - '0');
+                if (++digits > 3 || value > 255) {
+                    return -1;
+                }
+                i++;
+            }
+            if (digits == 0) {
+                return -1;
+            }
+            address = address << 8 | value;
+            if (++parts < 4) {
+                if (i >= end || s.charAt(i) != '.') {
+                    return -1;
+                }
+                i++;
+            }
+        }
+        return i == end ? address : -1;
+    }
+    
+    /**
+     * Parse an IPv6 address.
+     * 
+     * @param s the text
+     * @param start the start index, inclusive
+     * @param end the end index, exclusive
+     * @return the address, or null if the text is invalid
+     */
+    private static IPAddress parseIPv6(String s, int start, int end) {
+        final int[] groups = new int[8];
+        int count = 0;
+        int compressAt = -1;
+        int i = start;
+        if (end - start >= 2 && s.startsWith("::", start)) {
+            compressAt = 0;
+            i += 2;
+        } else if (s.charAt(start) == ':') {
+            return null;
+        }
+        while (i < end) {
+            if (count == 8) {
+                return null;
+            }
+            int j = i;
+            int value = 0;
+            while (j < end && j - i < 5) {
+                int d = hexDigit(s.charAt(j));
+                if (d < 0) {
+                    break;
+                }
+                value = value << 4 | d;
+                j++;
+            }
+            if (j < end && s.charAt(j) == '.') {
+                // embedded IPv4 address in the last two groups
+                if (count > 6) {
+                    return null;
+                }
+                long ipv4 = parseIPv4(s, i, end);
+                if (ipv4 < 0) {
+                    return null;
+                }
+                groups[count++] = (int)(ipv4 >>> 16);
+                groups[count++] = (int)ipv4 & 0xFFFF;
+                i = end;
+                break;
+            }
+            if (j == i || j - i > 4) {
+                return null;
+            }
+            groups[count++] = value;
+            i = j;
+            if (i < end) {
+                if (s.charAt(i) != ':' || ++i == end) {
+                    return null;
+                }
+                if (s.charAt(i) == ':') {
+                    if (compressAt >= 0) {
+                        return null;
+                    }
+                    compressAt = count;
+                    i++;
+                }
+            }
+        }
+        if (compressAt >= 0) {
+            if (count == 8) {
+                return null;
+            }
+            int shift = 8 - count;
+            System.arraycopy(groups, compressAt,
+                    groups, compressAt + shift, count - compressAt);
+            for (int k = compressAt; k < compressAt + shift; k++) {
+                groups[k] = 0;
+            }
+        } else if (count != 8) {
+            return null;
+        }
+        long high = 0;
+        long low = 0;
+        for (int k = 0; k < 4; k++) {
+            high = high << 16 | groups[k];
+            low = low << 16 | groups[k + 4];
+        }
+        return new IPAddress(high, low);
+    }
+    
+    /**
+     * Get the value of an ASCII hexadecimal digit. Unlike
+     * <code>Character.digit</code>, other Unicode digits and letters, such as
+     * fullwidth digits, are not accepted.
+     * 
+     * @param c the character
+     * @return the digit value, or -1 if the character is not a hex digit
+     */
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+    
+    /**
+     * Get the high 64 bits of this address.
+     * 
+     * @return the high 64 bits
+     */
+    public long getHigh() {
+        return high;
+    }
+    
+    /**
+     * Get the low 64 bits of this address.
+     * 
+     * @return the low 64 bits
+     */
+    public long getLow() {
+        return low;
+    }
+    
+    /**
+     * Returns true if this is an IPv4 address, i.e., an IPv4-mapped IPv6
+     * address.
+     * 
+     * @return true if this is an IPv4 address
+     */
+    public boolean isIPv4() {
+        return isIPv4(high, low);
+    }
+    
+    /**
+     * Get the prefix which identifies the client of this address: the address
+     * itself if it is an IPv4 address, otherwise its /64 prefix, as a single
+     * IPv6 host usually controls a whole /64.
+     * 
+     * @return the client prefix
+     */
+    IPAddress getClientPrefix() {
+        return low == 0 || isIPv4() ? this : new IPAddress(high, 0);
+    }
+    
+    /**
+     * Returns true if a 128-bit address is an IPv4-mapped address.
+     * 
+     * @param high the high 64 bits
+     * @param low the low 64 bits
+     * @return true if the address is an IPv4 address
+     */
+    static boolean isIPv4(long high, long low) {
+        return high == IPV4_MAPPED_HIGH && (low >>> 32) == 0xFFFF;
+    }
+    
+    /**
+     * Compare two 128-bit addresses as unsigned numbers.
+     * 
+     * @param high1 the high 64 bits of the first address
+     * @param low1 the low 64 bits of the first address
+     * @param high2 the high 64 bits of the second address
+     * @param low2 the low 64 bits of the second address
+     * @return the comparison result
+     */
+    static int compare(long high1, long low1, long high2, long low2) {
+        int result = Long.compareUnsigned(high1, high2);
+        return result != 0 ? result : Long.compareUnsigned(low1, low2);
+    }
+    
+    /**
+     * Compute the hash code of a 128-bit address.
+     * 
+     * @param high the high 64 bits
+     * @param low the low 64 bits
+     * @return hash code
+     */
+    static int hashCode(long high, long low) {
+        return 31 * Long.hashCode(high) + Long.hashCode(low);
+    }
+    
+    /**
+     * Format a 128-bit address.
+     * 
+     * @param high the high 64 bits
+     * @param low the low 64 bits
+     * @return the address text
+     */
+    static String toString(long high, long low) {
+        StringBuilder sb = new StringBuilder(39);
+        if (isIPv4(high, low)) {
+            sb.append(low >>> 24 & 0xFF).append('.')
+                    .append(low >>> 16 & 0xFF).append('.')
+                    .append(low >>> 8 & 0xFF).append('.')
+                    .append(low & 0xFF);
+            return sb.toString();
+        }
+        int[] groups = new int[8];
+        for (int k = 0; k < 4; k++) {
+            groups[k] = (int)(high >>> 48 - 16 * k) & 0xFFFF;
+            groups[k + 4] = (int)(low >>> 48 - 16 * k) & 0xFFFF;
+        }
+        // RFC 5952: compress the first longest run of two or more zeros
+        int bestStart = -1;
+        int bestLength = 1;
+        for (int k = 0; k < 8;) {
+            if (groups[k] != 0) {
+                k++;
+                continue;
+            }
+            int start = k;
+            while (k < 8 && groups[k] == 0) {
+                k++;
+            }
+            if (k - start > bestLength) {
+                bestStart = start;
+                bestLength = k - start;
+            }
+        }
+        for (int k = 0; k < 8; k++) {
+            if (k == bestStart) {
+                sb.append("::");
+                k += bestLength - 1;
+                continue;
+            }
+            if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ':') {
+                sb.append(':');
+            }
+            sb.append(Integer.toHexString(groups[k]));
+        }
+        return sb.toString();
+    }
+    
+    @Override
+    public boolean equals(final Object ref) {
+        return this == ref || (ref instanceof IPAddress address
+                && high == address.high && low == address.low);
+    }
+    
+    @Override
+    public int hashCode() {
+        return hashCode(high, low);
+    }
+    
+    @Override
+    public int compareTo(final IPAddress address) {
+        return compare(high, low, address.high, address.low);
+    }
+    
+    @Override
+    public String toString() {
+        return toString(high, low);
+    }
+}
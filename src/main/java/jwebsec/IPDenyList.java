@@ -0,0 +1,349 @@
+package jwebsec;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <code>IPDenyList</code> is a read-only set of IPv4 and IPv6 address ranges
+ * held in a precompiled, memory-mapped file, for deny lists with millions of
+ * entries such as threat intelligence feeds.
+ * <p>
+ *   The file holds sorted, non-overlapping, inclusive address ranges as
+ *   fixed-size records in the 128-bit address space of {@link IPAddress}.
+ *   Lookups binary search a small sparse index of every 256th record on the
+ *   heap and then the mapped records in place, so the list is never copied
+ *   onto the heap. The records start on a page boundary after a 4 KiB
+ *   header, so the 8 KiB of records under each index entry span exactly two
+ *   4 KiB pages, and each lookup touches at most two pages of the file.
+ *   Pages are read by the operating system on demand and shared between
+ *   processes mapping the same file. An open list is immutable and
+ *   thread-safe, and a new list can be opened and swapped in while the old
+ *   one is still in use.
+ * </p>
+ * <p>
+ *   Files are created with {@link #compile(Iterable, Path)} from rules in the
+ *   same forms as {@link IPPrefixTrie}: single addresses, CIDR blocks and
+ *   inclusive address ranges. Overlapping and adjacent ranges are merged.
+ *   The file is written to a temporary file and moved into place, so readers
+ *   never see a partially written file.
+ * </p>
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public final class IPDenyList {
+    
+    /* File magic number: &quot;JWDL&quot; */
+    private static final int MAGIC = 0x4A57444C;
+    
+    /* File format version (2). */
+    private static final int VERSION = 2;
+    
+    /* File header length in bytes (4,096), so records are page aligned. */
+    private static final int HEADER_LENGTH = 4096;
+    
+    /* Record length in bytes (32): start and end address. */
+    private static final int RECORD_LENGTH = 32;
+    
+    /* Records per sparse index entry (256, two 4 KiB pages). */
+    private static final int INDEX_STRIDE = 256;
+    
+    /* Maximum number of records in one mapping. */
+    private static final int MAX_RECORDS =
+            (Integer.MAX_VALUE - HEADER_LENGTH) / RECORD_LENGTH;
+    
+    /**
+     * <code>Range</code> is an inclusive address range used while compiling.
+     */
+    private static final class Range {
+        
+        private final long startHigh;
+        private final long startLow;
+        private long endHigh;
+        private long endLow;
+        
+        private Range(
+                long startHigh, long startLow, long endHigh, long endLow) {
+            this.startHigh = startHigh;
+            this.startLow = startLow;
+            this.endHigh = endHigh;
+            this.endLow = endLow;
+        }
+    }
+    
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int size;
+    
+    /* Start address of every INDEX_STRIDE-th record, two longs each. */
+    private final long[] index;
+    
+    /**
+     * Construct a new <code>IPDenyList</code>.
+     * 
+     * @param path the file path
+     * @param buffer the mapped file
+     * @param size the number of records
+     */
+    private IPDenyList(Path path, MappedByteBuffer buffer, int size) {
+        this.path = path;
+        this.buffer = buffer;
+        this.size = size;
+        index = new long[2 * ((size + INDEX_STRIDE - 1) / INDEX_STRIDE)];
+        for (int i = 0; i < index.length; i += 2) {
+            final int offset =
+                    HEADER_LENGTH + (i >>> 1) * INDEX_STRIDE * RECORD_LENGTH;
+            index[i] = buffer.getLong(offset);
+            index[i + 1] = buffer.getLong(offset + 8);
+        }
+    }
+    
+    /**
+     * Open a deny list file created by {@link #compile(Iterable, Path)}.
+     * 
+     * @param path the file path
+     * @return the deny list
+     * @throws IOException if the file cannot be read or is invalid
+     */
+    public static IPDenyList open(Path path) throws IOException {
+        try (FileChannel channel =
+                FileChannel.open(path, StandardOpenOption.READ)) {
+            final long length = channel.size();
+            if (length < HEADER_LENGTH) {
+                throw new IOException("invalid deny list file: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0,
+                    Math.min(length, Integer.MAX_VALUE));
+            final long count = buffer.getLong(8);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || count < 0 || count > MAX_RECORDS
+                    || length != HEADER_LENGTH + count * RECORD_LENGTH) {
+                throw new IOException("invalid deny list file: " + path);
+            }
+            return new IPDenyList(path, buffer, (int)count);
+        }
+    }
+    
+    /**
+     * Compile deny list rules into a file, replacing any existing file.
+     * 
+     * @param rules the rules
+     * @param path the file path
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if a rule is invalid
+     */
+    public static void compile(Iterable<String> rules, Path path)
+            throws IOException {
+        List<Range> ranges = new ArrayList<>();
+        for (String rule : rules) {
+            ranges.add(parseRule(rule));
+        }
+        ranges.sort((a, b) -> IPAddress.compare(
+                a.startHigh, a.startLow, b.startHigh, b.startLow));
+        // merge overlapping and adjacent ranges in place
+        int n = 0;
+        for (Range r : ranges) {
+            Range last = n == 0 ? null : ranges.get(n - 1);
+            if (last != null && adjoins(last, r)) {
+                if (IPAddress.compare(r.endHigh, r.endLow,
+                        last.endHigh, last.endLow) > 0) {
+                    last.endHigh = r.endHigh;
+                    last.endLow = r.endLow;
+                }
+            } else {
+                ranges.set(n++, r);
+            }
+        }
+        if (n > MAX_RECORDS) {
+            throw new IOException("too many deny list ranges: " + n);
+        }
+        Path dir = path.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(
+                dir, path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(
+                            Files.newOutputStream(temp), 65536))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(n);
+                out.write(new byte[HEADER_LENGTH - 16]);
+                for (int i = 0; i < n; i++) {
+                    Range r = ranges.get(i);
+                    out.writeLong(r.startHigh);
+                    out.writeLong(r.startLow);
+                    out.writeLong(r.endHigh);
+                    out.writeLong(r.endLow);
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    /**
+     * Returns true if a range starts at or before the address following the
+     * end of a preceding range, so the two can be merged.
+     * 
+     * @param last the preceding range
+     * @param r the range
+     * @return true if the ranges overlap or are adjacent
+     */
+    private static boolean adjoins(Range last, Range r) {
+        if (last.endHigh == -1 && last.endLow == -1) {
+            return true;
+        }
+        return IPAddress.compare(r.startHigh, r.startLow,
+                last.endHigh + (last.endLow == -1 ? 1 : 0),
+                last.endLow + 1) <= 0;
+    }
+    
+    /**
+     * Parse a rule into an address range.
+     * 
+     * @param rule the rule
+     * @return the range
+     * @throws IllegalArgumentException if the rule is invalid
+     */
+    private static Range parseRule(String rule) {
+        String s = rule == null ? "" : rule.trim();
+        int i;
+        if ((i = s.indexOf('/')) >= 0) {
+            IPAddress address = IPAddress.parse(s.substring(0, i).trim());
+            int bits;
+            try {
+                bits = Integer.parseInt(s.substring(i + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(
+                        "invalid prefix length: " + rule);
+            }
+            if (bits < 0 || bits > (address.isIPv4() ? 32 : 128)) {
+                throw new IllegalArgumentException(
+                        "invalid prefix length: " + rule);
+            }
+            if (address.isIPv4()) {
+                bits += 96;
+            }
+            long highMask =
+                    bits <= 0 ? 0 : bits >= 64 ? -1L : -1L << 64 - bits;
+            long lowMask = bits <= 64 ? 0 : -1L << 128 - bits;
+            return new Range(
+                    address.getHigh() & highMask,
+                    address.getLow() & lowMask,
+                    address.getHigh() | ~highMask,
+                    address.getLow() | ~lowMask);
+        } else if ((i = s.indexOf('-')) >= 0) {
+            IPAddress start = IPAddress.parse(s.substring(0, i).trim());
+            IPAddress end = IPAddress.parse(s.substring(i + 1).trim());
+            if (start.isIPv4() != end.isIPv4() || start.compareTo(end) > 0) {
+                throw new IllegalArgumentException(
+                        "invalid address range: " + rule);
+            }
+            return new Range(start.getHigh(), start.getLow(),
+                    end.getHigh(), end.getLow());
+        }
+        IPAddress address = IPAddress.parse(s);
+        return new Range(address.getHigh(), address.getLow(),
+                address.getHigh(), address.getLow());
+    }
+    
+    /**
+     * Returns true if a 128-bit address is within any range of this list.
+     * 
+     * @param high the high 64 bits
+     * @param low the low 64 bits
+     * @return true if the address is denied
+     */
+    public boolean contains(long high, long low) {
+        // find the last index entry, then the last range, starting at or
+        // before the address
+        int lo = 0;
+        int hi = (index.length >>> 1) - 1;
+        int found = -1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (IPAddress.compare(
+                    index[2 * mid], index[2 * mid + 1], high, low) <= 0) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (found < 0) {
+            return false;
+        }
+        // the first record of the index entry starts at or before the address
+        lo = found = found * INDEX_STRIDE;
+        hi = Math.min(lo + INDEX_STRIDE, size) - 1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            final int offset = HEADER_LENGTH + mid * RECORD_LENGTH;
+            if (IPAddress.compare(buffer.getLong(offset),
+                    buffer.getLong(offset + 8), high, low) <= 0) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        final int offset = HEADER_LENGTH + found * RECORD_LENGTH;
+        return IPAddress.compare(high, low,
+                buffer.getLong(offset + 16), buffer.getLong(offset + 24)) <= 0;
+    }
+    
+    /**
+     * Returns true if an address is within any range of this list.
+     * 
+     * @param address the address, may be null
+     * @return true if the address is denied
+     */
+    public boolean contains(IPAddress address) {
+        return address != null
+                && contains(address.getHigh(), address.getLow());
+    }
+    
+    /**
+     * Returns true if an address is within any range of this list. Returns
+     * false if the text is not a valid address.
+     * 
+     * @param address the address text, may be null
+     * @return true if the address is denied
+     */
+    public boolean contains(String address) {
+        return contains(IPAddress.tryParse(address));
+    }
+    
+    /**
+     * Get the number of address ranges in this list.
+     * 
+     * @return the number of ranges
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Get the file path of this list.
+     * 
+     * @return the file path
+     */
+    public Path getPath() {
+        return path;
+    }
+}
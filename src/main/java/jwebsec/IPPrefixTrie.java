@@ -0,0 +1,458 @@
+package jwebsec;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <code>IPPrefixTrie</code> is an immutable set of IPv4 and IPv6 address
+ * prefixes (CIDR blocks) compiled into a path-compressed binary trie, which
+ * answers whether an address falls within any of the prefixes.
+ * <p>
+ *   Prefixes are held in the 128-bit address space of {@link IPAddress},
+ *   with IPv4 prefixes mapped into <code>::ffff:0:0/96</code>. When the trie
+ *   is built, duplicate prefixes and prefixes covered by a shorter prefix
+ *   are removed and the remaining prefixes are sorted, so every internal
+ *   node has two children and the prefixes are the leaves. A lookup tests
+ *   one address bit per internal node, skipping bits which do not
+ *   distinguish any prefixes, and compares the address with the single
+ *   prefix at the leaf it reaches. The first levels of the walk are replaced
+ *   by a root table indexed by up to 16 address bits, so large tries need
+ *   only a few dependent memory reads per lookup. Nodes are flattened into an
+ *   <code>int</code> array in pre-order, and lookups of parsed addresses do
+ *   not allocate.
+ * </p>
+ * <p>
+ *   Rules are added with a {@link Builder} in one of the following forms:
+ * </p>
+ * <ul>
+ *   <li>a single address, e.g., <code>192.0.2.1</code> or
+ *       <code>2001:db8::1</code></li>
+ *   <li>a CIDR block, e.g., <code>10.0.0.0/8</code> or
+ *       <code>2001:db8::/32</code></li>
+ *   <li>an inclusive address range, e.g.,
+ *       <code>192.0.2.10-192.0.2.20</code>, which is decomposed into CIDR
+ *       blocks</li>
+ * </ul>
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public final class IPPrefixTrie {
+    
+    /* Empty trie. */
+    public static final IPPrefixTrie EMPTY =
+            new IPPrefixTrie(new Prefix[0]);
+    
+    /* Maximum number of address bits indexed by the root table (16). */
+    private static final int MAX_ROOT_BITS = 16;
+    
+    /* Length of the IPv4-mapped prefix in bits (96). */
+    private static final int IPV4_PREFIX_BITS = 96;
+    
+    /**
+     * <code>Prefix</code> is a 128-bit address prefix.
+     */
+    private static final class Prefix {
+        
+        private final long high;
+        private final long low;
+        private final int bits;
+        
+        private Prefix(long high, long low, int bits) {
+            this.high = high & mask(bits);
+            this.low = low & mask(bits - 64);
+            this.bits = bits;
+        }
+        
+        /**
+         * Returns true if this prefix contains another prefix.
+         * 
+         * @param p the other prefix
+         * @return true if this prefix contains the other prefix
+         */
+        private boolean contains(Prefix p) {
+            return bits <= p.bits && matches(high, low, bits, p.high, p.low);
+        }
+    }
+    
+    /* Prefix order, by address and then by length. */
+    private static final Comparator<Prefix> ORDER = (a, b) -> {
+        int result = IPAddress.compare(a.high, a.low, b.high, b.low);
+        return result != 0 ? result : Integer.compare(a.bits, b.bits);
+    };
+    
+    /**
+     * <code>Builder</code> collects rules for a new <code>IPPrefixTrie</code>.
+     * Builders are not thread-safe.
+     */
+    public static final class Builder {
+        
+        private final List<Prefix> prefixes = new ArrayList<>();
+        
+        /**
+         * Add a rule, which is an address, a CIDR block or an address range.
+         * 
+         * @param rule the rule
+         * @return this builder
+         * @throws IllegalArgumentException if the rule is invalid
+         */
+        public Builder add(String rule) {
+            String s = rule == null ? "" : rule.trim();
+            int i;
+            if ((i = s.indexOf('/')) >= 0) {
+                IPAddress address = IPAddress.parse(s.substring(0, i).trim());
+                int bits;
+                try {
+                    bits = Integer.parseInt(s.substring(i + 1).trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(
+                            "invalid prefix length: " + rule);
+                }
+                // IPv4-mapped addresses written in IPv6 form take prefix
+                // lengths of the 128-bit space
+                boolean ipv4 = s.lastIndexOf(':', i) < 0;
+                if (bits < 0 || bits > (ipv4 ? 32 : 128)) {
+                    throw new IllegalArgumentException(
+                            "invalid prefix length: " + rule);
+                }
+                return add(address, ipv4 ? bits + IPV4_PREFIX_BITS : bits);
+            } else if ((i = s.indexOf('-')) >= 0) {
+                IPAddress start = IPAddress.parse(s.substring(0, i).trim());
+                IPAddress end = IPAddress.parse(s.substring(i + 1).trim());
+                if (start.isIPv4() != end.isIPv4()
+                        || start.compareTo(end) > 0) {
+                    throw new IllegalArgumentException(
+                            "invalid address range: " + rule);
+                }
+                return addRange(start, end);
+            }
+            return add(IPAddress.parse(s), 128);
+        }
+        
+        /**
+         * Add a prefix of the 128-bit address space. IPv4 prefixes must
+         * include the 96-bit IPv4-mapped prefix in their length.
+         * 
+         * @param address the address
+         * @param bits the prefix length, from 0 to 128
+         * @return this builder
+         */
+        public Builder add(IPAddress address, int bits) {
+            if (bits < 0 || bits > 128) {
+                throw new IllegalArgumentException(
+                        "invalid prefix length: " + bits);
+            }
+            prefixes.add(new Prefix(address.getHigh(), address.getLow(), bits));
+            return this;
+        }
+        
+        /**
+         * Add an inclusive address range as the smallest set of prefixes
+         * which covers it.
+         * 
+         * @param start the first address
+         * @param end the last address
+         * @return this builder
+         */
+        private Builder addRange(IPAddress start, IPAddress end) {
+            BigInteger from = toBigInteger(start);
+            final BigInteger to = toBigInteger(end);
+            while (from.compareTo(to) <= 0) {
+                int size = from.signum() == 0 ? 128 : from.getLowestSetBit();
+                BigInteger remaining = to.subtract(from).add(BigInteger.ONE);
+                size = Math.min(size, remaining.bitLength() - 1);
+                prefixes.add(new Prefix(
+                        from.shiftRight(64).longValue(),
+                        from.longValue(),
+                        128 - size));
+                from = from.add(BigInteger.ONE.shiftLeft(size));
+            }
+            return this;
+        }
+        
+        /**
+         * Build the trie.
+         * 
+         * @return the trie
+         */
+        public IPPrefixTrie build() {
+            Prefix[] sorted = prefixes.toArray(new Prefix[0]);
+            Arrays.sort(sorted, ORDER);
+            // sorted order places a covering prefix before those it covers
+            int n = 0;
+            for (Prefix p : sorted) {
+                if (n == 0 || !sorted[n - 1].contains(p)) {
+                    sorted[n++] = p;
+                }
+            }
+            return new IPPrefixTrie(Arrays.copyOf(sorted, n));
+        }
+    }
+    
+    private final int size;
+    
+    /* Nodes in pre-order, two ints each: branch bit and right child index. */
+    private final int[] tree;
+    
+    /* Leaf prefixes in sorted order, two longs each. */
+    private final long[] prefixes;
+    
+    /* Leaf prefix lengths in sorted order. */
+    private final int[] lengths;
+    
+    /* First address bit indexed by the root table. */
+    private final int rootStart;
+    
+    /* Number of address bits indexed by the root table, or zero. */
+    private final int rootBits;
+    
+    /* Node reached from the root for each value of the indexed bits. */
+    private final int[] root;
+    
+    /**
+     * Construct a new <code>IPPrefixTrie</code> from sorted, non-overlapping
+     * prefixes.
+     * 
+     * @param sorted the prefixes
+     */
+    private IPPrefixTrie(Prefix[] sorted) {
+        size = sorted.length;
+        tree = new int[2 * Math.max(2 * size - 1, 0)];
+        prefixes = new long[2 * size];
+        lengths = new int[size];
+        for (int i = 0; i < size; i++) {
+            prefixes[2 * i] = sorted[i].high;
+            prefixes[2 * i + 1] = sorted[i].low;
+            lengths[i] = sorted[i].bits;
+        }
+        if (size > 0) {
+            build(sorted, 0, size, 0);
+        }
+        if (size > 1) {
+            rootStart = tree[0];
+            rootBits = Math.min(Math.min(MAX_ROOT_BITS,
+                    32 - Integer.numberOfLeadingZeros(size)), 128 - rootStart);
+            root = buildRoot();
+        } else {
+            rootStart = rootBits = 0;
+            root = null;
+        }
+    }
+    
+    /**
+     * Build the root table, which replaces the first levels of the walk with
+     * one lookup. For each value of the indexed address bits, the table holds
+     * the first node whose branch bit is not indexed, or the leaf reached
+     * before it.
+     * 
+     * @return the root table
+     */
+    private int[] buildRoot() {
+        final int end = rootStart + rootBits;
+        final int[] table = new int[1 << rootBits];
+        for (int v = 0; v < table.length; v++) {
+            int node = 0;
+            int branch;
+            while ((branch = tree[2 * node]) >= 0 && branch < end) {
+                node = (v >>> end - 1 - branch & 1) == 0 ?
+                        node + 1 : tree[2 * node + 1];
+            }
+            table[v] = node;
+        }
+        return table;
+    }
+    
+    /**
+     * Create a new <code>Builder</code>.
+     * 
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    /**
+     * Build the subtree for a range of sorted, non-overlapping prefixes.
+     * Nodes are laid out in pre-order, so the left child of an internal node
+     * is the next node, and a subtree with <i>n</i> prefixes occupies
+     * 2<i>n</i> - 1 consecutive nodes. A leaf stores the one's complement of
+     * its prefix index in place of a branch bit.
+     * 
+     * @param sorted the prefixes
+     * @param from the first prefix index, inclusive
+     * @param to the last prefix index, exclusive
+     * @param node the subtree root node index
+     */
+    private void build(Prefix[] sorted, int from, int to, int node) {
+        if (to - from == 1) {
+            tree[2 * node] = ~from;
+            return;
+        }
+        // the first bit where the first and last prefix differ is the first
+        // bit where any of them differ
+        final Prefix first = sorted[from];
+        final Prefix last = sorted[to - 1];
+        final int branch = first.high != last.high ?
+                Long.numberOfLeadingZeros(first.high ^ last.high) :
+                64 + Long.numberOfLeadingZeros(first.low ^ last.low);
+        int split = from + 1;
+        while (bit(sorted[split].high, sorted[split].low, branch) == 0) {
+            split++;
+        }
+        final int right = node + 2 * (split - from);
+        tree[2 * node] = branch;
+        tree[2 * node + 1] = right;
+        build(sorted, from, split, node + 1);
+        build(sorted, split, to, right);
+    }
+    
+    /**
+     * Get the mask for a prefix length within one 64-bit word.
+     * 
+     * @param bits the prefix length, clamped to 0..64
+     * @return the mask
+     */
+    private static long mask(int bits) {
+        return bits <= 0 ? 0 : bits >= 64 ? -1L : -1L << 64 - bits;
+    }
+    
+    /**
+     * Get a bit of a 128-bit address, counting from the most significant.
+     * 
+     * @param high the high 64 bits
+     * @param low the low 64 bits
+     * @param index the bit index
+     * @return the bit
+     */
+    private static int bit(long high, long low, int index) {
+        return index < 64 ?
+                (int)(high >>> 63 - index) & 1 :
+                (int)(low >>> 127 - index) & 1;
+    }
+    
+    /**
+     * Get a range of bits of a 128-bit address, counting from the most
+     * significant.
+     * 
+     * @param high the high 64 bits
+     * @param low the low 64 bits
+     * @param start the first bit index
+     * @param count the number of bits, from 1 to 32
+     * @return the bits
+     */
+    private static int bits(long high, long low, int start, int count) {
+        final int end = start + count;
+        final long value;
+        if (end <= 64) {
+            value = high >>> 64 - end;
+        } else if (start >= 64) {
+            value = low >>> 128 - end;
+        } else {
+            value = high << end - 64 | low >>> 128 - end;
+        }
+        return (int)value & (1 << count) - 1;
+    }
+    
+    /**
+     * Returns true if an address matches a prefix.
+     * 
+     * @param prefixHigh the high 64 bits of the prefix
+     * @param prefixLow the low 64 bits of the prefix
+     * @param bits the prefix length
+     * @param high the high 64 bits of the address
+     * @param low the low 64 bits of the address
+     * @return true if the address has the prefix
+     */
+    private static boolean matches(
+            long prefixHigh, long prefixLow, int bits, long high, long low) {
+        return ((high ^ prefixHigh) & mask(bits)) == 0
+                && ((low ^ prefixLow) & mask(bits - 64)) == 0;
+    }
+    
+    /**
+     * Convert an address to an unsigned <code>BigInteger</code>.
+     * 
+     * @param address the address
+     * @return the address value
+     */
+    private static BigInteger toBigInteger(IPAddress address) {
+        byte[] bytes = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte)(address.getHigh() >>> 56 - 8 * i);
+            bytes[i + 8] = (byte)(address.getLow() >>> 56 - 8 * i);
+        }
+        return new BigInteger(1, bytes);
+    }
+    
+    /**
+     * Returns true if a 128-bit address is within any prefix of this trie.
+     * 
+     * @param high the high 64 bits
+     * @param low the low 64 bits
+     * @return true if the address matches
+     */
+    public boolean contains(long high, long low) {
+        if (size == 0) {
+            return false;
+        }
+        int node = root == null ?
+                0 : root[bits(high, low, rootStart, rootBits)];
+        int branch;
+        while ((branch = tree[2 * node]) >= 0) {
+            // branch-free child selection, random address bits mispredict
+            final int left = node + 1;
+            node = left + ((tree[2 * node + 1] - left)
+                    & -bit(high, low, branch));
+        }
+        final int leaf = ~branch;
+        return matches(prefixes[2 * leaf], prefixes[2 * leaf + 1],
+                lengths[leaf], high, low);
+    }
+    
+    /**
+     * Returns true if an address is within any prefix of this trie.
+     * 
+     * @param address the address, may be null
+     * @return true if the address matches
+     */
+    public boolean contains(IPAddress address) {
+        return address != null
+                && contains(address.getHigh(), address.getLow());
+    }
+    
+    /**
+     * Returns true if an address is within any prefix of this trie. Returns
+     * false if the text is not a valid address.
+     * 
+     * @param address the address text, may be null
+     * @return true if the address matches
+     */
+    public boolean contains(String address) {
+        return contains(IPAddress.tryParse(address));
+    }
+    
+    /**
+     * Get the number of prefixes in this trie, after duplicate and covered
+     * prefixes have been removed.
+     * 
+     * @return the number of prefixes
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Returns true if this trie has no prefixes.
+     * 
+     * @return true if this trie is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
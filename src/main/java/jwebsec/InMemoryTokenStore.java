@@ -0,0 +1,399 @@
+package jwebsec;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <code>InMemoryTokenStore</code> is a heap based <code>TokenStore</code> which
+ * expires tokens with a hierarchical timing wheel, so that millions of tokens
+ * can be expired without scanning the store or scheduling a task per token.
+ * <p>
+ *   Tokens are held in a <code>ConcurrentHashMap</code> keyed by value, and
+ *   inserts, lookups and revocations are O(1) and lock-free. New and revoked
+ *   tokens are handed to a single background sweeper thread through
+ *   concurrent queues, and only the sweeper touches the wheel. The wheel has
+ *   four levels of 256 slots; each tick the sweeper cascades entries from
+ *   higher levels into lower levels as their slot comes due and removes the
+ *   tokens in the current level 0 slot. Lookups check each token's expiry
+ *   time, so an expired token is never returned even before it is swept.
+ * </p>
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public final class InMemoryTokenStore implements TokenStore {
+    
+    /* Default tick duration in milliseconds (1,000). */
+    public static final long DEFAULT_TICK_MILLIS = 1000;
+    
+    /* Number of timing wheel levels (4). */
+    private static final int LEVELS = 4;
+    
+    /* Bits per timing wheel level (8). */
+    private static final int BITS = 8;
+    
+    /* Slots per timing wheel level (256). */
+    private static final int SLOTS = 1 << BITS;
+    
+    /* Slot index mask. */
+    private static final int MASK = SLOTS - 1;
+    
+    /**
+     * <code>Entry</code> is a stored token and its timing wheel links, which
+     * are only accessed by the sweeper.
+     */
+    private static final class Entry {
+        
+        private final String key;
+        private final Token token;
+        private final long deadline;
+        private volatile boolean cancelled = false;
+        private Entry prev;
+        private Entry next;
+        private int level = -1;
+        private int slot;
+        
+        private Entry(String key, Token token, long deadline) {
+            this.key = key;
+            this.token = token;
+            this.deadline = deadline;
+        }
+    }
+    
+    private final Map<String, Entry> TOKENS = new ConcurrentHashMap<>();
+    private final Queue<Entry> PENDING = new ConcurrentLinkedQueue<>();
+    private final Queue<Entry> CANCELLED = new ConcurrentLinkedQueue<>();
+    private final Entry[][] WHEEL = new Entry[LEVELS][SLOTS];
+    private final ReentrantLock SWEEP_LOCK = new ReentrantLock();
+    private final long tickMillis;
+    private final Thread sweeper;
+    private long currentTick;
+    private volatile boolean closed = false;
+    private volatile long expirationCount = 0;
+    private volatile double expirationsPerSecond = 0;
+    private volatile long lastSweepNanos = 0;
+    private volatile long maxSweepNanos = 0;
+    private long rateWindowStart;
+    private long rateWindowCount = 0;
+    
+    /**
+     * Default <code>InMemoryTokenStore</code> constructor, with a one second
+     * tick.
+     */
+    public InMemoryTokenStore() {
+        this(DEFAULT_TICK_MILLIS);
+    }
+    
+    /**
+     * Construct a new <code>InMemoryTokenStore</code> with the specified tick
+     * duration and start its sweeper thread. Expired tokens are removed within
+     * one tick of their expiry time.
+     * 
+     * @param tickMillis the tick duration in milliseconds
+     */
+    public InMemoryTokenStore(long tickMillis) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("invalid tick duration");
+        }
+        this.tickMillis = tickMillis;
+        rateWindowStart = System.currentTimeMillis();
+        currentTick = rateWindowStart / tickMillis;
+        sweeper = Thread.ofVirtual()
+                .name("jwebsec-token-store-sweeper")
+                .start(this::run);
+    }
+    
+    /**
+     * Sweeper loop.
+     */
+    private void run() {
+        final long tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        while (!closed) {
+            LockSupport.parkNanos(this, tickNanos);
+            if (!closed) {
+                sweep();
+            }
+        }
+    }
+    
+    @Override
+    public void put(Token token) {
+        checkOpen();
+        final String key = token.getValue();
+        // deadline tick is rounded up so tokens are never swept early, without
+        // overflow for expiry times near Long.MAX_VALUE
+        final long expiry = token.getExpiryTime();
+        Entry e = new Entry(key, token, Math.floorDiv(expiry, tickMillis)
+                + (Math.floorMod(expiry, tickMillis) != 0 ? 1 : 0));
+        Entry old = TOKENS.put(key, e);
+        if (old != null) {
+            cancel(old);
+        }
+        PENDING.offer(e);
+        if (closed) {
+            // raced with close, which may already have cleared the store
+            TOKENS.remove(key, e);
+        }
+    }
+    
+    @Override
+    public Token get(String value) {
+        Entry e = value == null ? null : TOKENS.get(value);
+        return e == null || e.token.isExpired() ? null : e.token;
+    }
+    
+    @Override
+    public boolean contains(String value) {
+        return get(value) != null;
+    }
+    
+    @Override
+    public boolean revoke(String value) {
+        Entry e = value == null ? null : TOKENS.remove(value);
+        if (e != null) {
+            cancel(e);
+        }
+        return e != null;
+    }
+    
+    /**
+     * Mark an entry as cancelled and queue it for removal from the wheel.
+     * 
+     * @param e the entry
+     */
+    private void cancel(Entry e) {
+        e.cancelled = true;
+        CANCELLED.offer(e);
+    }
+    
+    @Override
+    public int size() {
+        return TOKENS.size();
+    }
+    
+    /**
+     * Advance the timing wheel to the current time, removing expired tokens.
+     * This is called by the sweeper thread once per tick, and directly by
+     * tests.
+     */
+    void sweep() {
+        SWEEP_LOCK.lock();
+        try {
+            advance();
+        } finally {
+            SWEEP_LOCK.unlock();
+        }
+    }
+    
+    /**
+     * Advance the timing wheel while holding the sweep lock.
+     */
+    private void advance() {
+        final long start = System.nanoTime();
+        final long now = System.currentTimeMillis();
+        final long target = now / tickMillis;
+        for (Entry e; (e = CANCELLED.poll()) != null;) {
+            unlink(e);
+        }
+        for (Entry e; (e = PENDING.poll()) != null;) {
+            if (!e.cancelled) {
+                schedule(e);
+            }
+        }
+        while (currentTick < target) {
+            final long t = ++currentTick;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((t & ((1L << BITS * level) - 1)) == 0) {
+                    reschedule(level, (int)(t >>> BITS * level) & MASK);
+                }
+            }
+            reschedule(0, (int)t & MASK);
+        }
+        if (now - rateWindowStart >= 1000) {
+            expirationsPerSecond =
+                    1000.0 * rateWindowCount / (now - rateWindowStart);
+            rateWindowStart = now;
+            rateWindowCount = 0;
+        }
+        long elapsed = System.nanoTime() - start;
+        lastSweepNanos = elapsed;
+        if (elapsed > maxSweepNanos) {
+            maxSweepNanos = elapsed;
+        }
+    }
+    
+    /**
+     * Place an entry in the wheel level and slot for its deadline, or expire
+     * it if the deadline has passed.
+     * 
+     * @param e the entry
+     */
+    private void schedule(Entry e) {
+        final long delta = e.deadline - currentTick;
+        if (delta <= 0) {
+            expire(e);
+            return;
+        }
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << BITS * (level + 1)) {
+            level++;
+        }
+        link(e, level, (int)(e.deadline >>> BITS * level) & MASK);
+    }
+    
+    /**
+     * Remove all entries from a slot and schedule each of them again, which
+     * cascades them into lower levels or expires them.
+     * 
+     * @param level the wheel level
+     * @param slot the slot index
+     */
+    private void reschedule(int level, int slot) {
+        Entry e = WHEEL[level][slot];
+        WHEEL[level][slot] = null;
+        while (e != null) {
+            Entry next = e.next;
+            e.prev = e.next = null;
+            e.level = -1;
+            schedule(e);
+            e = next;
+        }
+    }
+    
+    /**
+     * Remove an expired entry from the store.
+     * 
+     * @param e the entry
+     */
+    private void expire(Entry e) {
+        if (TOKENS.remove(e.key, e)) {
+            expirationCount++;
+            rateWindowCount++;
+        }
+    }
+    
+    /**
+     * Link an entry at the head of a wheel slot.
+     * 
+     * @param e the entry
+     * @param level the wheel level
+     * @param slot the slot index
+     */
+    private void link(Entry e, int level, int slot) {
+        Entry head = WHEEL[level][slot];
+        e.next = head;
+        if (head != null) {
+            head.prev = e;
+        }
+        WHEEL[level][slot] = e;
+        e.level = level;
+        e.slot = slot;
+    }
+    
+    /**
+     * Unlink an entry from its wheel slot, if any.
+     * 
+     * @param e the entry
+     */
+    private void unlink(Entry e) {
+        if (e.level < 0) {
+            return;
+        }
+        if (e.prev == null) {
+            WHEEL[e.level][e.slot] = e.next;
+        } else {
+            e.prev.next = e.next;
+        }
+        if (e.next != null) {
+            e.next.prev = e.prev;
+        }
+        e.prev = e.next = null;
+        e.level = -1;
+    }
+    
+    /**
+     * Get the tick duration in milliseconds.
+     * 
+     * @return the tick duration
+     */
+    public long getTickMillis() {
+        return tickMillis;
+    }
+    
+    /**
+     * Get the total number of tokens removed by the sweeper on expiry.
+     * 
+     * @return the expiration count
+     */
+    public long getExpirationCount() {
+        return expirationCount;
+    }
+    
+    /**
+     * Get the expiration rate measured over the most recent window of at least
+     * one second.
+     * 
+     * @return expirations per second
+     */
+    public double getExpirationsPerSecond() {
+        return expirationsPerSecond;
+    }
+    
+    /**
+     * Get the duration of the most recent sweep in nanoseconds.
+     * 
+     * @return the last sweep duration
+     */
+    public long getLastSweepNanos() {
+        return lastSweepNanos;
+    }
+    
+    /**
+     * Get the longest sweep duration in nanoseconds.
+     * 
+     * @return the maximum sweep duration
+     */
+    public long getMaxSweepNanos() {
+        return maxSweepNanos;
+    }
+    
+    /**
+     * Throws <code>IllegalStateException</code> if this store has been
+     * closed.
+     */
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("token store is closed");
+        }
+    }
+    
+    /**
+     * Stop the sweeper thread and remove all tokens. Tokens can no longer be
+     * added once the store is closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(sweeper);
+        TOKENS.clear();
+        SWEEP_LOCK.lock();
+        try {
+            PENDING.clear();
+            CANCELLED.clear();
+            for (Entry[] level : WHEEL) {
+                Arrays.fill(level, null);
+            }
+        } finally {
+            SWEEP_LOCK.unlock();
+        }
+    }
+}
@@ -0,0 +1,683 @@
+package jwebsec;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <code>LoginThrottle</code> throttles failed login attempts per account and
+ * per client IP address, so that password guessing and credential stuffing
+ * are rejected before an expensive password hash is computed.
+ * <p>
+ *   Failed attempts are counted in a sliding window. Once an account or
+ *   address reaches its maximum number of failed attempts in the window, it
+ *   is locked out for one second, and each further failure doubles the
+ *   lockout, up to the window length. Callers should call
+ *   {@link #check(String, IPAddress)} before hashing the password, and
+ *   report failures with {@link #recordFailure(String, IPAddress)}:
+ * </p>
+ * <pre>
+ *   if (throttle.check(username, address) &gt; 0) {
+ *       // reject without hashing
+ *   } else if (!verify(username, password)) {
+ *       throttle.recordFailure(username, address);
+ *   }
+ * </pre>
+ * <p>
+ *   Accounts and addresses are tracked in fixed-size, lock-striped open
+ *   addressing tables of primitive arrays, keyed by a randomly seeded 64-bit
+ *   hash, so no strings or boxed values are kept. The sliding window is
+ *   approximated by a current and a previous fixed window per key, and the
+ *   previous window's count is weighted by how much of it still overlaps the
+ *   sliding window, so counts decay over time. When a table is full, keys
+ *   with no recent failures are removed first and then keys with the fewest
+ *   failures, so memory stays bounded during attacks with millions of
+ *   distinct usernames while locked out keys are kept. Only if a stripe of
+ *   a table is still full of locked out keys are those whose lockouts end
+ *   soonest released early, so a key under a sustained attack, whose
+ *   lockout has grown longest, is kept, and a key which is not tracked is
+ *   never locked out. Successful logins do not reset the counts.
+ * </p>
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public final class LoginThrottle {
+    
+    /* Default maximum failed attempts per account in a window (5). */
+    public static final int DEFAULT_MAX_ACCOUNT_FAILURES = 5;
+    
+    /* Default maximum failed attempts per address in a window (20). */
+    public static final int DEFAULT_MAX_ADDRESS_FAILURES = 20;
+    
+    /* Default window length in milliseconds (15 minutes). */
+    public static final long DEFAULT_WINDOW_MILLIS = 900000;
+    
+    /* Default maximum number of tracked accounts and addresses (131,072). */
+    public static final int DEFAULT_MAX_KEYS = 131072;
+    
+    /* Number of lock stripes per table (16). */
+    private static final int SEGMENTS = 16;
+    
+    /* Lockout delay when the maximum failures is reached (1s). */
+    private static final long BASE_DELAY_NANOS = 1000000000L;
+    
+    /* Maximum count per window, counts saturate at this value. */
+    private static final int MAX_COUNT = 0xFFFF;
+    
+    /* Eviction removes keys with up to this many failures (16) first. */
+    private static final int EVICTION_LEVELS = 16;
+    
+    /* Eviction groups lockouts by the bit length of their remaining time. */
+    private static final int LOCKOUT_LEVELS = 64;
+    
+    /**
+     * <code>Segment</code> is one lock stripe of a table: an open addressing
+     * hash table with linear probing. Each slot holds a key hash, a packed
+     * window state and a lockout deadline. The state packs the window
+     * number in the high 32 bits, the previous window count in the next 16
+     * bits and the current window count in the low 16 bits.
+     */
+    private static final class Segment extends ReentrantLock {
+        
+        private static final long serialVersionUID = 202610181300L;
+        
+        private long[] keys;
+        private long[] states;
+        
+        /* Lockout deadlines in System.nanoTime() units, zero if none. */
+        private long[] deadlines;
+        private int size;
+        
+        private Segment(int capacity) {
+            keys = new long[capacity];
+            states = new long[capacity];
+            deadlines = new long[capacity];
+        }
+        
+        /**
+         * Find the slot of a key.
+         * 
+         * @param key the key hash, not zero
+         * @return the slot, or -1 if the key is not in the table
+         */
+        private int find(long key) {
+            final int mask = keys.length - 1;
+            for (int i = (int)key & mask;; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return i;
+                }
+                if (keys[i] == 0) {
+                    return -1;
+                }
+            }
+        }
+        
+        /**
+         * Returns true if the table is at three-quarters load, and keys must
+         * be evicted before another key is added.
+         * 
+         * @return true if the table is full
+         */
+        private boolean isFull() {
+            return size >= keys.length - (keys.length >>> 2);
+        }
+        
+        /**
+         * Add a key which is not in the table. The table must not be full.
+         * 
+         * @param key the key hash, not zero
+         * @param window the current window number
+         * @return the slot
+         */
+        private int add(long key, int window) {
+            final int mask = keys.length - 1;
+            int slot = (int)key & mask;
+            while (keys[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            states[slot] = (long)window << 32;
+            deadlines[slot] = 0;
+            size++;
+            return slot;
+        }
+        
+        /**
+         * Remove keys which are not locked out, those with the fewest
+         * failures first, until at most half of the table is used. If the
+         * table is still more than half full of locked out keys, remove
+         * those whose lockouts end soonest. Then rebuild the table.
+         * 
+         * @param window the current window number
+         * @param weight the weight of the previous window
+         * @param now the current time
+         * @return the number of locked out keys removed
+         */
+        private int evict(int window, double weight, long now) {
+            final int[] histogram = new int[EVICTION_LEVELS + 1];
+            final int[] lockouts = new int[LOCKOUT_LEVELS];
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == 0) {
+                    continue;
+                }
+                if (isLockedOut(deadlines[i], now)) {
+                    lockouts[lockoutLevel(deadlines[i], now)]++;
+                } else {
+                    histogram[Math.min(count(states[i], window, weight),
+                            EVICTION_LEVELS)]++;
+                }
+            }
+            final int limit = keys.length >>> 1;
+            int remaining = size;
+            int level = -1;
+            while (remaining > limit && level < EVICTION_LEVELS) {
+                remaining -= histogram[++level];
+            }
+            level = Math.max(level, 0);
+            int lockoutLevel = -1;
+            while (remaining > limit) {
+                remaining -= lockouts[++lockoutLevel];
+            }
+            final long[] oldKeys = keys;
+            final long[] oldStates = states;
+            final long[] oldDeadlines = deadlines;
+            keys = new long[oldKeys.length];
+            states = new long[oldKeys.length];
+            deadlines = new long[oldKeys.length];
+            size = 0;
+            int released = 0;
+            final int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == 0) {
+                    continue;
+                }
+                if (isLockedOut(oldDeadlines[i], now)) {
+                    if (lockoutLevel(oldDeadlines[i], now) <= lockoutLevel) {
+                        released++;
+                        continue;
+                    }
+                } else if (Math.min(count(oldStates[i], window, weight),
+                        EVICTION_LEVELS) <= level) {
+                    continue;
+                }
+                int slot = (int)oldKeys[i] & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                states[slot] = oldStates[i];
+                deadlines[slot] = oldDeadlines[i];
+                size++;
+            }
+            return released;
+        }
+        
+        /**
+         * Remove all keys.
+         */
+        private void clear() {
+            Arrays.fill(keys, 0);
+            size = 0;
+        }
+    }
+    
+    /**
+     * <code>Table</code> holds the failure counts and lockouts of one kind of
+     * key.
+     */
+    private final class Table {
+        
+        private final int maxFailures;
+        private final long seed;
+        private final Segment[] segments = new Segment[SEGMENTS];
+        
+        private Table(int maxFailures, long seed, int maxKeys) {
+            this.maxFailures = maxFailures;
+            this.seed = seed;
+            // capacity for maxKeys at three-quarters load
+            final int capacity = Integer.highestOneBit(
+                    Math.max(maxKeys / SEGMENTS * 4 / 3, 8) * 2 - 1);
+            for (int i = 0; i < SEGMENTS; i++) {
+                segments[i] = new Segment(capacity);
+            }
+        }
+        
+        /**
+         * Get the segment of a key.
+         * 
+         * @param key the key hash
+         * @return the segment
+         */
+        private Segment segment(long key) {
+            return segments[(int)(key >>> 60)];
+        }
+        
+        /**
+         * Get the remaining lockout time for a key.
+         * 
+         * @param key the key hash
+         * @param now the current time
+         * @return the remaining lockout time in nanoseconds, or zero
+         */
+        private long lockout(long key, long now) {
+            final Segment s = segment(key);
+            final long deadline;
+            s.lock();
+            try {
+                final int slot = s.find(key);
+                deadline = slot < 0 ? 0 : s.deadlines[slot];
+            } finally {
+                s.unlock();
+            }
+            return isLockedOut(deadline, now) ? deadline - now : 0;
+        }
+        
+        /**
+         * Count a failure for a key, and lock the key out if it has reached
+         * the maximum number of failures.
+         * 
+         * @param key the key hash
+         * @param now the current time
+         */
+        private void fail(long key, long now) {
+            final int window = window(now);
+            final double weight = weight(now);
+            final Segment s = segment(key);
+            s.lock();
+            try {
+                int slot = s.find(key);
+                if (slot < 0) {
+                    if (s.isFull()) {
+                        releasedLockouts.add(s.evict(window, weight, now));
+                    }
+                    slot = s.add(key, window);
+                }
+                long state = advance(s.states[slot], window);
+                if ((state & MAX_COUNT) < MAX_COUNT) {
+                    state++;
+                }
+                s.states[slot] = state;
+                final int count = count(state, window, weight);
+                if (count >= maxFailures) {
+                    final int doublings = count - maxFailures;
+                    final long delay = doublings >= 32 ? windowNanos :
+                            Math.min(BASE_DELAY_NANOS << doublings,
+                                    windowNanos);
+                    final long deadline = (now + delay) | 1;
+                    if (!isLockedOut(s.deadlines[slot], deadline)) {
+                        s.deadlines[slot] = deadline;
+                    }
+                }
+            } finally {
+                s.unlock();
+            }
+        }
+        
+        /**
+         * Estimate the failure count of a key in the sliding window.
+         * 
+         * @param key the key hash
+         * @return the failure count estimate
+         */
+        private int estimate(long key) {
+            final long now = System.nanoTime();
+            final Segment s = segment(key);
+            s.lock();
+            try {
+                final int slot = s.find(key);
+                return slot < 0 ? 0 :
+                        count(s.states[slot], window(now), weight(now));
+            } finally {
+                s.unlock();
+            }
+        }
+        
+        /**
+         * Get the number of tracked keys.
+         * 
+         * @return the number of keys
+         */
+        private int size() {
+            int size = 0;
+            for (Segment s : segments) {
+                s.lock();
+                try {
+                    size += s.size;
+                } finally {
+                    s.unlock();
+                }
+            }
+            return size;
+        }
+        
+        /**
+         * Remove all keys.
+         */
+        private void clear() {
+            for (Segment s : segments) {
+                s.lock();
+                try {
+                    s.clear();
+                } finally {
+                    s.unlock();
+                }
+            }
+        }
+    }
+    
+    private final long origin = System.nanoTime();
+    private final long windowNanos;
+    private final Table accounts;
+    private final Table addresses;
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder releasedLockouts = new LongAdder();
+    
+    /**
+     * Default <code>LoginThrottle</code> constructor.
+     */
+    public LoginThrottle() {
+        this(DEFAULT_MAX_ACCOUNT_FAILURES, DEFAULT_MAX_ADDRESS_FAILURES,
+                DEFAULT_WINDOW_MILLIS);
+    }
+    
+    /**
+     * Construct a new <code>LoginThrottle</code>.
+     * 
+     * @param maxAccountFailures maximum failed attempts per account in a
+     *        window
+     * @param maxAddressFailures maximum failed attempts per address in a
+     *        window
+     * @param windowMillis the window length in milliseconds
+     */
+    public LoginThrottle(int maxAccountFailures, int maxAddressFailures,
+            long windowMillis) {
+        this(maxAccountFailures, maxAddressFailures, windowMillis,
+                DEFAULT_MAX_KEYS);
+    }
+    
+    /**
+     * Construct a new <code>LoginThrottle</code> with the specified maximum
+     * number of tracked keys. Each table uses 24 bytes per slot and up to
+     * twice as many slots as keys, so the default of 131,072 keys uses 6 MiB
+     * each for accounts and for addresses.
+     * 
+     * @param maxAccountFailures maximum failed attempts per account in a
+     *        window
+     * @param maxAddressFailures maximum failed attempts per address in a
+     *        window
+     * @param windowMillis the window length in milliseconds
+     * @param maxKeys the maximum number of tracked accounts, and of tracked
+     *        addresses
+     */
+    public LoginThrottle(int maxAccountFailures, int maxAddressFailures,
+            long windowMillis, int maxKeys) {
+        if (maxAccountFailures < 1 || maxAccountFailures > MAX_COUNT
+                || maxAddressFailures < 1 || maxAddressFailures > MAX_COUNT) {
+            throw new IllegalArgumentException("invalid maximum failures");
+        }
+        if (windowMillis < 1000
+                || windowMillis > TimeUnit.DAYS.toMillis(365)) {
+            throw new IllegalArgumentException("invalid window length");
+        }
+        if (maxKeys < 1 || maxKeys > (1 << 26)) {
+            throw new IllegalArgumentException("invalid maximum keys");
+        }
+        windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        accounts = new Table(maxAccountFailures, RNGUtil.nextLong(), maxKeys);
+        addresses = new Table(maxAddressFailures, RNGUtil.nextLong(), maxKeys);
+    }
+    
+    /**
+     * Check whether a login attempt may be made. This should be called before
+     * the password is hashed.
+     * 
+     * @param account the account name, may be null
+     * @param address the client address, may be null
+     * @return zero if the attempt may be made, otherwise the time in
+     *         milliseconds until the account and address are unlocked
+     */
+    public long check(String account, IPAddress address) {
+        final long now = System.nanoTime();
+        long wait = 0;
+        if (account != null) {
+            wait = accounts.lockout(hash(accounts.seed, account), now);
+        }
+        if (address != null) {
+            wait = Math.max(wait, addresses.lockout(
+                    hash(addresses.seed, address), now));
+        }
+        if (wait > 0) {
+            rejections.increment();
+        }
+        return (wait + 999999) / 1000000;
+    }
+    
+    /**
+     * Returns true if a login attempt may be made.
+     * 
+     * @param account the account name, may be null
+     * @param address the client address, may be null
+     * @return true if the attempt may be made
+     */
+    public boolean isAllowed(String account, IPAddress address) {
+        return check(account, address) == 0;
+    }
+    
+    /**
+     * Record a failed login attempt. Failures from IPv6 addresses are counted
+     * against their /64 prefix, so a client cannot evade the address limit by
+     * rotating through the addresses of its own /64.
+     * 
+     * @param account the account name, may be null
+     * @param address the client address, may be null
+     */
+    public void recordFailure(String account, IPAddress address) {
+        final long now = System.nanoTime();
+        if (account != null) {
+            accounts.fail(hash(accounts.seed, account), now);
+        }
+        if (address != null) {
+            addresses.fail(hash(addresses.seed, address), now);
+        }
+        failures.increment();
+    }
+    
+    /**
+     * Get the estimated number of failed attempts for an account in the
+     * sliding window.
+     * 
+     * @param account the account name
+     * @return the failure count estimate
+     */
+    public int getFailureCount(String account) {
+        return accounts.estimate(hash(accounts.seed, account));
+    }
+    
+    /**
+     * Get the estimated number of failed attempts from an address in the
+     * sliding window. IPv6 addresses are counted by /64 prefix.
+     * 
+     * @param address the client address
+     * @return the failure count estimate
+     */
+    public int getFailureCount(IPAddress address) {
+        return addresses.estimate(hash(addresses.seed, address));
+    }
+    
+    /**
+     * Get the total number of failed attempts recorded.
+     * 
+     * @return the failure count
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+    
+    /**
+     * Get the total number of attempts rejected by {@link #check}.
+     * 
+     * @return the rejection count
+     */
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+    
+    /**
+     * Get the number of lockouts released early because a table stripe was
+     * full of locked out keys.
+     * 
+     * @return the released lockout count
+     */
+    public long getReleasedLockoutCount() {
+        return releasedLockouts.sum();
+    }
+    
+    /**
+     * Get the number of tracked accounts.
+     * 
+     * @return the number of accounts
+     */
+    public int getAccountCount() {
+        return accounts.size();
+    }
+    
+    /**
+     * Get the number of tracked addresses.
+     * 
+     * @return the number of addresses
+     */
+    public int getAddressCount() {
+        return addresses.size();
+    }
+    
+    /**
+     * Remove all failure counts and lockouts.
+     */
+    public void clear() {
+        accounts.clear();
+        addresses.clear();
+    }
+    
+    /**
+     * Get the window number of a time.
+     * 
+     * @param now the time
+     * @return the window number
+     */
+    private int window(long now) {
+        return (int)((now - origin) / windowNanos);
+    }
+    
+    /**
+     * Get the weight of the previous window at a time, which is the part of
+     * the previous window still in the sliding window.
+     * 
+     * @param now the time
+     * @return the weight, from 0 to 1
+     */
+    private double weight(long now) {
+        return 1 - (double)((now - origin) % windowNanos) / windowNanos;
+    }
+    
+    /**
+     * Advance a packed window state to the current window.
+     * 
+     * @param state the state
+     * @param window the current window number
+     * @return the advanced state
+     */
+    private static long advance(long state, int window) {
+        final int stateWindow = (int)(state >>> 32);
+        if (stateWindow == window) {
+            return state;
+        }
+        final long current = state & MAX_COUNT;
+        return (long)window << 32
+                | (stateWindow == window - 1 ? current << 16 : 0);
+    }
+    
+    /**
+     * Get the sliding window count of a packed window state.
+     * 
+     * @param state the state
+     * @param window the current window number
+     * @param weight the weight of the previous window
+     * @return the count
+     */
+    private static int count(long state, int window, double weight) {
+        state = advance(state, window);
+        return (int)(state & MAX_COUNT)
+                + (int)(((state >>> 16) & MAX_COUNT) * weight);
+    }
+    
+    /**
+     * Get the eviction level of a lockout, the bit length of its remaining
+     * time, so that lockouts which end sooner have lower levels.
+     * 
+     * @param deadline the deadline of a key which is locked out
+     * @param now the time
+     * @return the level, from 1 to 63
+     */
+    private static int lockoutLevel(long deadline, long now) {
+        return LOCKOUT_LEVELS - Long.numberOfLeadingZeros(deadline - now);
+    }
+    
+    /**
+     * Returns true if a lockout deadline is after a time.
+     * 
+     * @param deadline the deadline, zero if none
+     * @param now the time
+     * @return true if locked out
+     */
+    private static boolean isLockedOut(long deadline, long now) {
+        return deadline != 0 && deadline - now > 0;
+    }
+    
+    /**
+     * Compute the 64-bit seeded hash of an account name. Never zero.
+     * 
+     * @param seed the hash seed
+     * @param value the account name
+     * @return hash
+     */
+    private static long hash(long seed, String value) {
+        long h = seed;
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        h = mix(h ^ value.length());
+        return h != 0 ? h : 1;
+    }
+    
+    /**
+     * Compute the 64-bit seeded hash of the client prefix of an address, so
+     * IPv6 clients are counted by /64. Never zero.
+     * 
+     * @param seed the hash seed
+     * @param address the address
+     * @return hash
+     */
+    private static long hash(long seed, IPAddress address) {
+        address = address.getClientPrefix();
+        long h = mix(mix(seed ^ address.getHigh()) ^ address.getLow());
+        return h != 0 ? h : 1;
+    }
+    
+    /**
+     * 64-bit finalization mix (MurmurHash3 fmix64).
+     * 
+     * @param h the value
+     * @return mixed value
+     */
+    private static long mix(long h) {
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+}
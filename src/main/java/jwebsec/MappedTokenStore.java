@@ -0,0 +1,874 @@
+package jwebsec;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <code>MappedTokenStore</code> is an off-heap <code>TokenStore</code> which
+ * keeps fixed-size token records in an open-addressing hash table stored in a
+ * memory-mapped file. Tokens therefore add nothing to the garbage collected
+ * heap and survive process restarts.
+ * <p>
+ *   Token values are not stored. Each record holds the first 128 bits of the
+ *   SHA-256 hash of the token value, a reference into a table of up to 63
+ *   distinct token IDs, and the issued and expiry times. Lookups hash the
+ *   candidate value into pooled buffers and probe the table without
+ *   locking or allocating, except for the <code>Token</code> returned by
+ *   {@link #get(String)}. Writers are serialized, and each record carries a
+ *   sequence number which is odd while the record is being written, so that
+ *   readers retry instead of seeing a partially written record.
+ * </p>
+ * <p>
+ *   Revoked tokens leave a tombstone, and the slots of revoked and expired
+ *   tokens are reused by later inserts. If an insert finds the table full,
+ *   the table is first rehashed in place under the write lock, dropping
+ *   tombstones and expired tokens; lookups which miss while a rehash is in
+ *   progress wait for it and retry. When the store is opened, any record
+ *   left partially written by a crash is discarded, and if at least an
+ *   eighth of the table holds tombstones and expired tokens, which lengthen
+ *   the probe sequence of every lookup, the file is compacted: the live
+ *   records are copied into a new file which then atomically replaces the
+ *   old one, so a crash during compaction leaves the old file intact. The
+ *   file is locked for exclusive use by one store at a time. Writes reach
+ *   the file through the operating system's page cache even if the process
+ *   dies; call {@link #force()} to also survive an operating system crash.
+ * </p>
+ * <p>
+ *   The table holds at most 33,554,432 records (1.5 GiB), of which 90% may be
+ *   occupied by stored tokens and tombstones.
+ * </p>
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public final class MappedTokenStore implements TokenStore {
+    
+    /* File magic number: &quot;JWTS&quot; */
+    private static final int MAGIC = 0x4A575453;
+    
+    /* File format version (1). */
+    private static final int VERSION = 1;
+    
+    /* Header size in bytes, including the ID table (4,096). */
+    private static final int HEADER_SIZE = 4096;
+    
+    /* Offset of the ID table in the header. */
+    private static final int ID_TABLE_OFFSET = 64;
+    
+    /* ID table entry size in bytes: a length byte and up to 63 UTF-8 bytes. */
+    private static final int ID_ENTRY_SIZE = 64;
+    
+    /* Maximum number of distinct token IDs (63). */
+    public static final int MAX_IDS =
+            (HEADER_SIZE - ID_TABLE_OFFSET) / ID_ENTRY_SIZE;
+    
+    /* Record size in bytes (48). */
+    private static final int RECORD_SIZE = 48;
+    
+    /* Maximum table capacity in records (2<sup>25</sup>). */
+    public static final int MAX_CAPACITY = 1 << 25;
+    
+    /* Record field offsets. */
+    private static final int HASH0 = 0;
+    private static final int HASH1 = 8;
+    private static final int ISSUED_TIME = 16;
+    private static final int EXPIRY_TIME = 24;
+    private static final int ID_REF = 32;
+    private static final int STATE = 36;
+    private static final int SEQUENCE = 40;
+    
+    /* Record states. */
+    private static final int EMPTY = 0;
+    private static final int USED = 1;
+    private static final int REMOVED = 2;
+    
+    /* Big-endian int view of the mapped buffer. */
+    private static final VarHandle INT =
+            MethodHandles.byteBufferViewVarHandle(
+                    int[].class, ByteOrder.BIG_ENDIAN);
+    
+    /* Big-endian long view of a byte array. */
+    private static final VarHandle LONG =
+            MethodHandles.byteArrayViewVarHandle(
+                    long[].class, ByteOrder.BIG_ENDIAN);
+    
+    /* Minimum time between rehashes which free little space (1 second). */
+    private static final long REHASH_BACKOFF_MILLIS = 1000;
+    
+    /* Largest value buffer kept in a pooled scratch space (1,024 bytes). */
+    private static final int MAX_POOLED_BYTES = 1024;
+    
+    /**
+     * <code>Scratch</code> holds a digest, buffers and the fields of the most
+     * recently read record.
+     */
+    private static final class Scratch {
+        
+        private final MessageDigest md;
+        private final byte[] digest = new byte[32];
+        private byte[] bytes = new byte[128];
+        private long hash0;
+        private long hash1;
+        private long issuedTime;
+        private long expiryTime;
+        private int idRef;
+        
+        private Scratch() {
+            try {
+                md = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        
+        /**
+         * Hash a token value in the same encoding as <code>Token</code>:
+         * Latin-1 if possible, otherwise UTF-16.
+         * 
+         * @param value the token value
+         */
+        private void hash(String value) {
+            final int length = value.length();
+            int n = 0;
+            if (bytes.length < 2 * length) {
+                bytes = new byte[2 * length];
+            }
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c > 0xFF) {
+                    n = -1;
+                    break;
+                }
+                bytes[n++] = (byte)c;
+            }
+            if (n < 0) {
+                n = 0;
+                for (int i = 0; i < length; i++) {
+                    char c = value.charAt(i);
+                    bytes[n++] = (byte)(c >>> 8);
+                    bytes[n++] = (byte)c;
+                }
+            }
+            md.update(bytes, 0, n);
+            Arrays.fill(bytes, 0, n, (byte)0);
+            digest();
+        }
+        
+        /**
+         * Hash the value of a token from its value bytes, which are in the
+         * same encoding as {@link #hash(String)}.
+         * 
+         * @param token the token
+         */
+        private void hash(Token token) {
+            md.update(token.getValueBytes());
+            digest();
+        }
+        
+        /**
+         * Complete the digest and keep the first 128 bits of the hash.
+         */
+        private void digest() {
+            try {
+                md.digest(digest, 0, digest.length);
+            } catch (DigestException e) {
+                throw new IllegalStateException(e);
+            }
+            hash0 = (long)LONG.get(digest, 0);
+            hash1 = (long)LONG.get(digest, 8);
+        }
+    }
+    
+    /* Pool of idle scratch spaces, at most a few per processor. */
+    private static final BlockingQueue<Scratch> SCRATCH =
+            new ArrayBlockingQueue<>(
+                    4 * Runtime.getRuntime().availableProcessors());
+    
+    /**
+     * Take a scratch space from the pool, or create one if the pool is empty.
+     * 
+     * @return the scratch space
+     */
+    private static Scratch acquire() {
+        final Scratch s = SCRATCH.poll();
+        return s != null ? s : new Scratch();
+    }
+    
+    /**
+     * Return a scratch space to the pool, shrinking an oversized value
+     * buffer so that pooled buffers stay bounded.
+     * 
+     * @param s the scratch space
+     */
+    private static void release(Scratch s) {
+        if (s.bytes.length > MAX_POOLED_BYTES) {
+            s.bytes = new byte[128];
+        }
+        SCRATCH.offer(s);
+    }
+    
+    /**
+     * Get the record table capacity for the requested maximum number of
+     * tokens.
+     * 
+     * @param maxTokens maximum number of tokens
+     * @return the table capacity
+     */
+    private static int getCapacity(int maxTokens) {
+        long n = (long)maxTokens * 4 / 3 + 1;
+        int capacity = 1024;
+        while (capacity < n && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+    
+    private final Path path;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+    private final int maxOccupied;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile String[] ids;
+    private volatile int size;
+    private volatile int epoch;
+    private int occupied;
+    private long nextRehashTime;
+    private volatile boolean closed = false;
+    
+    /**
+     * Open or create a <code>MappedTokenStore</code> in the specified file. A
+     * new file is sized to hold the specified maximum number of tokens; an
+     * existing file keeps its original capacity.
+     * 
+     * @param path the file path
+     * @param maxTokens maximum number of tokens for a new file
+     * @throws IOException if the file cannot be opened, is locked by another
+     *         store, or is not a valid token store file
+     */
+    public MappedTokenStore(Path path, int maxTokens) throws IOException {
+        this.path = path;
+        compact(path);
+        channel = FileChannel.open(path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            FileLock fl;
+            try {
+                fl = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                fl = null;
+            }
+            fileLock = fl;
+            if (fileLock == null) {
+                throw new IOException("token store file is locked: " + path);
+            }
+            boolean create = channel.size() == 0;
+            int n = create ?
+                    getCapacity(maxTokens) : readCapacity(channel, path);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE,
+                    0, HEADER_SIZE + (long)n * RECORD_SIZE);
+            capacity = n;
+            mask = n - 1;
+            maxOccupied = (int)(n * 9L / 10);
+            if (create) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, capacity);
+                buffer.putInt(12, 0);
+                ids = new String[0];
+            } else {
+                ids = readIds();
+                recover();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Read and validate the header of an existing file.
+     * 
+     * @param channel the file channel
+     * @param path the file path
+     * @return the table capacity
+     * @throws IOException if the file is not a valid token store file
+     */
+    private static int readCapacity(FileChannel channel, Path path)
+            throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(12);
+        channel.read(header, 0);
+        int n = header.getInt(8);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                || n < 1 || n > MAX_CAPACITY || Integer.bitCount(n) != 1
+                || channel.size() < HEADER_SIZE + (long)n * RECORD_SIZE) {
+            throw new IOException("invalid token store file: " + path);
+        }
+        return n;
+    }
+    
+    /**
+     * Read the ID table of an existing file.
+     * 
+     * @return the token IDs
+     */
+    private String[] readIds() {
+        int n = Math.min(buffer.getInt(12), MAX_IDS);
+        String[] table = new String[n];
+        byte[] bytes = new byte[ID_ENTRY_SIZE - 1];
+        for (int i = 0; i < n; i++) {
+            int offset = ID_TABLE_OFFSET + i * ID_ENTRY_SIZE;
+            int len = buffer.get(offset) & 0xFF;
+            buffer.get(offset + 1, bytes, 0, len);
+            table[i] = Token.canonicalize(
+                    new String(bytes, 0, len, StandardCharsets.UTF_8));
+        }
+        return table;
+    }
+    
+    /**
+     * Compact an existing, unlocked file if at least an eighth of its table
+     * holds tombstones, expired tokens or records left partially written by
+     * a crash. The live records are inserted into a new table in a temporary
+     * file, which is forced to the storage device and then atomically moved
+     * over the old file while the old file is still locked.
+     * 
+     * @param path the file path
+     * @throws IOException if the file cannot be compacted
+     */
+    private static void compact(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return;
+        }
+        Path temp = null;
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock fl;
+            try {
+                fl = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                fl = null;
+            }
+            if (fl == null || channel.size() == 0) {
+                // locked or new, left to the constructor
+                return;
+            }
+            final int n = readCapacity(channel, path);
+            final long length = HEADER_SIZE + (long)n * RECORD_SIZE;
+            final MappedByteBuffer from =
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            final long now = System.currentTimeMillis();
+            int dead = 0;
+            for (int i = 0; i < n; i++) {
+                if (!isLive(from, offset(i), now)
+                        && from.getInt(offset(i) + STATE) != EMPTY) {
+                    dead++;
+                }
+            }
+            if (dead < n / 8) {
+                return;
+            }
+            Path dir = path.toAbsolutePath().getParent();
+            temp = Files.createTempFile(
+                    dir, path.getFileName().toString(), ".tmp");
+            try (FileChannel out = FileChannel.open(temp,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                final MappedByteBuffer to =
+                        out.map(FileChannel.MapMode.READ_WRITE, 0, length);
+                to.put(0, from, 0, HEADER_SIZE);
+                final int mask = n - 1;
+                for (int i = 0; i < n; i++) {
+                    final int base = offset(i);
+                    if (!isLive(from, base, now)) {
+                        continue;
+                    }
+                    int index = (int)from.getLong(base + HASH0) & mask;
+                    while (to.getInt(offset(index) + STATE) != EMPTY) {
+                        index = (index + 1) & mask;
+                    }
+                    to.put(offset(index), from, base, SEQUENCE);
+                }
+                to.force();
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            if (temp != null) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+    
+    /**
+     * Returns true if a record holds a token which has not expired and was
+     * completely written.
+     * 
+     * @param buffer the mapped file
+     * @param base the record offset
+     * @param now the current time
+     * @return true if the record is live
+     */
+    private static boolean isLive(ByteBuffer buffer, int base, long now) {
+        return buffer.getInt(base + STATE) == USED
+                && (buffer.getInt(base + SEQUENCE) & 1) == 0
+                && buffer.getLong(base + EXPIRY_TIME) > now;
+    }
+    
+    /**
+     * Discard records left partially written by a crash and recount the
+     * stored tokens.
+     */
+    private void recover() {
+        int used = 0;
+        for (int i = 0; i < capacity; i++) {
+            int base = HEADER_SIZE + i * RECORD_SIZE;
+            int seq = buffer.getInt(base + SEQUENCE);
+            if ((seq & 1) != 0) {
+                buffer.putInt(base + STATE, REMOVED);
+                buffer.putInt(base + SEQUENCE, seq + 1);
+            }
+            int state = buffer.getInt(base + STATE);
+            if (state == USED) {
+                used++;
+            }
+            if (state != EMPTY) {
+                occupied++;
+            }
+        }
+        size = used;
+    }
+    
+    /**
+     * Get the offset of a record.
+     * 
+     * @param index the record index
+     * @return the record offset
+     */
+    private static int offset(int index) {
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+    
+    /**
+     * Find the record with the hash in the scratch space and copy its fields
+     * into the scratch space. A lookup which misses while the table is being
+     * rehashed waits for the rehash to finish and is retried.
+     * 
+     * @param s the scratch space, holding the hash
+     * @return true if a record with the hash was found
+     */
+    private boolean read(Scratch s) {
+        checkOpen();
+        while (true) {
+            final int e = epoch;
+            if (find(s)) {
+                return true;
+            }
+            VarHandle.loadLoadFence();
+            if ((e & 1) == 0 && e == epoch) {
+                return false;
+            }
+            lock.lock();
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Probe the table once for the record with the hash in the scratch space
+     * and copy its fields into the scratch space.
+     * 
+     * @param s the scratch space, holding the hash
+     * @return true if a record with the hash was found
+     */
+    private boolean find(Scratch s) {
+        int index = (int)s.hash0 & mask;
+        for (int probe = 0; probe < capacity; probe++) {
+            final int base = offset(index);
+            int state, seq;
+            long h0, h1;
+            do {
+                while (((seq = (int)INT.getAcquire(buffer, base + SEQUENCE))
+                        & 1) != 0) {
+                    Thread.onSpinWait();
+                }
+                state = buffer.getInt(base + STATE);
+                h0 = buffer.getLong(base + HASH0);
+                h1 = buffer.getLong(base + HASH1);
+                s.issuedTime = buffer.getLong(base + ISSUED_TIME);
+                s.expiryTime = buffer.getLong(base + EXPIRY_TIME);
+                s.idRef = buffer.getInt(base + ID_REF);
+                VarHandle.loadLoadFence();
+            } while (seq != (int)INT.getAcquire(buffer, base + SEQUENCE));
+            if (state == EMPTY) {
+                return false;
+            } else if (state == USED && h0 == s.hash0 && h1 == s.hash1) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+    
+    /**
+     * Write the fields of a record, bracketed by sequence number updates.
+     * 
+     * @param index the record index
+     * @param state the record state
+     * @param s the scratch space holding the record fields
+     */
+    private void write(int index, int state, Scratch s) {
+        final int base = offset(index);
+        final int seq = buffer.getInt(base + SEQUENCE);
+        INT.setOpaque(buffer, base + SEQUENCE, seq + 1);
+        VarHandle.storeStoreFence();
+        buffer.putLong(base + HASH0, s.hash0);
+        buffer.putLong(base + HASH1, s.hash1);
+        buffer.putLong(base + ISSUED_TIME, s.issuedTime);
+        buffer.putLong(base + EXPIRY_TIME, s.expiryTime);
+        buffer.putInt(base + ID_REF, s.idRef);
+        buffer.putInt(base + STATE, state);
+        INT.setRelease(buffer, base + SEQUENCE, seq + 2);
+    }
+    
+    /**
+     * Clear the fields of a record, bracketed by sequence number updates.
+     * 
+     * @param index the record index
+     * @param state the new record state, <code>EMPTY</code> or
+     *        <code>REMOVED</code>
+     */
+    private void clear(int index, int state) {
+        final int base = offset(index);
+        final int seq = buffer.getInt(base + SEQUENCE);
+        INT.setOpaque(buffer, base + SEQUENCE, seq + 1);
+        VarHandle.storeStoreFence();
+        buffer.putLong(base + HASH0, 0);
+        buffer.putLong(base + HASH1, 0);
+        buffer.putLong(base + ISSUED_TIME, 0);
+        buffer.putLong(base + EXPIRY_TIME, 0);
+        buffer.putInt(base + ID_REF, -1);
+        buffer.putInt(base + STATE, state);
+        INT.setRelease(buffer, base + SEQUENCE, seq + 2);
+    }
+    
+    /**
+     * Rehash the table in place, dropping tombstones and expired tokens so
+     * that their slots become empty. Must be called while holding the write
+     * lock.
+     * <p>
+     *   Live records are reinserted in table order, starting after a slot
+     *   which was empty before anything was dropped, so no probe sequence
+     *   wraps past the start and each record only moves into a slot that
+     *   has already been settled. A moved record is cleared before it is
+     *   written to its new slot, so a crash during a rehash may lose a token
+     *   but never leaves a stale copy which could outlive its revocation.
+     * </p>
+     * 
+     * @param now the current time
+     */
+    private void rehash(long now) {
+        int start = 0;
+        while (buffer.getInt(offset(start) + STATE) != EMPTY) {
+            start++;
+        }
+        final Scratch s = acquire();
+        epoch++;
+        VarHandle.storeStoreFence();
+        try {
+            for (int i = 0; i < capacity; i++) {
+                final int base = offset(i);
+                if (buffer.getInt(base + STATE) != EMPTY
+                        && !isLive(buffer, base, now)) {
+                    clear(i, EMPTY);
+                }
+            }
+            int used = 0;
+            for (int k = 1; k < capacity; k++) {
+                final int i = (start + k) & mask;
+                final int base = offset(i);
+                if (buffer.getInt(base + STATE) != USED) {
+                    continue;
+                }
+                used++;
+                int index = (int)buffer.getLong(base + HASH0) & mask;
+                while (index != i
+                        && buffer.getInt(offset(index) + STATE) != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                if (index != i) {
+                    s.hash0 = buffer.getLong(base + HASH0);
+                    s.hash1 = buffer.getLong(base + HASH1);
+                    s.issuedTime = buffer.getLong(base + ISSUED_TIME);
+                    s.expiryTime = buffer.getLong(base + EXPIRY_TIME);
+                    s.idRef = buffer.getInt(base + ID_REF);
+                    clear(i, EMPTY);
+                    write(index, USED, s);
+                }
+            }
+            occupied = used;
+            size = used;
+            // a table full of live tokens is not rescanned on every insert
+            nextRehashTime = occupied > maxOccupied - capacity / 16 ?
+                    now + REHASH_BACKOFF_MILLIS : 0;
+        } finally {
+            epoch++;
+            release(s);
+        }
+    }
+    
+    /**
+     * Get the reference of a token ID, adding it to the ID table if
+     * necessary. Must be called while holding the write lock.
+     * 
+     * @param id the token ID
+     * @return the ID reference, or -1 for a null ID
+     */
+    private int getIdRef(String id) {
+        if (id == null) {
+            return -1;
+        }
+        String[] table = ids;
+        for (int i = 0; i < table.length; i++) {
+            if (table[i].equals(id)) {
+                return i;
+            }
+        }
+        byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= ID_ENTRY_SIZE) {
+            throw new IllegalArgumentException("token ID is too long: " + id);
+        } else if (table.length == MAX_IDS) {
+            throw new IllegalStateException("token ID table is full");
+        }
+        int offset = ID_TABLE_OFFSET + table.length * ID_ENTRY_SIZE;
+        buffer.put(offset, (byte)bytes.length);
+        buffer.put(offset + 1, bytes);
+        buffer.putInt(12, table.length + 1);
+        table = Arrays.copyOf(table, table.length + 1);
+        table[table.length - 1] = Token.canonicalize(id);
+        ids = table;
+        return table.length - 1;
+    }
+    
+    @Override
+    public void put(Token token) {
+        final Scratch s = acquire();
+        s.hash(token);
+        final long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            checkOpen();
+            int target;
+            int targetState;
+            boolean rehashed = false;
+            while (true) {
+                int index = (int)s.hash0 & mask;
+                target = -1;
+                targetState = EMPTY;
+                for (int probe = 0; probe < capacity; probe++) {
+                    final int base = offset(index);
+                    final int state = buffer.getInt(base + STATE);
+                    if (state == EMPTY) {
+                        if (target < 0) {
+                            target = index;
+                        }
+                        break;
+                    } else if (state == USED
+                            && buffer.getLong(base + HASH0) == s.hash0
+                            && buffer.getLong(base + HASH1) == s.hash1) {
+                        target = index;
+                        targetState = USED;
+                        break;
+                    } else if (target < 0 && (state == REMOVED
+                            || buffer.getLong(base + EXPIRY_TIME) <= now)) {
+                        // reusable slot, keep probing for an existing record
+                        target = index;
+                        targetState = state;
+                    }
+                    index = (index + 1) & mask;
+                }
+                if (target >= 0 && (targetState != EMPTY
+                        || occupied < maxOccupied)) {
+                    break;
+                } else if (rehashed || now < nextRehashTime) {
+                    throw new IllegalStateException("token store is full");
+                }
+                rehash(now);
+                rehashed = true;
+            }
+            s.issuedTime = token.getIssuedTime();
+            s.expiryTime = token.getExpiryTime();
+            s.idRef = getIdRef(token.getId());
+            write(target, USED, s);
+            if (targetState == EMPTY) {
+                occupied++;
+            }
+            if (targetState != USED) {
+                size++;
+            }
+        } finally {
+            lock.unlock();
+            release(s);
+        }
+    }
+    
+    @Override
+    public Token get(String value) {
+        if (value == null) {
+            return null;
+        }
+        final Scratch s = acquire();
+        try {
+            s.hash(value);
+            Token token = null;
+            if (read(s) && s.expiryTime > System.currentTimeMillis()) {
+                token = new Token(
+                        s.idRef < 0 ? null : ids[s.idRef],
+                        value,
+                        s.issuedTime,
+                        s.expiryTime);
+            }
+            return token;
+        } finally {
+            release(s);
+        }
+    }
+    
+    @Override
+    public boolean contains(String value) {
+        if (value == null) {
+            return false;
+        }
+        final Scratch s = acquire();
+        try {
+            s.hash(value);
+            return read(s) && s.expiryTime > System.currentTimeMillis();
+        } finally {
+            release(s);
+        }
+    }
+    
+    @Override
+    public boolean revoke(String value) {
+        if (value == null) {
+            return false;
+        }
+        final Scratch s = acquire();
+        s.hash(value);
+        lock.lock();
+        try {
+            checkOpen();
+            int index = (int)s.hash0 & mask;
+            for (int probe = 0; probe < capacity; probe++) {
+                final int base = offset(index);
+                final int state = buffer.getInt(base + STATE);
+                if (state == EMPTY) {
+                    break;
+                } else if (state == USED
+                        && buffer.getLong(base + HASH0) == s.hash0
+                        && buffer.getLong(base + HASH1) == s.hash1) {
+                    clear(index, REMOVED);
+                    size--;
+                    return true;
+                }
+                index = (index + 1) & mask;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+            release(s);
+        }
+    }
+    
+    /**
+     * Get the number of token records, including expired tokens whose slots
+     * have not yet been reused or dropped by a rehash.
+     * 
+     * @return the number of tokens
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Get the table capacity in records.
+     * 
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * Get the file path of this store.
+     * 
+     * @return the file path
+     */
+    public Path getPath() {
+        return path;
+    }
+    
+    /**
+     * Force all changes to this store to be written to the storage device.
+     */
+    public void force() {
+        checkOpen();
+        buffer.force();
+    }
+    
+    /**
+     * Throws <code>IllegalStateException</code> if this store has been
+     * closed.
+     */
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("token store is closed");
+        }
+    }
+    
+    /**
+     * Write all changes to the storage device, release the file lock and
+     * close the file. The mapping itself is released when it is garbage
+     * collected.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (!closed) {
+                closed = true;
+                buffer.force();
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -2,26 +2,235 @@ package jwebsec;
 
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.Locale;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * <code>RNGUtil</code> provides some basic random number generation utilities.
- * This class will attempt to use a strong
- * <code>java.security.SecureRandom</code> instance first, falling back to
- * <code>java.util.Random</code> in the event that no such algorithm is
- * available.
+ * This class will attempt to use a <code>java.security.SecureRandom</code>
+ * instance of the configured {@link EntropyMode} first, falling back to the
+ * platform default <code>SecureRandom</code> in the event that no such
+ * algorithm is available.
+ * <p>
+ *   The entropy mode is selected once at startup from the
+ *   <code>jwebsec.rng.entropyMode</code> system property, and defaults to
+ *   {@link EntropyMode#DRBG}. In the non-blocking modes a single strong seed
+ *   is read when this class is initialized and mixed into every instance
+ *   created afterwards, so token and salt generation never block on the
+ *   system entropy pool.
+ * </p>
+ * <p>
+ *   The static convenience methods draw from a fixed pool of striped
+ *   <code>SecureRandom</code> instances selected by the calling thread's ID,
+ *   so concurrent callers rarely contend on the same generator monitor. The
+ *   pool size is bounded by the number of available processors rather than
+ *   the number of threads, which keeps it safe for use with virtual threads,
+ *   and each stripe is periodically replaced with a freshly seeded instance.
+ *   The replacement is created by a single background virtual thread per
+ *   stripe while callers keep using the current instance, so no caller
+ *   waits for a new <code>SecureRandom</code> to be instantiated and seeded.
+ * </p>
  * <p>
  *   &copy;2025 jWebSec. All rights reserved.
  * </p>
  * 
- * @version 0.1.1
+ * @version 0.3.0
  * @author <a href="andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
  */
 public final class RNGUtil {
     
-    /* Private <code>Random</code> instance for internal use only. */
-    private static final Random RNG =
-            createRandomInstance(generateInitialSeed());
+    /**
+     * <code>EntropyMode</code> selects the <code>SecureRandom</code> algorithm
+     * used by all <code>Random</code> instances created by this class.
+     */
+    public static enum EntropyMode {
+        
+        /**
+         * NIST SP 800-90A deterministic random bit generator, seeded once and
+         * non-blocking afterwards.
+         */
+        DRBG("DRBG"),
+        
+        /**
+         * Native PRNG reading from the non-blocking system source, e.g.,
+         * <code>/dev/urandom</code>.
+         */
+        NON_BLOCKING("NativePRNGNonBlocking"),
+        
+        /**
+         * The platform's strong algorithm, as returned by
+         * <code>SecureRandom.getInstanceStrong()</code>, which may block.
+         */
+        STRONG(null);
+        
+        private final String algorithm;
+        
+        private EntropyMode(String algorithm) {
+            this.algorithm = algorithm;
+        }
+        
+        /**
+         * Create a new <code>SecureRandom</code> instance for this mode.
+         * 
+         * @return a new <code>SecureRandom</code> instance
+         * @throws NoSuchAlgorithmException if the algorithm is not available
+         */
+        SecureRandom newSecureRandom() throws NoSuchAlgorithmException {
+            return algorithm == null ?
+                    SecureRandom.getInstanceStrong() :
+                    SecureRandom.getInstance(algorithm);
+        }
+    }
+    
+    /* System property name: &quot;jwebsec.rng.entropyMode&quot; */
+    public static final String ENTROPY_MODE_PROPERTY =
+            "jwebsec.rng.entropyMode";
+    
+    /* Strong seed length in bytes (32). */
+    private static final int STRONG_SEED_LENGTH = 32;
+    
+    /* Logger */
+    private static final Logger LOGGER =
+            Logger.getLogger(RNGUtil.class.getName());
+    
+    /* Entropy mode selected at startup. */
+    private static final EntropyMode ENTROPY_MODE = resolveEntropyMode();
+    
+    /* One-time strong seed for the non-blocking modes, otherwise null. */
+    private static final byte[] STRONG_SEED = generateStrongSeed();
+    
+    /* Maximum number of pool stripes (256). */
+    private static final int MAX_STRIPES = 256;
+    
+    /* Number of uses after which a pool stripe is reseeded (65,536). */
+    private static final int RESEED_INTERVAL = 65536;
+    
+    /* Number of stripe reseeds started. */
+    private static final LongAdder RESEEDS = new LongAdder();
+    
+    /* Striped pool of <code>Random</code> instances for internal use only. */
+    private static final Stripe[] POOL = createPool();
+    
+    /**
+     * <code>Stripe</code> holds one pooled <code>Random</code> instance, its
+     * use count and whether a replacement is being created.
+     */
+    private static final class Stripe {
+        
+        private volatile Random rng;
+        private final AtomicBoolean reseeding = new AtomicBoolean();
+        
+        /* Racy use count, lost updates only delay reseeding. */
+        private int uses;
+        
+        private Stripe(Random rng) {
+            this.rng = rng;
+        }
+        
+        /**
+         * Get this stripe's <code>Random</code> instance. Once the reseed
+         * interval is reached, exactly one caller starts a background virtual
+         * thread which replaces the instance with a freshly seeded one.
+         * 
+         * @return the <code>Random</code> instance
+         */
+        private Random get() {
+            Random r = rng;
+            if (++uses >= RESEED_INTERVAL
+                    && reseeding.compareAndSet(false, true)) {
+                uses = 0;
+                final long seed = r.nextLong() ^ System.nanoTime();
+                RESEEDS.increment();
+                Thread.ofVirtual()
+                        .name("jwebsec-rng-reseed")
+                        .start(() -> {
+                            try {
+                                rng = createRandomInstance(seed);
+                            } finally {
+                                reseeding.set(false);
+                            }
+                        });
+            }
+            return r;
+        }
+    }
+    
+    /**
+     * Creates the striped pool, sized to the next power of two of at least
+     * twice the number of available processors.
+     * 
+     * @return the pool
+     */
+    private static Stripe[] createPool() {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int n = 1;
+        while (n < 2 * cpus && n < MAX_STRIPES) {
+            n <<= 1;
+        }
+        long seed = generateInitialSeed();
+        Stripe[] pool = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            pool[i] = new Stripe(
+                    createRandomInstance(seed + i * 0x9E3779B97F4A7C15L));
+        }
+        return pool;
+    }
+    
+    /**
+     * Get the pooled <code>Random</code> instance for the current thread.
+     * 
+     * @return the pooled <code>Random</code> instance
+     */
+    private static Random rng() {
+        long h = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+        return POOL[(int)(h >>> 32) & (POOL.length - 1)].get();
+    }
+    
+    /**
+     * Resolves the entropy mode from the system property, defaulting to
+     * {@link EntropyMode#DRBG} if not set or invalid.
+     * 
+     * @return the entropy mode
+     */
+    private static EntropyMode resolveEntropyMode() {
+        EntropyMode mode = EntropyMode.DRBG;
+        String param = System.getProperty(ENTROPY_MODE_PROPERTY);
+        if (param != null && !(param = param.trim()).isEmpty()) {
+            try {
+                mode = EntropyMode.valueOf(param.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                LOGGER.log(
+                        Level.WARNING,
+                        "invalid entropy mode: {0}, using {1}",
+                        new Object[]{param, mode});
+            }
+        }
+        return mode;
+    }
+    
+    /**
+     * Reads a one-time seed from the strong entropy source for the
+     * non-blocking modes. This is the only point at which this class may
+     * block on the system entropy pool.
+     * 
+     * @return strong seed, or null in strong mode or if unavailable
+     */
+    private static byte[] generateStrongSeed() {
+        byte[] seed = null;
+        if (ENTROPY_MODE != EntropyMode.STRONG) {
+            try {
+                seed = SecureRandom.getInstanceStrong()
+                        .generateSeed(STRONG_SEED_LENGTH);
+            } catch (NoSuchAlgorithmException e) {
+                LOGGER.log(Level.WARNING, "no strong seed available", e);
+            }
+        }
+        return seed;
+    }
     
     /**
      * Generates an initial seed for internal use only.
@@ -47,7 +256,8 @@ public final class RNGUtil {
      * @return random seed
      */
     public static long generateRandomSeed() {
-        return RNG.nextLong() ^ RNG.nextLong();
+        Random rng = rng();
+        return rng.nextLong() ^ rng.nextLong();
     }
     
     /**
@@ -56,7 +266,7 @@ public final class RNGUtil {
      * @return a new <code>Random</code> instance
      */
     public static Random createRandomInstance() {
-        return createRandomInstance(RNG.nextLong());
+        return createRandomInstance(rng().nextLong());
     }
     
     /**
@@ -66,16 +276,37 @@ public final class RNGUtil {
      * @return a new <code>Random</code> instance
      */
     public static Random createRandomInstance(long seed) {
-        Random rng;
+        SecureRandom rng;
         try {
-            rng = SecureRandom.getInstanceStrong();
-            rng.setSeed(seed);
+            rng = ENTROPY_MODE.newSecureRandom();
         } catch (NoSuchAlgorithmException e) {
-            rng = new Random(seed);
+            rng = new SecureRandom();
         }
+        if (STRONG_SEED != null) {
+            rng.setSeed(STRONG_SEED);
+        }
+        rng.setSeed(seed);
         return rng;
     }
     
+    /**
+     * Get the number of pool stripe reseeds started.
+     * 
+     * @return the reseed count
+     */
+    static long getReseedCount() {
+        return RESEEDS.sum();
+    }
+    
+    /**
+     * Get the entropy mode selected at startup.
+     * 
+     * @return the entropy mode
+     */
+    public static EntropyMode getEntropyMode() {
+        return ENTROPY_MODE;
+    }
+    
     /**
      * Convenience method for generating an array of random bytes.
      * 
@@ -84,7 +315,7 @@ public final class RNGUtil {
      */
     public static byte[] nextBytes(int length) {
         byte[] bytes = new byte[length];
-        RNG.nextBytes(bytes);
+        rng().nextBytes(bytes);
         return bytes;
     }
     
@@ -94,7 +325,7 @@ public final class RNGUtil {
      * @return the next random int value
      */
     public static int nextInt() {
-        return RNG.nextInt();
+        return rng().nextInt();
     }
     
     /**
@@ -105,7 +336,7 @@ public final class RNGUtil {
      * @return the next random int value
      */
     public static int nextInt(int bound) {
-        return RNG.nextInt(bound);
+        return rng().nextInt(bound);
     }
     
     /**
@@ -114,7 +345,7 @@ public final class RNGUtil {
      * @return the next random long value
      */
     public static long nextLong() {
-        return RNG.nextLong();
+        return rng().nextLong();
     }
     
     /**
@@ -125,6 +356,6 @@ public final class RNGUtil {
      * @return the next random long value
      */
     public static long nextLong(long bound) {
-        return RNG.nextLong(bound);
+        return rng().nextLong(bound);
     }
 }
@@ -1,7 +1,11 @@
 package jwebsec;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 import java.util.Random;
+import java.util.function.Consumer;
 
 /**
  * <code>RandomTokenGenerator</code> can be used to generate reasonably secure
@@ -13,13 +17,33 @@ import java.util.Random;
  *   It is generally recommended to use alphanumeric (Base-62) tokens, as that
  *   should provide ample security without requiring any special encoding, such
  *   as is generally the case for Base-64 strings which must be URL encoded
- *   before being passed as a request parameter in an URL.
+ *   before being passed as a request parameter in an URL. Where a denser
+ *   encoding is needed, URL-safe Base-64 and Base-32 tokens are encoded
+ *   directly from the random bytes into a value of exactly the requested
+ *   length, without padding, and can be used in URLs as-is.
+ * </p>
+ * <p>
+ *   Character tokens are generated from a single buffer of random bytes per
+ *   token, mapping each byte to the alphabet with rejection sampling so that
+ *   every character is uniformly distributed.
+ * </p>
+ * <p>
+ *   Alphanumeric and hexadecimal token values can optionally be taken from a
+ *   {@link TokenReservoir} of pre-generated values, in which case they are
+ *   only generated inline when the reservoir is empty.
+ * </p>
+ * <p>
+ *   Large numbers of tokens can be created at once with the batch methods,
+ *   which slice all token values from one shared buffer of random bytes, read
+ *   the clock once, and can stream each token to a <code>Consumer</code> so
+ *   that the batch never has to be held in memory. Batch token values are
+ *   always generated inline and bypass the token reservoir.
  * </p>
  * <p>
  *   &copy;2025 jWebSec. All rights reserved.
  * </p>
  * 
- * @version 0.3.0
+ * @version 0.7.0
  * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
  */
 public final class RandomTokenGenerator {
@@ -34,7 +58,7 @@ public final class RandomTokenGenerator {
     public static final int DEFAULT_TOKEN_LENGTH = 64;
     
     /* Standard English alphanumeric characters. */
-    private static final char[] ALPHANUMERIC_CHARS = new char[]{
+    private static final byte[] ALPHANUMERIC_CHARS = new byte[]{
         '0', '1', '2', '3', '4', '5', '6', '7', '8', '9',
         'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J',
         'K', 'L', 'M', 'N', 'O', 'P', 'Q', 'R', 'S', 'T',
@@ -44,6 +68,30 @@ public final class RandomTokenGenerator {
         'y', 'z'
     };
     
+    /* URL-safe Base-64 characters (RFC 4648 section 5). */
+    private static final byte[] BASE64URL_CHARS =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+                    .getBytes(StandardCharsets.US_ASCII);
+    
+    /* Base-32 characters (RFC 4648 section 6). */
+    private static final byte[] BASE32_CHARS =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567"
+                    .getBytes(StandardCharsets.US_ASCII);
+    
+    /* Crockford's Base-32 characters. */
+    private static final byte[] CROCKFORD_BASE32_CHARS =
+            "0123456789ABCDEFGHJKMNPQRSTVWXYZ"
+                    .getBytes(StandardCharsets.US_ASCII);
+    
+    /* Alphanumeric radix (62). */
+    static final int ALPHANUMERIC_RADIX = 62;
+    
+    /* Hexadecimal radix (16). */
+    static final int HEXADECIMAL_RADIX = 16;
+    
+    /* Maximum random byte buffer size for batch token creation (64 KiB). */
+    private static final int MAX_BATCH_BUFFER_SIZE = 65536;
+    
     /**
      * Checks the token length to ensure that it is between the minimum and
      * maximum token value lengths.
@@ -51,7 +99,7 @@ public final class RandomTokenGenerator {
      * @param length the length of the token in characters
      * @return the validated token length
      */
-    private static int checkTokenLength(int length) {
+    static int checkTokenLength(int length) {
         if (length < MIN_TOKEN_LENGTH) {
             length = MIN_TOKEN_LENGTH;
         } else if (length > MAX_TOKEN_LENGTH) {
@@ -60,7 +108,84 @@ public final class RandomTokenGenerator {
         return length;
     }
     
+    /**
+     * Get the number of random bytes for a Base-64 token of the specified
+     * length.
+     * 
+     * @param length the token value length
+     * @return the number of random bytes
+     */
+    private static int getBase64ByteLength(int length) {
+        length = 3 * checkTokenLength(length) / 4;
+        int r = length % 4;
+        if (r > 0) {
+            length += 4 - r;
+        }
+        return length;
+    }
+    
+    /**
+     * Checks the batch token count.
+     * 
+     * @param count the number of tokens
+     * @return the validated token count
+     */
+    private static int checkTokenCount(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("negative token count");
+        }
+        return count;
+    }
+    
+    /**
+     * <code>RandomBytes</code> hands out random bytes from a shared buffer,
+     * refilling it from the generator's RNG as it is consumed.
+     */
+    private final class RandomBytes {
+        
+        private final byte[] buffer;
+        private int position;
+        
+        private RandomBytes(long size) {
+            buffer = new byte[(int)Math.min(size, MAX_BATCH_BUFFER_SIZE)];
+            position = buffer.length;
+        }
+        
+        /**
+         * Get the next random byte as an unsigned value.
+         * 
+         * @return the next random byte
+         */
+        private int next() {
+            if (position == buffer.length) {
+                RNG.nextBytes(buffer);
+                position = 0;
+            }
+            return buffer[position++] & 0xFF;
+        }
+        
+        /**
+         * Copy the next random bytes into the destination array.
+         * 
+         * @param dest the destination array
+         */
+        private void next(byte[] dest) {
+            int n = 0;
+            while (n < dest.length) {
+                if (position == buffer.length) {
+                    RNG.nextBytes(buffer);
+                    position = 0;
+                }
+                int len = Math.min(dest.length - n, buffer.length - position);
+                System.arraycopy(buffer, position, dest, n, len);
+                position += len;
+                n += len;
+            }
+        }
+    }
+    
     private final Random RNG;
+    private volatile TokenReservoir reservoir = null;
     
     /**
      * Default <code>RandomTokenGenerator</code> constructor.
@@ -80,18 +205,153 @@ public final class RandomTokenGenerator {
     }
     
     /**
-     * Generate a character token ID of the specified length and radix.
+     * Get this generator's token reservoir, or null if it has not been set.
+     * 
+     * @return the token reservoir or null
+     */
+    public TokenReservoir getTokenReservoir() {
+        return reservoir;
+    }
+    
+    /**
+     * Set this generator's token reservoir, or null to always generate token
+     * values inline.
+     * 
+     * @param r the token reservoir
+     */
+    public void setTokenReservoir(TokenReservoir r) {
+        reservoir = r;
+    }
+    
+    /**
+     * Take a character token value of the specified length and radix from the
+     * token reservoir, or generate it inline if the reservoir is not set or
+     * is empty.
+     * 
+     * @param length the token value length
+     * @param radix the radix for the character set
+     * @return character token value
+     */
+    private String nextCharTokenValue(int length, int radix) {
+        length = checkTokenLength(length);
+        final TokenReservoir r = reservoir;
+        String value = r == null ? null : r.poll(length, radix);
+        return value == null ? createCharTokenValue(length, radix) : value;
+    }
+    
+    /**
+     * Generate a character token ID of the specified length and radix. The
+     * random bytes are first drawn into the value itself; if any are
+     * rejected, one retry buffer sized for the first shortfall is allocated
+     * and reused until the value is complete.
      * 
      * @param length the token ID length
      * @param radix the radix for the character set
      * @return character token ID
      */
-    private String createCharTokenValue(int length, int radix) {
-        StringBuilder value = new StringBuilder(checkTokenLength(length));
-        for (int i = 0; i < length; i++) {
-            value.append(ALPHANUMERIC_CHARS[RNG.nextInt(radix)]);
+    String createCharTokenValue(int length, int radix) {
+        length = checkTokenLength(length);
+        // bytes at or above the limit are rejected to avoid modulo bias
+        final int limit = 256 - 256 % radix;
+        byte[] value = new byte[length];
+        byte[] bytes = value;
+        int n = 0;
+        while (n < length) {
+            RNG.nextBytes(bytes);
+            for (int i = 0; i < bytes.length && n < length; i++) {
+                int b = bytes[i] & 0xFF;
+                if (b < limit) {
+                    value[n++] = ALPHANUMERIC_CHARS[b % radix];
+                }
+            }
+            if (n < length && bytes == value) {
+                bytes = new byte[length - n];
+            }
+        }
+        return new String(value, StandardCharsets.ISO_8859_1);
+    }
+    
+    /**
+     * Generate a token value of the specified length from an alphabet of
+     * 2<sup>bits</sup> characters, packing the random bytes so that every bit
+     * is used exactly once.
+     * 
+     * @param length the token value length
+     * @param alphabet the character set
+     * @param bits the number of bits per character
+     * @return token value
+     */
+    private String createBitsTokenValue(int length, byte[] alphabet, int bits) {
+        length = checkTokenLength(length);
+        final int mask = (1 << bits) - 1;
+        byte[] bytes = new byte[(length * bits + 7) >>> 3];
+        RNG.nextBytes(bytes);
+        byte[] value = new byte[length];
+        int acc = 0;
+        for (int i = 0, j = 0, n = 0; i < length; i++) {
+            if (n < bits) {
+                acc = acc << 8 | bytes[j++] & 0xFF;
+                n += 8;
+            }
+            n -= bits;
+            value[i] = alphabet[acc >>> n & mask];
+        }
+        return new String(value, StandardCharsets.ISO_8859_1);
+    }
+    
+    /**
+     * Generate a character token value of the specified length and radix from
+     * a shared buffer of random bytes.
+     * 
+     * @param length the validated token value length
+     * @param radix the radix for the character set
+     * @param bytes the random bytes
+     * @return character token value
+     */
+    private static String createCharTokenValue(
+            int length, int radix, RandomBytes bytes) {
+        final int limit = 256 - 256 % radix;
+        byte[] value = new byte[length];
+        int n = 0;
+        while (n < length) {
+            int b = bytes.next();
+            if (b < limit) {
+                value[n++] = ALPHANUMERIC_CHARS[b % radix];
+            }
+        }
+        return new String(value, StandardCharsets.ISO_8859_1);
+    }
+    
+    /**
+     * Create a batch of character tokens and pass each to the consumer.
+     * 
+     * @param id the token ID/name
+     * @param length the token value length
+     * @param radix the radix for the character set
+     * @param expiryTime the UTC expiry time
+     * @param count the number of tokens
+     * @param consumer the token consumer
+     */
+    private void createCharTokens(
+            String id,
+            int length,
+            int radix,
+            long expiryTime,
+            int count,
+            Consumer<Token> consumer) {
+        length = checkTokenLength(length);
+        count = checkTokenCount(count);
+        // allow ~1/16 extra for rejected bytes
+        RandomBytes bytes = new RandomBytes(
+                (long)count * (length + (length >>> 4) + 1));
+        final long issuedTime = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            consumer.accept(new Token(
+                    id,
+                    createCharTokenValue(length, radix, bytes),
+                    issuedTime,
+                    expiryTime));
         }
-        return value.toString();
     }
     
     /**
@@ -107,7 +367,7 @@ public final class RandomTokenGenerator {
             String id, int length, long expiryTime) {
         return new Token(
                 id,
-                createCharTokenValue(length, ALPHANUMERIC_CHARS.length),
+                nextCharTokenValue(length, ALPHANUMERIC_RADIX),
                 System.currentTimeMillis(),
                 expiryTime);
     }
@@ -122,12 +382,7 @@ public final class RandomTokenGenerator {
      * @return a new Base-64 token
      */
     public Token createBase64Token(String id, int length, long expiryTime) {
-        length = 3 * checkTokenLength(length) / 4;
-        int r = length % 4;
-        if (r > 0) {
-            length += 4 - r;
-        }
-        byte[] bytes = new byte[length];
+        byte[] bytes = new byte[getBase64ByteLength(length)];
         RNG.nextBytes(bytes);
         return new Token(
                 id,
@@ -149,8 +404,199 @@ public final class RandomTokenGenerator {
             String id, int length, long expiryTime) {
         return new Token(
                 id,
-                createCharTokenValue(length, 16),
+                nextCharTokenValue(length, HEXADECIMAL_RADIX),
                 System.currentTimeMillis(),
                 expiryTime);
     }
+    
+    /**
+     * Create a batch of alphanumeric [0-9A-Za-z] tokens with the specified ID,
+     * value length and expiry time.
+     * 
+     * @param id the token ID/name
+     * @param length the token value length
+     * @param expiryTime the UTC expiry time
+     * @param count the number of tokens
+     * @return a list of new alphanumeric tokens
+     */
+    public List<Token> createAlphanumericTokens(
+            String id, int length, long expiryTime, int count) {
+        List<Token> tokens = new ArrayList<>(checkTokenCount(count));
+        createAlphanumericTokens(id, length, expiryTime, count, tokens::add);
+        return tokens;
+    }
+    
+    /**
+     * Create a batch of alphanumeric [0-9A-Za-z] tokens with the specified ID,
+     * value length and expiry time, passing each token to the consumer as it
+     * is created.
+     * 
+     * @param id the token ID/name
+     * @param length the token value length
+     * @param expiryTime the UTC expiry time
+     * @param count the number of tokens
+     * @param consumer the token consumer
+     */
+    public void createAlphanumericTokens(
+            String id,
+            int length,
+            long expiryTime,
+            int count,
+            Consumer<Token> consumer) {
+        createCharTokens(
+                id, length, ALPHANUMERIC_RADIX, expiryTime, count, consumer);
+    }
+    
+    /**
+     * Create a batch of Base-64 [0-9A-Za-z+/=] tokens with the specified ID,
+     * value length and expiry time.
+     * 
+     * @param id the token ID/name
+     * @param length the token value length
+     * @param expiryTime the UTC expiry time
+     * @param count the number of tokens
+     * @return a list of new Base-64 tokens
+     */
+    public List<Token> createBase64Tokens(
+            String id, int length, long expiryTime, int count) {
+        List<Token> tokens = new ArrayList<>(checkTokenCount(count));
+        createBase64Tokens(id, length, expiryTime, count, tokens::add);
+        return tokens;
+    }
+    
+    /**
+     * Create a batch of Base-64 [0-9A-Za-z+/=] tokens with the specified ID,
+     * value length and expiry time, passing each token to the consumer as it
+     * is created.
+     * 
+     * @param id the token ID/name
+     * @param length the token value length
+     * @param expiryTime the UTC expiry time
+     * @param count the number of tokens
+     * @param consumer the token consumer
+     */
+    public void createBase64Tokens(
+            String id,
+            int length,
+            long expiryTime,
+            int count,
+            Consumer<Token> consumer) {
+        length = getBase64ByteLength(length);
+        count = checkTokenCount(count);
+        RandomBytes bytes = new RandomBytes((long)count * length);
+        Base64.Encoder encoder = Base64.getEncoder();
+        final long issuedTime = System.currentTimeMillis();
+        byte[] value = new byte[length];
+        for (int i = 0; i < count; i++) {
+            bytes.next(value);
+            consumer.accept(new Token(
+                    id, encoder.encodeToString(value), issuedTime, expiryTime));
+        }
+    }
+    
+    /**
+     * Create a batch of hexadecimal [0-9A-F] tokens with the specified ID,
+     * value length and expiry time.
+     * 
+     * @param id the token ID/name
+     * @param length the token value length
+     * @param expiryTime the UTC expiry time
+     * @param count the number of tokens
+     * @return a list of new hexadecimal tokens
+     */
+    public List<Token> createHexadecimalTokens(
+            String id, int length, long expiryTime, int count) {
+        List<Token> tokens = new ArrayList<>(checkTokenCount(count));
+        createHexadecimalTokens(id, length, expiryTime, count, tokens::add);
+        return tokens;
+    }
+    
+    /**
+     * Create a batch of hexadecimal [0-9A-F] tokens with the specified ID,
+     * value length and expiry time, passing each token to the consumer as it
+     * is created.
+     * 
+     * @param id the token ID/name
+     * @param length the token value length
+     * @param expiryTime the UTC expiry time
+     * @param count the number of tokens
+     * @param consumer the token consumer
+     */
+    public void createHexadecimalTokens(
+            String id,
+            int length,
+            long expiryTime,
+            int count,
+            Consumer<Token> consumer) {
+        createCharTokens(
+                id, length, HEXADECIMAL_RADIX, expiryTime, count, consumer);
+    }
+    
+    /**
+     * Create a URL-safe Base-64 [0-9A-Za-z-_] token with the specified token
+     * ID/name, value length, and expiry time. The value is exactly the
+     * requested length and has no padding.
+     * 
+     * @param id the token ID/name
+     * @param length the token value length
+     * @param expiryTime the UTC expiry time
+     * @return a new URL-safe Base-64 token
+     */
+    public Token createBase64URLToken(String id, int length, long expiryTime) {
+        return new Token(
+                id,
+                createBitsTokenValue(length, BASE64URL_CHARS, 6),
+                System.currentTimeMillis(),
+                expiryTime);
+    }
+    
+    /**
+     * Create a Base-32 [A-Z2-7] token with the specified token ID/name, value
+     * length, and expiry time. The value is exactly the requested length and
+     * has no padding.
+     * 
+     * @param id the token ID/name
+     * @param length the token value length
+     * @param expiryTime the UTC expiry time
+     * @return a new Base-32 token
+     */
+    public Token createBase32Token(String id, int length, long expiryTime) {
+        return new Token(
+                id,
+                createBitsTokenValue(length, BASE32_CHARS, 5),
+                System.currentTimeMillis(),
+                expiryTime);
+    }
+    
+    /**
+     * Create a Crockford Base-32 [0-9A-HJKMNP-TV-Z] token with the specified
+     * token ID/name, value length, and expiry time. The alphabet excludes the
+     * easily confused letters I, L, O and U.
+     * 
+     * @param id the token ID/name
+     * @param length the token value length
+     * @param expiryTime the UTC expiry time
+     * @return a new Crockford Base-32 token
+     */
+    public Token createCrockfordBase32Token(
+            String id, int length, long expiryTime) {
+        return new Token(
+                id,
+                createBitsTokenValue(length, CROCKFORD_BASE32_CHARS, 5),
+                System.currentTimeMillis(),
+                expiryTime);
+    }
+    
+    /**
+     * Create a raw binary token value of the specified length in bytes, for
+     * use with binary protocols.
+     * 
+     * @param length the token value length in bytes
+     * @return a new binary token value
+     */
+    public byte[] createBinaryTokenValue(int length) {
+        byte[] value = new byte[checkTokenLength(length)];
+        RNG.nextBytes(value);
+        return value;
+    }
 }
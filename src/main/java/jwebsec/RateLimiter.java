@@ -0,0 +1,312 @@
+package jwebsec;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <code>RateLimiter</code> limits the request rate of each client IP address
+ * with a lock-free token bucket, using the generic cell rate algorithm
+ * (GCRA).
+ * <p>
+ *   Each client has a single atomic theoretical arrival time (TAT): the time
+ *   at which its bucket will be full again. A request is allowed if it would
+ *   not push the TAT more than one burst ahead of the current time, and is
+ *   then accounted for with a single compare-and-set, so checks never lock
+ *   and a limited request leaves the TAT untouched. IPv6 clients are keyed
+ *   by their /64 prefix, as a single host usually controls a whole /64.
+ * </p>
+ * <p>
+ *   The limiter is bounded. A client whose bucket is full again is idle and
+ *   can be forgotten without changing any result, so idle clients are swept
+ *   out once a minute, and at most once a second while the limiter is full.
+ *   While the limiter is full, new clients share a single overflow bucket
+ *   with the same limits until a sweep makes room again, so a flood from
+ *   many addresses can neither exhaust memory nor cost a sweep per request.
+ * </p>
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public final class RateLimiter {
+    
+    /* Default maximum number of tracked clients (100,000). */
+    public static final int DEFAULT_MAX_SIZE = 100000;
+    
+    /* Minimum interval between idle client sweeps in nanoseconds (60s). */
+    private static final long SWEEP_INTERVAL_NANOS = 60000000000L;
+    
+    /* Minimum interval between sweeps while full in nanoseconds (1s). */
+    private static final long FULL_SWEEP_INTERVAL_NANOS = 1000000000L;
+    
+    /**
+     * <code>Bucket</code> is a client's theoretical arrival time and request
+     * counts.
+     */
+    private static final class Bucket extends AtomicLong {
+        
+        private static final long serialVersionUID = 202610181300L;
+        
+        private static final VarHandle ALLOWED;
+        private static final VarHandle LIMITED;
+        
+        static {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                ALLOWED = lookup.findVarHandle(
+                        Bucket.class, "allowed", long.class);
+                LIMITED = lookup.findVarHandle(
+                        Bucket.class, "limited", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+        
+        private volatile long allowed;
+        private volatile long limited;
+        
+        private Bucket(long now) {
+            super(now);
+        }
+    }
+    
+    private final Map<IPAddress, Bucket> CLIENTS = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private final long interval;
+    private final long tolerance;
+    private final int maxSize;
+    private final Bucket overflow;
+    private volatile long lastSweep;
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder limited = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    
+    /**
+     * Construct a new <code>RateLimiter</code>.
+     * 
+     * @param requestsPerSecond the sustained request rate per client
+     * @param burst the number of requests a client can make at once
+     */
+    public RateLimiter(double requestsPerSecond, int burst) {
+        this(requestsPerSecond, burst, DEFAULT_MAX_SIZE);
+    }
+    
+    /**
+     * Construct a new <code>RateLimiter</code>.
+     * 
+     * @param requestsPerSecond the sustained request rate per client
+     * @param burst the number of requests a client can make at once
+     * @param maxSize the maximum number of tracked clients
+     */
+    public RateLimiter(double requestsPerSecond, int burst, int maxSize) {
+        if (!(requestsPerSecond > 0 && requestsPerSecond <= 1e9)) {
+            throw new IllegalArgumentException("invalid request rate");
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("invalid burst");
+        }
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("invalid maximum size");
+        }
+        interval = Math.round(1e9 / requestsPerSecond);
+        tolerance = Math.min(interval, Long.MAX_VALUE / 4 / burst) * burst;
+        this.maxSize = maxSize;
+        final long now = System.nanoTime();
+        overflow = new Bucket(now);
+        lastSweep = now;
+    }
+    
+    /**
+     * Account for a request from a client if it is within the limits.
+     * 
+     * @param address the client address, may be null
+     * @return zero if the request is allowed, otherwise the time in
+     *         nanoseconds until the client may make another request
+     */
+    public long acquire(IPAddress address) {
+        final long now = System.nanoTime();
+        final Bucket b = bucket(address, now);
+        for (;;) {
+            final long tat = b.get();
+            final long next = (tat - now > 0 ? tat : now) + interval;
+            final long wait = next - now - tolerance;
+            if (wait > 0) {
+                Bucket.LIMITED.getAndAdd(b, 1L);
+                limited.increment();
+                return wait;
+            }
+            if (b.compareAndSet(tat, next)) {
+                Bucket.ALLOWED.getAndAdd(b, 1L);
+                allowed.increment();
+                return 0;
+            }
+        }
+    }
+    
+    /**
+     * Returns true and accounts for a request from a client if it is within
+     * the limits.
+     * 
+     * @param address the client address, may be null
+     * @return true if the request is allowed
+     */
+    public boolean tryAcquire(IPAddress address) {
+        return acquire(address) == 0;
+    }
+    
+    /**
+     * Get the bucket of a client, adding one if necessary.
+     * 
+     * @param address the client address, may be null
+     * @param now the current time
+     * @return the bucket
+     */
+    private Bucket bucket(IPAddress address, long now) {
+        final IPAddress key = key(address);
+        if (key == null) {
+            return overflow;
+        }
+        Bucket b = CLIENTS.get(key);
+        if (b != null) {
+            return b;
+        }
+        // sweep at most once per interval, even while full, so a flood from
+        // many addresses does not cost a sweep per request
+        final boolean full = CLIENTS.size() >= maxSize;
+        if (now - lastSweep > (full ?
+                FULL_SWEEP_INTERVAL_NANOS : SWEEP_INTERVAL_NANOS)) {
+            sweep(now);
+        }
+        if (full && CLIENTS.size() >= maxSize) {
+            overflows.increment();
+            return overflow;
+        }
+        final Bucket added = new Bucket(now);
+        b = CLIENTS.putIfAbsent(key, added);
+        return b != null ? b : added;
+    }
+    
+    /**
+     * Get the key of a client address.
+     * 
+     * @param address the client address, may be null
+     * @return the key, or null
+     */
+    private static IPAddress key(IPAddress address) {
+        return address == null ? null : address.getClientPrefix();
+    }
+    
+    /**
+     * Remove idle clients, whose buckets are full. Only one thread sweeps at
+     * a time.
+     * 
+     * @param now the current time
+     */
+    private void sweep(long now) {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            lastSweep = now;
+            final int size = CLIENTS.size();
+            CLIENTS.values().removeIf(b -> b.get() - now <= 0);
+            evictions.add(size - CLIENTS.size());
+        } finally {
+            sweeping.set(false);
+        }
+    }
+    
+    /**
+     * Get the number of allowed requests from a client which is tracked.
+     * 
+     * @param address the client address
+     * @return the allowed request count, or zero if the client is not tracked
+     */
+    public long getAllowedCount(IPAddress address) {
+        final IPAddress key = key(address);
+        final Bucket b = key == null ? null : CLIENTS.get(key);
+        return b == null ? 0 : b.allowed;
+    }
+    
+    /**
+     * Get the number of limited requests from a client which is tracked.
+     * 
+     * @param address the client address
+     * @return the limited request count, or zero if the client is not tracked
+     */
+    public long getLimitedCount(IPAddress address) {
+        final IPAddress key = key(address);
+        final Bucket b = key == null ? null : CLIENTS.get(key);
+        return b == null ? 0 : b.limited;
+    }
+    
+    /**
+     * Get the total number of allowed requests.
+     * 
+     * @return the allowed request count
+     */
+    public long getAllowedCount() {
+        return allowed.sum();
+    }
+    
+    /**
+     * Get the total number of limited requests.
+     * 
+     * @return the limited request count
+     */
+    public long getLimitedCount() {
+        return limited.sum();
+    }
+    
+    /**
+     * Get the number of requests from new clients which were checked against
+     * the overflow bucket because the limiter was full.
+     * 
+     * @return the overflow count
+     */
+    public long getOverflowCount() {
+        return overflows.sum();
+    }
+    
+    /**
+     * Get the number of idle clients which have been removed.
+     * 
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+    
+    /**
+     * Get the number of tracked clients.
+     * 
+     * @return the number of tracked clients
+     */
+    public int size() {
+        return CLIENTS.size();
+    }
+    
+    /**
+     * Get the maximum number of tracked clients.
+     * 
+     * @return the maximum size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+    
+    /**
+     * Remove all tracked clients.
+     */
+    public void clear() {
+        CLIENTS.clear();
+    }
+}
@@ -0,0 +1,535 @@
+package jwebsec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <code>RevocationIndex</code> records revoked token values, both for signed
+ * tokens which are never stored and for stored tokens which must be rejected
+ * on every node, and answers the common not-revoked case with a few cache
+ * line reads.
+ * <p>
+ *   Revoked values are grouped into time partitions by token expiry time.
+ *   Each partition has a blocked Bloom filter, in which all bits for a value
+ *   fall within one 64-byte block, in front of an exact set of values, so a
+ *   lookup for a value which has not been revoked rarely touches the exact
+ *   set. Because a revoked token only needs to be remembered until it
+ *   expires, whole partitions are discarded once their time range has passed
+ *   and individual entries never have to be deleted from a filter. Tokens
+ *   which expire more than 400 days in the future cannot be revoked.
+ * </p>
+ * <p>
+ *   Values are matched exactly. Signed tokens should be revoked and looked
+ *   up by {@link SignedTokenCodec#getRevocationKey(String)}, their decoded
+ *   tag, so every string form of a revoked signed token stays revoked.
+ * </p>
+ * <p>
+ *   An index can be written with {@link #writeTo(DataOutput)} and shipped to
+ *   other nodes, which either create a replica with
+ *   {@link #readFrom(DataInput)} or merge it into their own index with
+ *   {@link #merge(DataInput)}. Indexes can only be merged if they were
+ *   created with the same hash seed and partition settings. Indexes read from
+ *   other nodes are bounded: at most 1,048,576 filter blocks (64 MiB) per
+ *   partition, 16,384 partitions, and no partition more than 400 days in the
+ *   future.
+ * </p>
+ * <p>
+ *   Web applications can publish an index as a servlet context attribute
+ *   named {@link #CONTEXT_ATTRIBUTE_NAME}, in which case
+ *   <code>UserLogoutController</code> revokes the tokens held in the
+ *   session of a user who logs out.
+ * </p>
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public final class RevocationIndex {
+    
+    /* Servlet context attribute name. */
+    public static final String CONTEXT_ATTRIBUTE_NAME =
+            RevocationIndex.class.getName();
+    
+    /* Default partition duration in milliseconds (1 hour). */
+    public static final long DEFAULT_PARTITION_MILLIS = 3600000;
+    
+    /* Default expected number of revocations per partition (65,536). */
+    public static final int DEFAULT_EXPECTED_REVOCATIONS = 65536;
+    
+    /* Serialization magic number: &quot;JWRI&quot; */
+    private static final int MAGIC = 0x4A575249;
+    
+    /* Serialization format version (1). */
+    private static final int VERSION = 1;
+    
+    /* Filter bits per expected revocation, for a ~1% false positive rate. */
+    private static final int BITS_PER_ENTRY = 10;
+    
+    /* Filter hash functions per value (7). */
+    private static final int HASHES = 7;
+    
+    /* Longs per filter block (8, one 64-byte cache line). */
+    private static final int BLOCK_LONGS = 8;
+    
+    /* Maximum filter blocks per partition (1,048,576, 64 MiB). */
+    private static final int MAX_BLOCKS = 1 << 20;
+    
+    /* Maximum number of partitions read into an index (16,384). */
+    private static final int MAX_PARTITIONS = 16384;
+    
+    /* Maximum time revocations are remembered in milliseconds (400 days). */
+    private static final long MAX_FUTURE_MILLIS = 400L * 86400000;
+    
+    /* Atomic access to filter words. */
+    private static final VarHandle WORDS =
+            MethodHandles.arrayElementVarHandle(long[].class);
+    
+    /**
+     * <code>Partition</code> holds the revoked values of tokens expiring
+     * within one partition time range.
+     */
+    private static final class Partition {
+        
+        private final long[] filter;
+        private final Set<String> values = ConcurrentHashMap.newKeySet();
+        
+        private Partition(int blocks) {
+            filter = new long[blocks * BLOCK_LONGS];
+        }
+    }
+    
+    private final long seed;
+    private final long partitionMillis;
+    private final int blocks;
+    private final Map<Long, Partition> PARTITIONS = new ConcurrentHashMap<>();
+    private volatile long nextPurgeTime = 0;
+    
+    /**
+     * Default <code>RevocationIndex</code> constructor, with one hour
+     * partitions and a random hash seed.
+     */
+    public RevocationIndex() {
+        this(DEFAULT_PARTITION_MILLIS,
+                DEFAULT_EXPECTED_REVOCATIONS,
+                RNGUtil.nextLong());
+    }
+    
+    /**
+     * Construct a new <code>RevocationIndex</code>. Nodes which exchange
+     * indexes must use the same parameters.
+     * 
+     * @param partitionMillis the partition duration in milliseconds
+     * @param expectedRevocations expected number of revocations per partition
+     * @param seed the hash seed
+     */
+    public RevocationIndex(
+            long partitionMillis, int expectedRevocations, long seed) {
+        this(partitionMillis, seed, filterBlocks(expectedRevocations));
+    }
+    
+    /**
+     * Construct a new <code>RevocationIndex</code> with the specified number
+     * of filter blocks per partition.
+     * 
+     * @param partitionMillis the partition duration in milliseconds
+     * @param seed the hash seed
+     * @param blocks the number of filter blocks
+     */
+    private RevocationIndex(long partitionMillis, long seed, int blocks) {
+        if (partitionMillis < 1 || blocks < 1 || blocks > MAX_BLOCKS) {
+            throw new IllegalArgumentException("invalid partition settings");
+        }
+        this.partitionMillis = partitionMillis;
+        this.seed = seed;
+        this.blocks = blocks;
+    }
+    
+    /**
+     * Get the number of filter blocks for an expected number of revocations.
+     * 
+     * @param expectedRevocations expected number of revocations per partition
+     * @return the number of filter blocks
+     */
+    private static int filterBlocks(int expectedRevocations) {
+        if (expectedRevocations < 1) {
+            throw new IllegalArgumentException("invalid partition settings");
+        }
+        long bits = (long)expectedRevocations * BITS_PER_ENTRY;
+        return (int)((bits + 64 * BLOCK_LONGS - 1) / (64 * BLOCK_LONGS));
+    }
+    
+    /**
+     * Compute the 64-bit seeded hash of a value.
+     * 
+     * @param value the value
+     * @return hash
+     */
+    private long hash(String value) {
+        long h = seed;
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(h ^ value.length());
+    }
+    
+    /**
+     * Compute the 64-bit seeded hash of a token's value from its value
+     * bytes, equal to the hash of the value string.
+     * 
+     * @param token the token
+     * @return hash
+     */
+    private long hash(Token token) {
+        final byte[] value = token.getValueBytes();
+        long h = seed;
+        int length;
+        if (token.isValueLatin1()) {
+            for (byte b : value) {
+                h = (h ^ (b & 0xFF)) * 0x100000001B3L;
+            }
+            length = value.length;
+        } else {
+            for (int i = 0; i < value.length; i += 2) {
+                h = (h ^ ((value[i] & 0xFF) << 8 | value[i + 1] & 0xFF))
+                        * 0x100000001B3L;
+            }
+            length = value.length >>> 1;
+        }
+        return mix(h ^ length);
+    }
+    
+    /**
+     * 64-bit finalization mix (MurmurHash3 fmix64).
+     * 
+     * @param h the value
+     * @return mixed value
+     */
+    private static long mix(long h) {
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+    
+    /**
+     * Get the first filter word index of the block for a hash.
+     * 
+     * @param h the hash
+     * @return the block offset
+     */
+    private int block(long h) {
+        return (int)(((h >>> 32) * blocks) >>> 32) * BLOCK_LONGS;
+    }
+    
+    /**
+     * Returns true if all filter bits for a value are set.
+     * 
+     * @param filter the filter words
+     * @param h the value hash
+     * @return true if the value may be in the partition
+     */
+    private boolean mightContain(long[] filter, long h) {
+        final int block = block(h);
+        long bits = mix(h);
+        for (int i = 0; i < HASHES; i++, bits >>>= 9) {
+            int bit = (int)bits & 511;
+            if ((filter[block + (bit >>> 6)] & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Set the filter bits for a value.
+     * 
+     * @param filter the filter words
+     * @param h the value hash
+     */
+    private void set(long[] filter, long h) {
+        final int block = block(h);
+        long bits = mix(h);
+        for (int i = 0; i < HASHES; i++, bits >>>= 9) {
+            int bit = (int)bits & 511;
+            WORDS.getAndBitwiseOr(filter, block + (bit >>> 6), 1L << bit);
+        }
+    }
+    
+    /**
+     * Get the partition key for an expiry time.
+     * 
+     * @param expiryTime the UTC expiry time
+     * @return the partition key
+     */
+    private long partitionKey(long expiryTime) {
+        return Math.floorDiv(expiryTime, partitionMillis);
+    }
+    
+    /**
+     * Get the key of the latest partition which may be created now, 400 days
+     * in the future.
+     * 
+     * @param now the current time
+     * @return the maximum partition key
+     */
+    private long maxPartitionKey(long now) {
+        return partitionKey(now + MAX_FUTURE_MILLIS);
+    }
+    
+    /**
+     * Revoke a token.
+     * 
+     * @param token the token
+     * @throws IllegalArgumentException if the token expires more than 400
+     *         days in the future
+     */
+    public void revoke(Token token) {
+        revoke(token.getValue(), token.getExpiryTime());
+    }
+    
+    /**
+     * Revoke a token value until the specified expiry time. Values which have
+     * already expired are ignored.
+     * 
+     * @param value the token value
+     * @param expiryTime the token's UTC expiry time
+     * @throws IllegalArgumentException if the token expires more than 400
+     *         days in the future
+     */
+    public void revoke(String value, long expiryTime) {
+        final long now = System.currentTimeMillis();
+        if (value == null || expiryTime <= now) {
+            return;
+        }
+        final long partitionKey = partitionKey(expiryTime);
+        if (partitionKey > maxPartitionKey(now)) {
+            throw new IllegalArgumentException(
+                    "token expires more than 400 days in the future");
+        }
+        Partition p = PARTITIONS.computeIfAbsent(
+                partitionKey, k -> new Partition(blocks));
+        // the exact set is updated first so a filter hit always finds it
+        p.values.add(value);
+        set(p.filter, hash(value));
+        if (now >= nextPurgeTime) {
+            purge();
+        }
+    }
+    
+    /**
+     * Returns true if a token has been revoked. The filter is probed with the
+     * token's value bytes, so the value string is only created for the
+     * exact check after a filter hit.
+     * 
+     * @param token the token
+     * @return true if the token has been revoked
+     */
+    public boolean isRevoked(Token token) {
+        if (token.getValueBytes() == null) {
+            return false;
+        }
+        Partition p = PARTITIONS.get(partitionKey(token.getExpiryTime()));
+        return p != null
+                && mightContain(p.filter, hash(token))
+                && p.values.contains(token.getValue());
+    }
+    
+    /**
+     * Returns true if a token value with the specified expiry time has been
+     * revoked.
+     * 
+     * @param value the token value
+     * @param expiryTime the token's UTC expiry time
+     * @return true if the token value has been revoked
+     */
+    public boolean isRevoked(String value, long expiryTime) {
+        if (value == null) {
+            return false;
+        }
+        Partition p = PARTITIONS.get(partitionKey(expiryTime));
+        return p != null
+                && mightContain(p.filter, hash(value))
+                && p.values.contains(value);
+    }
+    
+    /**
+     * Discard all partitions whose time range has passed.
+     */
+    public void purge() {
+        final long now = System.currentTimeMillis();
+        final long current = partitionKey(now);
+        PARTITIONS.keySet().removeIf(k -> k < current);
+        nextPurgeTime = (current + 1) * partitionMillis;
+    }
+    
+    /**
+     * Get the number of revoked token values which have not been purged.
+     * 
+     * @return the number of revoked values
+     */
+    public int size() {
+        int n = 0;
+        for (Partition p : PARTITIONS.values()) {
+            n += p.values.size();
+        }
+        return n;
+    }
+    
+    /**
+     * Get the number of time partitions.
+     * 
+     * @return the number of partitions
+     */
+    public int getPartitionCount() {
+        return PARTITIONS.size();
+    }
+    
+    /**
+     * Write this index, including its filters and revoked values, to the
+     * output.
+     * 
+     * @param out the output
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        purge();
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(seed);
+        out.writeLong(partitionMillis);
+        out.writeInt(blocks);
+        Map<Long, Partition> snapshot = Map.copyOf(PARTITIONS);
+        out.writeInt(snapshot.size());
+        for (Map.Entry<Long, Partition> e : snapshot.entrySet()) {
+            Partition p = e.getValue();
+            out.writeLong(e.getKey());
+            for (int i = 0; i < p.filter.length; i++) {
+                out.writeLong((long)WORDS.getOpaque(p.filter, i));
+            }
+            String[] values = p.values.toArray(new String[0]);
+            out.writeInt(values.length);
+            for (String value : values) {
+                out.writeUTF(value);
+            }
+        }
+    }
+    
+    /**
+     * Read an index written by {@link #writeTo(DataOutput)}.
+     * 
+     * @param in the input
+     * @return the index
+     * @throws IOException if an I/O error occurs or the data is invalid
+     */
+    public static RevocationIndex readFrom(DataInput in) throws IOException {
+        checkHeader(in);
+        long seed = in.readLong();
+        long partitionMillis = in.readLong();
+        int blocks = in.readInt();
+        if (partitionMillis < 1 || blocks < 1 || blocks > MAX_BLOCKS) {
+            throw new IOException("invalid revocation index");
+        }
+        RevocationIndex index =
+                new RevocationIndex(partitionMillis, seed, blocks);
+        index.readPartitions(in);
+        return index;
+    }
+    
+    /**
+     * Merge an index written by {@link #writeTo(DataOutput)} into this index.
+     * 
+     * @param in the input
+     * @throws IOException if an I/O error occurs, the data is invalid, or the
+     *         index settings do not match
+     */
+    public void merge(DataInput in) throws IOException {
+        checkHeader(in);
+        if (in.readLong() != seed || in.readLong() != partitionMillis
+                || in.readInt() != blocks) {
+            throw new IOException("revocation index settings do not match");
+        }
+        readPartitions(in);
+    }
+    
+    /**
+     * Check the magic number and version of a serialized index.
+     * 
+     * @param in the input
+     * @throws IOException if an I/O error occurs or the data is invalid
+     */
+    private static void checkHeader(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("invalid revocation index");
+        }
+    }
+    
+    /**
+     * Read serialized partitions and merge them into this index, skipping
+     * partitions whose time range has passed. A partition is created only
+     * after its filter has been read.
+     * 
+     * @param in the input
+     * @throws IOException if an I/O error occurs, or the data has too many
+     *         partitions or partitions too far in the future
+     */
+    private void readPartitions(DataInput in) throws IOException {
+        final long now = System.currentTimeMillis();
+        final long current = partitionKey(now);
+        // one partition of slack for clock skew between nodes
+        final long max = maxPartitionKey(now) + 1;
+        final int n = in.readInt();
+        if (n < 0 || n > MAX_PARTITIONS) {
+            throw new IOException("invalid revocation index");
+        }
+        final long[] filter = new long[blocks * BLOCK_LONGS];
+        for (int i = 0; i < n; i++) {
+            final long key = in.readLong();
+            if (key > max) {
+                throw new IOException(
+                        "revocation index partition is too far in the future");
+            }
+            for (int j = 0; j < filter.length; j++) {
+                filter[j] = in.readLong();
+            }
+            final Partition p = key < current ? null : partition(key);
+            final int count = in.readInt();
+            for (int j = 0; j < count; j++) {
+                String value = in.readUTF();
+                if (p != null) {
+                    p.values.add(value);
+                }
+            }
+            if (p != null) {
+                for (int j = 0; j < filter.length; j++) {
+                    WORDS.getAndBitwiseOr(p.filter, j, filter[j]);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Get or create a partition for data read from another node.
+     * 
+     * @param key the partition key
+     * @return the partition
+     * @throws IOException if this index already has the maximum number of
+     *         partitions
+     */
+    private Partition partition(long key) throws IOException {
+        Partition p = PARTITIONS.get(key);
+        if (p == null) {
+            if (PARTITIONS.size() >= MAX_PARTITIONS) {
+                throw new IOException("too many revocation index partitions");
+            }
+            p = PARTITIONS.computeIfAbsent(key, k -> new Partition(blocks));
+        }
+        return p;
+    }
+}
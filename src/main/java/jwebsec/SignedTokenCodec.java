@@ -0,0 +1,493 @@
+package jwebsec;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * <code>SignedTokenCodec</code> creates and validates stateless tokens which
+ * carry their own ID, issued time, expiry time and optional string claims,
+ * authenticated with a truncated HMAC-SHA256 tag. Unlike tokens created by
+ * <code>RandomTokenGenerator</code>, signed tokens do not have to be stored
+ * server-side; validation is a local CPU-only check.
+ * <p>
+ *   The token value is the URL-safe Base-64 (unpadded) encoding of the binary
+ *   payload followed by the first 16 bytes of its HMAC-SHA256 tag:
+ * </p>
+ * <pre>
+ *   version (1) | key ID (1) | issued time (8) | expiry time (8)
+ *   | ID length (1) | ID (UTF-8)
+ *   | claim count (1) | { name length (1) | name | value length (2) | value }
+ *   | tag (16)
+ * </pre>
+ * <p>
+ *   Only the canonical encoding of a token is accepted: padded values, and
+ *   values whose last character carries non-zero unused bits, decode to the
+ *   same bytes but are rejected, so each token has exactly one string form.
+ *   Revocations should nevertheless be keyed on
+ *   {@link #getRevocationKey(String)}, the token's tag, which is the same for
+ *   every string form of the token.
+ * </p>
+ * <p>
+ *   Keys are identified by a key ID from 0 to 255 which is embedded in every
+ *   token, so keys can be rotated by adding a new key, switching the signing
+ *   key ID, and removing the old key once all tokens signed with it have
+ *   expired. Each thread reuses its own <code>Mac</code> instance.
+ * </p>
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public final class SignedTokenCodec {
+    
+    /* HmacSHA256 */
+    public static final String ALGORITHM_NAME = "HmacSHA256";
+    
+    /* Minimum key length in bytes (32). */
+    public static final int MIN_KEY_LENGTH = 32;
+    
+    /* Truncated tag length in bytes (16). */
+    public static final int TAG_LENGTH = 16;
+    
+    /* Maximum number of claims per token (255). */
+    public static final int MAX_CLAIMS = 255;
+    
+    /* Payload format version (1). */
+    private static final byte VERSION = 1;
+    
+    /* Fixed header length: version, key ID, issued and expiry times. */
+    private static final int HEADER_LENGTH = 18;
+    
+    /**
+     * <code>MacHolder</code> holds a thread's <code>Mac</code> instance, the
+     * key it was last initialized with, and a tag buffer.
+     */
+    private static final class MacHolder {
+        
+        private final Mac mac;
+        private final byte[] tag;
+        private SecretKeySpec key;
+        
+        private MacHolder() {
+            try {
+                mac = Mac.getInstance(ALGORITHM_NAME);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            tag = new byte[mac.getMacLength()];
+        }
+        
+        /**
+         * Compute the tag of the payload into the tag buffer.
+         * 
+         * @param key the key
+         * @param payload the payload buffer
+         * @param length the payload length
+         * @return the tag buffer
+         */
+        private byte[] compute(SecretKeySpec key, byte[] payload, int length) {
+            try {
+                if (this.key != key) {
+                    mac.init(key);
+                    this.key = key;
+                }
+                mac.update(payload, 0, length);
+                mac.doFinal(tag, 0);
+            } catch (InvalidKeyException | ShortBufferException e) {
+                this.key = null;
+                throw new IllegalStateException(e);
+            }
+            return tag;
+        }
+    }
+    
+    /* Per-thread <code>Mac</code> instances. */
+    private static final ThreadLocal<MacHolder> MACS =
+            ThreadLocal.withInitial(MacHolder::new);
+    
+    /**
+     * Get the UTF-8 bytes of a string, checking the maximum length.
+     * 
+     * @param s the string
+     * @param max the maximum length in bytes
+     * @return UTF-8 bytes
+     */
+    private static byte[] getBytes(String s, int max) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > max) {
+            throw new IllegalArgumentException("value is too long: " + s);
+        }
+        return bytes;
+    }
+    
+    /**
+     * Write a big-endian long value.
+     * 
+     * @param buf the buffer
+     * @param off the offset
+     * @param v the value
+     */
+    private static void putLong(byte[] buf, int off, long v) {
+        for (int i = 7; i >= 0; i--) {
+            buf[off + i] = (byte)v;
+            v >>>= 8;
+        }
+    }
+    
+    /**
+     * Read a big-endian long value.
+     * 
+     * @param buf the buffer
+     * @param off the offset
+     * @return the value
+     */
+    private static long getLong(byte[] buf, int off) {
+        long v = 0;
+        for (int i = 0; i < 8; i++) {
+            v = v << 8 | buf[off + i] & 0xFF;
+        }
+        return v;
+    }
+    
+    /* Keys indexed by key ID, replaced on every change. */
+    private volatile SecretKeySpec[] keys = new SecretKeySpec[256];
+    private volatile int signingKeyId;
+    
+    /**
+     * Construct a new <code>SignedTokenCodec</code> with the specified signing
+     * key.
+     * 
+     * @param keyId the signing key ID, 0 to 255
+     * @param key the signing key, at least 32 bytes
+     */
+    public SignedTokenCodec(int keyId, byte[] key) {
+        addKey(keyId, key);
+        signingKeyId = keyId;
+    }
+    
+    /**
+     * Add or replace a key. Tokens signed with any added key are accepted.
+     * 
+     * @param keyId the key ID, 0 to 255
+     * @param key the key, at least 32 bytes
+     */
+    public synchronized void addKey(int keyId, byte[] key) {
+        checkKeyId(keyId);
+        if (key == null || key.length < MIN_KEY_LENGTH) {
+            throw new IllegalArgumentException("key is too short");
+        }
+        SecretKeySpec[] k = keys.clone();
+        k[keyId] = new SecretKeySpec(key, ALGORITHM_NAME);
+        keys = k;
+    }
+    
+    /**
+     * Remove a key. Tokens signed with the key are no longer accepted. The
+     * signing key cannot be removed.
+     * 
+     * @param keyId the key ID
+     */
+    public synchronized void removeKey(int keyId) {
+        checkKeyId(keyId);
+        if (keyId == signingKeyId) {
+            throw new IllegalStateException("cannot remove the signing key");
+        }
+        SecretKeySpec[] k = keys.clone();
+        k[keyId] = null;
+        keys = k;
+    }
+    
+    /**
+     * Get the ID of the key used to sign new tokens.
+     * 
+     * @return the signing key ID
+     */
+    public int getSigningKeyId() {
+        return signingKeyId;
+    }
+    
+    /**
+     * Set the ID of the key used to sign new tokens. The key must have been
+     * added.
+     * 
+     * @param keyId the signing key ID
+     */
+    public synchronized void setSigningKeyId(int keyId) {
+        checkKeyId(keyId);
+        if (keys[keyId] == null) {
+            throw new IllegalArgumentException("no such key: " + keyId);
+        }
+        signingKeyId = keyId;
+    }
+    
+    /**
+     * Checks that a key ID is between 0 and 255.
+     * 
+     * @param keyId the key ID
+     */
+    private static void checkKeyId(int keyId) {
+        if (keyId < 0 || keyId > 255) {
+            throw new IllegalArgumentException("invalid key ID: " + keyId);
+        }
+    }
+    
+    /**
+     * Create a signed token with the specified ID and expiry time, issued
+     * now.
+     * 
+     * @param id the token ID/name
+     * @param expiryTime the UTC expiry time
+     * @return a new signed token
+     */
+    public Token sign(String id, long expiryTime) {
+        return sign(id, expiryTime, null);
+    }
+    
+    /**
+     * Create a signed token with the specified ID, expiry time and claims,
+     * issued now.
+     * 
+     * @param id the token ID/name
+     * @param expiryTime the UTC expiry time
+     * @param claims the claims, or null
+     * @return a new signed token
+     */
+    public Token sign(String id, long expiryTime, Map<String, String> claims) {
+        final long issuedTime = System.currentTimeMillis();
+        return new Token(
+                id,
+                encode(id, issuedTime, expiryTime, claims),
+                issuedTime,
+                expiryTime);
+    }
+    
+    /**
+     * Encode and sign a token value.
+     * 
+     * @param id the token ID/name
+     * @param issuedTime the UTC issued time
+     * @param expiryTime the UTC expiry time
+     * @param claims the claims, or null
+     * @return the signed token value
+     */
+    public String encode(
+            String id,
+            long issuedTime,
+            long expiryTime,
+            Map<String, String> claims) {
+        final int keyId = signingKeyId;
+        final SecretKeySpec key = keys[keyId];
+        if (key == null) {
+            throw new IllegalStateException("no such key: " + keyId);
+        }
+        byte[] idBytes = getBytes(id == null ? "" : id, 255);
+        int n = claims == null ? 0 : claims.size();
+        if (n > MAX_CLAIMS) {
+            throw new IllegalArgumentException("too many claims");
+        }
+        byte[][] claimBytes = new byte[2 * n][];
+        int length = HEADER_LENGTH + 1 + idBytes.length + 1 + TAG_LENGTH;
+        if (n > 0) {
+            int i = 0;
+            for (Entry<String, String> e : claims.entrySet()) {
+                claimBytes[i] = getBytes(e.getKey(), 255);
+                claimBytes[i + 1] = getBytes(e.getValue(), 65535);
+                length += 3 + claimBytes[i].length + claimBytes[i + 1].length;
+                i += 2;
+            }
+        }
+        byte[] buf = new byte[length];
+        buf[0] = VERSION;
+        buf[1] = (byte)keyId;
+        putLong(buf, 2, issuedTime);
+        putLong(buf, 10, expiryTime);
+        int off = HEADER_LENGTH;
+        buf[off++] = (byte)idBytes.length;
+        System.arraycopy(idBytes, 0, buf, off, idBytes.length);
+        off += idBytes.length;
+        buf[off++] = (byte)n;
+        for (int i = 0; i < claimBytes.length; i += 2) {
+            buf[off++] = (byte)claimBytes[i].length;
+            System.arraycopy(claimBytes[i], 0, buf, off, claimBytes[i].length);
+            off += claimBytes[i].length;
+            buf[off++] = (byte)(claimBytes[i + 1].length >>> 8);
+            buf[off++] = (byte)claimBytes[i + 1].length;
+            System.arraycopy(
+                    claimBytes[i + 1], 0, buf, off, claimBytes[i + 1].length);
+            off += claimBytes[i + 1].length;
+        }
+        byte[] tag = MACS.get().compute(key, buf, off);
+        System.arraycopy(tag, 0, buf, off, TAG_LENGTH);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buf);
+    }
+    
+    /**
+     * Returns true if a value is the canonical unpadded URL-safe Base-64
+     * encoding of the bytes it decodes to, that is, it has no padding and
+     * the unused low bits of its last character are zero. Values which are
+     * not valid Base-64 at all are left to the decoder.
+     * 
+     * @param value the token value
+     * @return true if the value is canonical
+     */
+    private static boolean isCanonical(String value) {
+        if (value.indexOf('=') >= 0) {
+            return false;
+        }
+        final int rem = value.length() & 3;
+        if (rem < 2) {
+            return true;
+        }
+        final char c = value.charAt(value.length() - 1);
+        final int bits;
+        if (c >= 'A' && c <= 'Z') {
+            bits = c - 'A';
+        } else if (c >= 'a' && c <= 'z') {
+            bits = c - 'a' + 26;
+        } else if (c >= '0' && c <= '9') {
+            bits = c - '0' + 52;
+        } else {
+            bits = c == '-' ? 62 : 63;
+        }
+        // two characters carry one byte and three carry two
+        return (bits & (rem == 2 ? 0xF : 0x3)) == 0;
+    }
+    
+    /**
+     * Decode a token value and check its tag, returning the payload, or null
+     * if the value is malformed or not canonical, signed with an unknown key
+     * or has an invalid tag.
+     * 
+     * @param value the token value
+     * @return the authenticated payload or null
+     */
+    private byte[] authenticate(String value) {
+        if (value == null || !isCanonical(value)) {
+            return null;
+        }
+        byte[] buf;
+        try {
+            buf = Base64.getUrlDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (buf.length < HEADER_LENGTH + 2 + TAG_LENGTH || buf[0] != VERSION) {
+            return null;
+        }
+        final SecretKeySpec key = keys[buf[1] & 0xFF];
+        if (key == null) {
+            return null;
+        }
+        final int length = buf.length - TAG_LENGTH;
+        byte[] tag = MACS.get().compute(key, buf, length);
+        int diff = 0;
+        for (int i = 0; i < TAG_LENGTH; i++) {
+            diff |= tag[i] ^ buf[length + i];
+        }
+        return diff == 0 ? buf : null;
+    }
+    
+    /**
+     * Decode and validate a signed token value, returning the token, or null
+     * if the value is invalid or the token has expired.
+     * 
+     * @param value the token value
+     * @return the token or null
+     */
+    public Token verify(String value) {
+        byte[] buf = authenticate(value);
+        if (buf == null) {
+            return null;
+        }
+        final long expiryTime = getLong(buf, 10);
+        final int idLength = buf[HEADER_LENGTH] & 0xFF;
+        if (expiryTime <= System.currentTimeMillis()
+                || HEADER_LENGTH + 1 + idLength >= buf.length - TAG_LENGTH) {
+            return null;
+        }
+        return new Token(
+                new String(buf, HEADER_LENGTH + 1, idLength,
+                        StandardCharsets.UTF_8),
+                value,
+                getLong(buf, 2),
+                expiryTime);
+    }
+    
+    /**
+     * Decode and validate a signed token value, returning its claims, or null
+     * if the value is invalid or the token has expired.
+     * 
+     * @param value the token value
+     * @return an unmodifiable map of claims or null
+     */
+    public Map<String, String> getClaims(String value) {
+        byte[] buf = authenticate(value);
+        if (buf == null || getLong(buf, 10) <= System.currentTimeMillis()) {
+            return null;
+        }
+        final int end = buf.length - TAG_LENGTH;
+        try {
+            int off = HEADER_LENGTH;
+            off += 1 + (buf[off] & 0xFF);
+            int n = buf[off++] & 0xFF;
+            Map<String, String> claims = new LinkedHashMap<>();
+            for (int i = 0; i < n; i++) {
+                int len = buf[off++] & 0xFF;
+                String name = new String(buf, off, len, StandardCharsets.UTF_8);
+                off += len;
+                len = (buf[off] & 0xFF) << 8 | buf[off + 1] & 0xFF;
+                off += 2;
+                if (off + len > end) {
+                    return null;
+                }
+                claims.put(name,
+                        new String(buf, off, len, StandardCharsets.UTF_8));
+                off += len;
+            }
+            return off == end ? Collections.unmodifiableMap(claims) : null;
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Get the revocation key of a signed token value: the unpadded URL-safe
+     * Base-64 encoding of its tag. Every string which decodes to the same
+     * bytes, padded or with non-zero unused bits, has the same key, so a
+     * token revoked by its key in a <code>RevocationIndex</code> stays
+     * revoked in whatever form it is presented. The value is not
+     * authenticated.
+     * 
+     * @param value the token value
+     * @return the revocation key, or null if the value is not a Base-64
+     *         encoded token
+     */
+    public static String getRevocationKey(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] buf;
+        try {
+            buf = Base64.getUrlDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (buf.length < HEADER_LENGTH + 2 + TAG_LENGTH) {
+            return null;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                Arrays.copyOfRange(buf, buf.length - TAG_LENGTH, buf.length));
+    }
+}
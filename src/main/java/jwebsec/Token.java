@@ -2,23 +2,97 @@ package jwebsec;
 
 import java.beans.Transient;
 import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <code>Token</code> encapsulates a security token ID/name, value, and expiry
  * time.
  * <p>
+ *   To keep large token populations compact, token IDs are shared through a
+ *   bounded map of canonical IDs (IDs beyond its 4,096 entries are kept as
+ *   they are, so untrusted IDs cannot grow it without limit) and the value
+ *   is stored as a byte array, Latin-1 encoded when possible (which is
+ *   always the case for tokens created by <code>RandomTokenGenerator</code>),
+ *   or UTF-16 otherwise. The value <code>String</code> is only materialized
+ *   when {@link #getValue()} is called, while equality, hashing and ordering
+ *   operate directly on the bytes with the same results as the
+ *   <code>String</code> value.
+ * </p>
+ * <p>
+ *   Candidate token values received from clients should be checked with
+ *   {@link #verify(String)} or {@link #verify(byte[])}, which compare the
+ *   value in constant time without allocating, rather than by comparing the
+ *   value strings, e.g.:
+ * </p>
+ * <pre>
+ *   boolean ok = token != null &amp;&amp; token.verify(candidate)
+ *           &amp;&amp; token.isValid();
+ * </pre>
+ * <p>
  *   &copy;2025 jWebSec. All rights reserved.
  * </p>
  * 
- * @version 0.4.1
+ * @version 0.6.0
  * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
  */
 public final class Token implements Comparable<Token>, Serializable {
     
-    private static final long serialVersionUID = 202502271934L;
+    private static final long serialVersionUID = 202610181200L;
+    
+    /* Maximum number of canonical token IDs (4,096). */
+    private static final int MAX_CANONICAL_IDS = 4096;
+    
+    /* Canonical token IDs. */
+    private static final Map<String, String> IDS = new ConcurrentHashMap<>();
+    
+    /**
+     * Get the canonical instance of a token ID, so that tokens with equal IDs
+     * share one string. Once the map of canonical IDs is full, other IDs are
+     * returned as they are.
+     * 
+     * @param id the token ID
+     * @return the canonical token ID, or null for a null ID
+     */
+    static String canonicalize(String id) {
+        if (id == null) {
+            return null;
+        }
+        String c = IDS.get(id);
+        if (c == null) {
+            if (IDS.size() >= MAX_CANONICAL_IDS) {
+                return id;
+            }
+            c = IDS.putIfAbsent(id, id);
+            if (c == null) {
+                c = id;
+            }
+        }
+        return c;
+    }
+    
+    /**
+     * Returns true if every character of the string can be encoded as a
+     * single Latin-1 byte.
+     * 
+     * @param s the string
+     * @return true if the string is Latin-1
+     */
+    private static boolean isLatin1(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
     
     private final String id;
-    private final String value;
+    private final byte[] value;
+    private final boolean latin1;
     private final long issuedTime;
     private final long expiryTime;
     
@@ -31,12 +105,47 @@ public final class Token implements Comparable<Token>, Serializable {
      * @param expiryTime the token's UTC expiration time
      */
     public Token(String id, String value, long issuedTime, long expiryTime) {
-        this.id = id;
-        this.value = value;
+        this.id = canonicalize(id);
+        if (value == null) {
+            this.value = null;
+            this.latin1 = true;
+        } else {
+            this.latin1 = isLatin1(value);
+            this.value = value.getBytes(getCharset());
+        }
         this.issuedTime = issuedTime;
         this.expiryTime = expiryTime;
     }
     
+    /**
+     * Get the character set of this token's value bytes.
+     * 
+     * @return the value character set
+     */
+    private Charset getCharset() {
+        return latin1 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_16BE;
+    }
+    
+    /**
+     * Compute the hash code of this token's value, equal to the hash code of
+     * the value <code>String</code>.
+     * 
+     * @return value hash code
+     */
+    private int getValueHashCode() {
+        int h = 0;
+        if (latin1) {
+            for (byte b : value) {
+                h = 31 * h + (b & 0xFF);
+            }
+        } else {
+            for (int i = 0; i < value.length; i += 2) {
+                h = 31 * h + ((value[i] & 0xFF) << 8 | value[i + 1] & 0xFF);
+            }
+        }
+        return h;
+    }
+    
     /**
      * Get this token's ID.
      * 
@@ -52,9 +161,29 @@ public final class Token implements Comparable<Token>, Serializable {
      * @return value
      */
     public String getValue() {
+        return value == null ? null : new String(value, getCharset());
+    }
+    
+    /**
+     * Get this token's value bytes, Latin-1 encoded if
+     * {@link #isValueLatin1()} is true and UTF-16BE encoded otherwise, or null.
+     * The array is not copied and must not be modified.
+     * 
+     * @return value bytes
+     */
+    byte[] getValueBytes() {
         return value;
     }
     
+    /**
+     * Returns true if this token's value bytes are Latin-1 encoded.
+     * 
+     * @return true if the value is Latin-1
+     */
+    boolean isValueLatin1() {
+        return latin1;
+    }
+    
     /**
      * Get the UTC time this token was issued.
      * 
@@ -122,12 +251,64 @@ public final class Token implements Comparable<Token>, Serializable {
         return (int)((expiryTime - System.currentTimeMillis()) / 1000);
     }
     
+    /**
+     * Returns true if the candidate value matches this token's value. The
+     * comparison time depends only on the value length, not on the position of
+     * the first mismatching character.
+     * 
+     * @param candidate the candidate token value
+     * @return true if the candidate matches this token's value
+     */
+    public boolean verify(String candidate) {
+        if (value == null || candidate == null) {
+            return false;
+        }
+        final int length = latin1 ? value.length : value.length >>> 1;
+        if (candidate.length() != length) {
+            return false;
+        }
+        int diff = 0;
+        if (latin1) {
+            for (int i = 0; i < length; i++) {
+                diff |= (value[i] & 0xFF) ^ candidate.charAt(i);
+            }
+        } else {
+            for (int i = 0, j = 0; i < length; i++, j += 2) {
+                diff |= ((value[j] & 0xFF) << 8 | value[j + 1] & 0xFF)
+                        ^ candidate.charAt(i);
+            }
+        }
+        return diff == 0;
+    }
+    
+    /**
+     * Returns true if the candidate bytes match the Latin-1 encoding of this
+     * token's value. Tokens whose value cannot be encoded as Latin-1 never
+     * match. The comparison time depends only on the value length, not on
+     * the position of the first mismatching byte.
+     * 
+     * @param candidate the Latin-1 (or ASCII) encoded candidate token value
+     * @return true if the candidate matches this token's value
+     */
+    public boolean verify(byte[] candidate) {
+        if (!latin1 || value == null || candidate == null
+                || candidate.length != value.length) {
+            return false;
+        }
+        int diff = 0;
+        for (int i = 0; i < value.length; i++) {
+            diff |= value[i] ^ candidate[i];
+        }
+        return diff == 0;
+    }
+    
     @Override
     public boolean equals(Object ref) {
         boolean eq = this == ref;
         if (!eq && ref instanceof Token token) {
             eq = id.equals(token.id)
-                    && value.equals(token.value)
+                    && latin1 == token.latin1
+                    && Arrays.equals(value, token.value)
                     && issuedTime == token.issuedTime
                     && expiryTime == token.expiryTime;
         }
@@ -136,7 +317,9 @@ public final class Token implements Comparable<Token>, Serializable {
     
     @Override
     public int hashCode() {
-        return JavaUtils.hashCode(id, value);
+        // equivalent to JavaUtils.hashCode(id, getValue())
+        return 31 * (id == null ? -1 : id.hashCode())
+                + 31 * (value == null ? -1 : 2 * getValueHashCode());
     }
     
     @Override
@@ -147,7 +330,7 @@ public final class Token implements Comparable<Token>, Serializable {
         } else if (t == null) {
             result = -1;
         } else if ((result = id.compareTo(t.id)) == 0
-                    && (result = value.compareTo(t.value)) == 0) {
+                    && (result = compareValue(t)) == 0) {
             long diff = issuedTime - t.issuedTime;
             if (diff == 0) {
                 diff = expiryTime - t.expiryTime;
@@ -160,4 +343,31 @@ public final class Token implements Comparable<Token>, Serializable {
         }
         return result;
     }
+    
+    /**
+     * Compare this token's value to another token's value, with the same
+     * result as comparing the value strings.
+     * 
+     * @param t the other token
+     * @return comparison result
+     */
+    private int compareValue(Token t) {
+        int result;
+        if (latin1 && t.latin1) {
+            result = Arrays.compareUnsigned(value, t.value);
+        } else {
+            result = getValue().compareTo(t.getValue());
+        }
+        return result;
+    }
+    
+    /**
+     * Canonicalize the ID of a deserialized token.
+     * 
+     * @return the resolved token
+     */
+    private Object readResolve() {
+        return id == null || id == canonicalize(id) ?
+                this : new Token(id, getValue(), issuedTime, expiryTime);
+    }
 }
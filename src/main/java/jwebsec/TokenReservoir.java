@@ -0,0 +1,275 @@
+package jwebsec;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <code>TokenReservoir</code> keeps bounded buffers of pre-generated token
+ * values for a <code>RandomTokenGenerator</code>, one per alphabet and token
+ * length, so that tokens can be issued on request threads without waiting
+ * for random number generation.
+ * <p>
+ *   Each buffer is refilled by a background virtual thread whenever its fill
+ *   level drops below the low-water mark. A buffer is created on the first
+ *   request for its alphabet and length, for at most 8 alphabet and length
+ *   pairs and lengths of at most 256 characters, so that requests for many
+ *   different lengths cannot grow the reservoir without bound. Requests
+ *   that find their buffer empty, or have no buffer, are counted as misses,
+ *   and the generator falls back to generating the value inline.
+ * </p>
+ * <pre>
+ *   RandomTokenGenerator generator = new RandomTokenGenerator();
+ *   generator.setTokenReservoir(new TokenReservoir(generator, 1024, 256));
+ * </pre>
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public final class TokenReservoir implements AutoCloseable {
+    
+    /* Default buffer capacity per alphabet and length (1,024). */
+    public static final int DEFAULT_CAPACITY = 1024;
+    
+    /* Default low-water mark (256). */
+    public static final int DEFAULT_LOW_WATER_MARK = 256;
+    
+    /* Maximum number of buffers, one per alphabet and length (8). */
+    public static final int MAX_BUFFERS = 8;
+    
+    /* Maximum length of buffered token values (256). */
+    public static final int MAX_BUFFERED_LENGTH = 256;
+    
+    private final RandomTokenGenerator generator;
+    private final int capacity;
+    private final int lowWaterMark;
+    private final Map<Integer, ArrayBlockingQueue<String>> BUFFERS =
+            new ConcurrentHashMap<>();
+    private final AtomicBoolean refillRequested = new AtomicBoolean();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final Thread refiller;
+    private volatile boolean closed = false;
+    
+    /**
+     * Construct a new <code>TokenReservoir</code> with the default capacity
+     * and low-water mark.
+     * 
+     * @param generator the generator used to fill the reservoir
+     */
+    public TokenReservoir(RandomTokenGenerator generator) {
+        this(generator, DEFAULT_CAPACITY, DEFAULT_LOW_WATER_MARK);
+    }
+    
+    /**
+     * Construct a new <code>TokenReservoir</code> and start its background
+     * refill thread.
+     * 
+     * @param generator the generator used to fill the reservoir
+     * @param capacity the buffer capacity per alphabet and length
+     * @param lowWaterMark the fill level below which a buffer is refilled,
+     *        at least 1 so that an empty buffer is always refilled
+     */
+    public TokenReservoir(
+            RandomTokenGenerator generator, int capacity, int lowWaterMark) {
+        if (capacity < 1 || lowWaterMark < 1 || lowWaterMark > capacity) {
+            throw new IllegalArgumentException(
+                    "invalid capacity or low-water mark");
+        }
+        this.generator = generator;
+        this.capacity = capacity;
+        this.lowWaterMark = lowWaterMark;
+        refiller = Thread.ofVirtual()
+                .name("jwebsec-token-reservoir")
+                .start(this::refill);
+    }
+    
+    /**
+     * Take a pre-generated token value of the specified length and radix from
+     * the reservoir, or return null if none is available.
+     * 
+     * @param length the validated token value length
+     * @param radix the radix for the character set
+     * @return a token value or null
+     */
+    String poll(int length, int radix) {
+        if (closed) {
+            return null;
+        }
+        ArrayBlockingQueue<String> buffer = BUFFERS.get(radix << 16 | length);
+        if (buffer == null) {
+            buffer = createBuffer(length, radix);
+            if (buffer == null) {
+                misses.increment();
+                return null;
+            }
+        }
+        String value = buffer.poll();
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        if (buffer.size() < lowWaterMark
+                && refillRequested.compareAndSet(false, true)) {
+            LockSupport.unpark(refiller);
+        }
+        return value;
+    }
+    
+    /**
+     * Create the buffer for the specified token length and radix, unless
+     * the length is too long or the reservoir already has the maximum
+     * number of buffers.
+     * 
+     * @param length the validated token value length
+     * @param radix the radix for the character set
+     * @return the buffer or null
+     */
+    private synchronized ArrayBlockingQueue<String> createBuffer(
+            int length, int radix) {
+        final int key = radix << 16 | length;
+        ArrayBlockingQueue<String> buffer = BUFFERS.get(key);
+        if (buffer == null && !closed && length <= MAX_BUFFERED_LENGTH
+                && BUFFERS.size() < MAX_BUFFERS) {
+            buffer = new ArrayBlockingQueue<>(capacity);
+            BUFFERS.put(key, buffer);
+        }
+        return buffer;
+    }
+    
+    /**
+     * Background refill loop, tops up every buffer to capacity and then parks
+     * until the next refill request.
+     */
+    private void refill() {
+        while (!closed) {
+            refillRequested.set(false);
+            for (Map.Entry<Integer, ArrayBlockingQueue<String>> e :
+                    BUFFERS.entrySet()) {
+                int key = e.getKey();
+                ArrayBlockingQueue<String> buffer = e.getValue();
+                while (!closed && buffer.remainingCapacity() > 0) {
+                    buffer.offer(generator.createCharTokenValue(
+                            key & 0xFFFF, key >>> 16));
+                }
+            }
+            if (!refillRequested.get()) {
+                LockSupport.park(this);
+            }
+        }
+    }
+    
+    /**
+     * Get the buffer capacity per alphabet and length.
+     * 
+     * @return the buffer capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * Get the fill level below which a buffer is refilled.
+     * 
+     * @return the low-water mark
+     */
+    public int getLowWaterMark() {
+        return lowWaterMark;
+    }
+    
+    /**
+     * Get the number of buffers, one per alphabet and length requested.
+     * 
+     * @return the number of buffers
+     */
+    public int getBufferCount() {
+        return BUFFERS.size();
+    }
+    
+    /**
+     * Get the total number of pre-generated token values currently held in
+     * the reservoir.
+     * 
+     * @return the total fill level
+     */
+    public int getFillLevel() {
+        int n = 0;
+        for (ArrayBlockingQueue<String> buffer : BUFFERS.values()) {
+            n += buffer.size();
+        }
+        return n;
+    }
+    
+    /**
+     * Get the number of pre-generated token values currently held for the
+     * specified alphanumeric token length.
+     * 
+     * @param length the token value length
+     * @return the fill level
+     */
+    public int getFillLevel(int length) {
+        return getFillLevel(length, RandomTokenGenerator.ALPHANUMERIC_RADIX);
+    }
+    
+    /**
+     * Get the number of pre-generated token values currently held for the
+     * specified token length and radix.
+     * 
+     * @param length the token value length
+     * @param radix the radix for the character set
+     * @return the fill level
+     */
+    int getFillLevel(int length, int radix) {
+        ArrayBlockingQueue<String> buffer = BUFFERS.get(radix << 16
+                | RandomTokenGenerator.checkTokenLength(length));
+        return buffer == null ? 0 : buffer.size();
+    }
+    
+    /**
+     * Get the number of token values served from the reservoir.
+     * 
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+    
+    /**
+     * Get the number of requests which found the reservoir empty and fell back
+     * to inline generation.
+     * 
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+    
+    /**
+     * Returns true if this reservoir has been closed.
+     * 
+     * @return true if closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+    
+    /**
+     * Stop the background refill thread and discard all pre-generated token
+     * values.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        LockSupport.unpark(refiller);
+        BUFFERS.clear();
+    }
+}
@@ -0,0 +1,64 @@
+package jwebsec;
+
+/**
+ * The <code>TokenStore</code> interface provides a mechanism for storing
+ * issued tokens server-side, keyed by token value, so that token values
+ * presented by clients can be looked up, validated and revoked. Expired
+ * tokens are never returned and are removed by the implementation.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public interface TokenStore extends AutoCloseable {
+    
+    /**
+     * Store a token, replacing any token with the same value.
+     * 
+     * @param token the token
+     * @throws IllegalStateException if the store has been closed
+     */
+    public void put(Token token);
+    
+    /**
+     * Get the unexpired token with the specified value, or null if there is
+     * no such token.
+     * 
+     * @param value the token value
+     * @return the token or null
+     */
+    public Token get(String value);
+    
+    /**
+     * Returns true if this store contains an unexpired token with the
+     * specified value.
+     * 
+     * @param value the token value
+     * @return true if a valid token with the value is stored
+     */
+    public boolean contains(String value);
+    
+    /**
+     * Remove the token with the specified value.
+     * 
+     * @param value the token value
+     * @return true if a token was removed
+     */
+    public boolean revoke(String value);
+    
+    /**
+     * Get the number of tokens in this store, which may include tokens which
+     * have expired but have not yet been removed.
+     * 
+     * @return the number of tokens
+     */
+    public int size();
+    
+    /**
+     * Release any resources held by this store.
+     */
+    @Override
+    public void close();
+}
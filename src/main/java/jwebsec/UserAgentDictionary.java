@@ -0,0 +1,200 @@
+package jwebsec;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <code>UserAgentDictionary</code> is a bounded, concurrent dictionary of
+ * canonical <code>User-Agent</code> header values. Many clients usually
+ * share a few thousand distinct values, so <code>HttpClient</code> stores the
+ * canonical instance from this dictionary instead of its own copy.
+ * <p>
+ *   Each dictionary entry counts how often it is used. When the dictionary is
+ *   full and enough new values have been turned away, an eviction pass
+ *   removes rarely used entries and halves the counts of the rest, so values
+ *   which were popular a long time ago eventually age out. A value that is
+ *   not in the dictionary is returned unchanged, so callers always get an
+ *   equal string and sharing is only an optimization.
+ * </p>
+ * <p>
+ *   The maximum size is read once at startup from the
+ *   <code>jwebsec.userAgent.dictionarySize</code> system property, and
+ *   defaults to 4,096. A size of zero disables the dictionary.
+ * </p>
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public final class UserAgentDictionary {
+    
+    /* System property name: &quot;jwebsec.userAgent.dictionarySize&quot; */
+    public static final String DICTIONARY_SIZE_PROPERTY =
+            "jwebsec.userAgent.dictionarySize";
+    
+    /* Default maximum dictionary size (4,096). */
+    public static final int DEFAULT_DICTIONARY_SIZE = 4096;
+    
+    /* Maximum length of a dictionary value (1,024). */
+    private static final int MAX_VALUE_LENGTH = 1024;
+    
+    /* Entries used at most this many times are evicted (1). */
+    private static final int EVICTION_THRESHOLD = 1;
+    
+    /* Logger */
+    private static final Logger LOGGER =
+            Logger.getLogger(UserAgentDictionary.class.getName());
+    
+    /* Maximum dictionary size. */
+    private static final int MAX_SIZE = resolveMaxSize();
+    
+    /**
+     * <code>Entry</code> is a canonical value and its use count.
+     */
+    private static final class Entry {
+        
+        private final String value;
+        
+        /* Racy use count, lost updates only affect eviction order. */
+        private int uses = 1;
+        
+        private Entry(String value) {
+            this.value = value;
+        }
+    }
+    
+    private static final Map<String, Entry> VALUES = new ConcurrentHashMap<>();
+    private static final AtomicBoolean EVICTING = new AtomicBoolean();
+    private static final AtomicInteger REJECTED = new AtomicInteger();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    
+    /**
+     * Private constructor.
+     */
+    private UserAgentDictionary() {
+    }
+    
+    /**
+     * Read the maximum dictionary size from the system property.
+     * 
+     * @return the maximum size
+     */
+    private static int resolveMaxSize() {
+        int size = DEFAULT_DICTIONARY_SIZE;
+        String param = System.getProperty(DICTIONARY_SIZE_PROPERTY);
+        if (param != null && !(param = param.trim()).isEmpty()) {
+            try {
+                size = Integer.parseInt(param);
+                if (size < 0) {
+                    throw new NumberFormatException();
+                }
+            } catch (NumberFormatException e) {
+                size = DEFAULT_DICTIONARY_SIZE;
+                LOGGER.log(
+                        Level.WARNING,
+                        "invalid dictionary size: {0}, using {1}",
+                        new Object[]{param, size});
+            }
+        }
+        return size;
+    }
+    
+    /**
+     * Get the canonical instance of a <code>User-Agent</code> header value,
+     * adding it to the dictionary if there is room. Returns the value itself
+     * if it is not in the dictionary and cannot be added.
+     * 
+     * @param userAgent the User-Agent header value, may be null
+     * @return an equal string, or null
+     */
+    public static String intern(String userAgent) {
+        if (userAgent == null || userAgent.length() > MAX_VALUE_LENGTH
+                || MAX_SIZE == 0) {
+            return userAgent;
+        }
+        Entry e = VALUES.get(userAgent);
+        if (e != null) {
+            e.uses++;
+            HITS.increment();
+            return e.value;
+        }
+        MISSES.increment();
+        if (VALUES.size() >= MAX_SIZE) {
+            if (REJECTED.incrementAndGet() < Math.max(MAX_SIZE >>> 3, 1)) {
+                return userAgent;
+            }
+            evict();
+            if (VALUES.size() >= MAX_SIZE) {
+                return userAgent;
+            }
+        }
+        e = VALUES.putIfAbsent(userAgent, new Entry(userAgent));
+        return e == null ? userAgent : e.value;
+    }
+    
+    /**
+     * Remove rarely used entries and halve the use counts of the remaining
+     * entries. Only one thread evicts at a time.
+     */
+    private static void evict() {
+        if (!EVICTING.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            REJECTED.set(0);
+            VALUES.values().removeIf(e -> {
+                if (e.uses <= EVICTION_THRESHOLD) {
+                    return true;
+                }
+                e.uses >>>= 1;
+                return false;
+            });
+        } finally {
+            EVICTING.set(false);
+        }
+    }
+    
+    /**
+     * Get the number of values in the dictionary.
+     * 
+     * @return the dictionary size
+     */
+    public static int size() {
+        return VALUES.size();
+    }
+    
+    /**
+     * Get the maximum number of values in the dictionary.
+     * 
+     * @return the maximum dictionary size
+     */
+    public static int getMaxSize() {
+        return MAX_SIZE;
+    }
+    
+    /**
+     * Get the number of lookups which found a canonical value.
+     * 
+     * @return the hit count
+     */
+    public static long getHitCount() {
+        return HITS.sum();
+    }
+    
+    /**
+     * Get the number of lookups which did not find a canonical value.
+     * 
+     * @return the miss count
+     */
+    public static long getMissCount() {
+        return MISSES.sum();
+    }
+}
@@ -6,6 +6,10 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import java.io.IOException;
+import java.util.Enumeration;
+import jwebsec.HttpClient;
+import jwebsec.RevocationIndex;
+import jwebsec.Token;
 
 /**
  * <code>UserLogoutController</code> is a controller servlet for processing a
@@ -13,10 +17,16 @@ import java.io.IOException;
  * The redirect URL can be passed to this servlet's path as URL parameter
  * <code>redirectURL</code>.
  * <p>
+ *   If a <code>RevocationIndex</code> is published as a servlet context
+ *   attribute, tokens held in the session, including client fingerprints,
+ *   are revoked before the session is invalidated so that they are rejected
+ *   on every node.
+ * </p>
+ * <p>
  *   &copy;2025 jWebSec. All rights reserved.
  * </p>
  * 
- * @version 0.1.2
+ * @version 0.2.0
  * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
  */
 public final class UserLogoutController extends HttpServlet {
@@ -38,7 +48,11 @@ public final class UserLogoutController extends HttpServlet {
         try {
             HttpSession session = request.getSession(false);
             if (session != null) {
-                session.invalidate();
+                try {
+                    revokeTokens(session);
+                } finally {
+                    session.invalidate();
+                }
             }
         } catch (Throwable error) {
             // ignore any servlet or illegal state exceptions
@@ -55,6 +69,38 @@ public final class UserLogoutController extends HttpServlet {
         response.sendRedirect(uri);
     }
     
+    /**
+     * Revoke the tokens held in session attributes, if a
+     * <code>RevocationIndex</code> is available. Tokens which cannot be
+     * revoked, because they expire too far in the future, are skipped.
+     * 
+     * @param session the session
+     */
+    private static void revokeTokens(final HttpSession session) {
+        Object index = session.getServletContext().getAttribute(
+                RevocationIndex.CONTEXT_ATTRIBUTE_NAME);
+        if (!(index instanceof RevocationIndex revocations)) {
+            return;
+        }
+        Enumeration<String> names = session.getAttributeNames();
+        while (names.hasMoreElements()) {
+            Object value = session.getAttribute(names.nextElement());
+            Token token = null;
+            if (value instanceof Token t) {
+                token = t;
+            } else if (value instanceof HttpClient client) {
+                token = client.getFingerprint();
+            }
+            if (token != null) {
+                try {
+                    revocations.revoke(token);
+                } catch (IllegalArgumentException e) {
+                    // expires beyond the revocation horizon
+                }
+            }
+        }
+    }
+    
     @Override
     public void doGet(
             final HttpServletRequest request,
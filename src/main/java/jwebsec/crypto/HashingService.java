@@ -0,0 +1,351 @@
+package jwebsec.crypto;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <code>HashingService</code> runs password hashing on a dedicated, bounded
+ * thread pool, so that bursts of expensive hashes, such as PBKDF2 with tens
+ * of thousands of iterations, do not tie up the servlet container's request
+ * threads.
+ * <p>
+ *   Hashes are computed by a pool with one thread per processor by default,
+ *   fed by a bounded queue. When the queue is full a hash is rejected at
+ *   once, and a hash which has waited in the queue longer than the maximum
+ *   queue wait is dropped without being computed, as its client has most
+ *   likely given up. Both complete the returned future exceptionally, with a
+ *   <code>RejectedExecutionException</code> or a
+ *   <code>TimeoutException</code>, so callers can answer with
+ *   <code>503 Service Unavailable</code>. Hashing failures complete the
+ *   future with the <code>HashException</code>.
+ * </p>
+ * <p>
+ *   The returned <code>CompletableFuture</code> fits asynchronous servlets.
+ *   Its future is completed on a pool thread, so dependent stages added with
+ *   the non-async methods such as <code>whenComplete</code> also run on the
+ *   pool thread, and hold up queued hashes while they run. Callbacks which do
+ *   more than hand off work should be dispatched to the container, for
+ *   example with <code>AsyncContext.start</code>, or added with the
+ *   <code>*Async</code> methods and another executor:
+ * </p>
+ * <pre>
+ *   AsyncContext async = request.startAsync();
+ *   service.hash(password, salt).whenComplete((hash, e) -&gt; async.start(
+ *       () -&gt; {
+ *           // verify the hash or send an error response
+ *           async.complete();
+ *       }));
+ * </pre>
+ * <p>
+ *   The provider is shared by all pool threads and must be thread-safe, as
+ *   <code>PBKDF2HashProvider</code> is if its parameters are not changed.
+ *   The password array is masked after hashing, and also if the hash is
+ *   rejected, times out or fails, so callers must not modify it until the
+ *   future completes.
+ * </p>
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public final class HashingService {
+    
+    /* Default queued hashes per pool thread (16). */
+    public static final int DEFAULT_QUEUE_CAPACITY_PER_THREAD = 16;
+    
+    /* Pool thread number. */
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+    
+    /**
+     * <code>HashTask</code> is a queued hash.
+     */
+    private final class HashTask implements Runnable {
+        
+        private final char[] password;
+        private final byte[] salt;
+        private final byte[] pepper;
+        private final CompletableFuture<byte[]> future =
+                new CompletableFuture<>();
+        private final long queued = System.nanoTime();
+        
+        private HashTask(char[] password, byte[] salt, byte[] pepper) {
+            this.password = password;
+            this.salt = salt;
+            this.pepper = pepper;
+        }
+        
+        @Override
+        public void run() {
+            final long start = System.nanoTime();
+            final long wait = start - queued;
+            waitNanos.add(wait);
+            if (maxQueueWaitNanos > 0 && wait > maxQueueWaitNanos) {
+                timedOut.increment();
+                mask(password);
+                future.completeExceptionally(new TimeoutException(
+                        "hash waited " + wait / 1000000 + " ms in queue"));
+                return;
+            }
+            try {
+                final byte[] hash = pepper == null ?
+                        provider.hash(password, salt) :
+                        provider.hash(password, salt, pepper);
+                completed.increment();
+                hashNanos.add(System.nanoTime() - start);
+                future.complete(hash);
+            } catch (HashException | RuntimeException e) {
+                failed.increment();
+                hashNanos.add(System.nanoTime() - start);
+                mask(password);
+                future.completeExceptionally(e);
+            }
+        }
+    }
+    
+    private final HashAlgorithmProvider provider;
+    private final ThreadPoolExecutor executor;
+    private final long maxQueueWaitNanos;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    
+    /**
+     * Construct a new <code>HashingService</code> with one thread per
+     * processor and no maximum queue wait.
+     * 
+     * @param provider the hash algorithm provider
+     */
+    public HashingService(HashAlgorithmProvider provider) {
+        this(provider, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Construct a new <code>HashingService</code> with the default queue
+     * capacity and no maximum queue wait.
+     * 
+     * @param provider the hash algorithm provider
+     * @param threads the number of pool threads
+     */
+    public HashingService(HashAlgorithmProvider provider, int threads) {
+        this(provider, threads, threads * DEFAULT_QUEUE_CAPACITY_PER_THREAD,
+                0);
+    }
+    
+    /**
+     * Construct a new <code>HashingService</code>.
+     * 
+     * @param provider the hash algorithm provider
+     * @param threads the number of pool threads
+     * @param queueCapacity the maximum number of queued hashes
+     * @param maxQueueWaitMillis the maximum time a hash may wait in the queue
+     *        in milliseconds, or zero for no limit
+     */
+    public HashingService(HashAlgorithmProvider provider, int threads,
+            int queueCapacity, long maxQueueWaitMillis) {
+        if (provider == null) {
+            throw new IllegalArgumentException("provider is null");
+        }
+        if (threads < 1 || queueCapacity < 1 || maxQueueWaitMillis < 0) {
+            throw new IllegalArgumentException("invalid pool settings");
+        }
+        this.provider = provider;
+        this.maxQueueWaitNanos =
+                TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMillis);
+        ThreadFactory factory = r -> {
+            Thread t = new Thread(
+                    r, "jwebsec-hashing-" + THREAD_NUMBER.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        executor = new ThreadPoolExecutor(threads, threads,
+                0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), factory,
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+    
+    /**
+     * Hash the password with the specified salt.
+     * 
+     * @param password the password to be hashed
+     * @param salt the hashing salt value
+     * @return the future hash value
+     */
+    public CompletableFuture<byte[]> hash(char[] password, byte[] salt) {
+        return submit(new HashTask(password, salt, null));
+    }
+    
+    /**
+     * Hash the password with the specified salt and pepper.
+     * 
+     * @param password the password to be hashed
+     * @param salt the hashing salt value
+     * @param pepper the hashing pepper value
+     * @return the future hash value
+     * @throws IllegalArgumentException if the pepper is null, after the
+     *         password has been masked
+     */
+    public CompletableFuture<byte[]> hash(
+            char[] password, byte[] salt, byte[] pepper) {
+        boolean accepted = false;
+        try {
+            if (pepper == null) {
+                throw new IllegalArgumentException("pepper is null");
+            }
+            CompletableFuture<byte[]> future =
+                    submit(new HashTask(password, salt, pepper));
+            accepted = true;
+            return future;
+        } finally {
+            if (!accepted) {
+                mask(password);
+            }
+        }
+    }
+    
+    /**
+     * Queue a hash, or reject it if the queue is full.
+     * 
+     * @param task the hash task
+     * @return the future hash value
+     */
+    private CompletableFuture<byte[]> submit(HashTask task) {
+        submitted.increment();
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            mask(task.password);
+            task.future.completeExceptionally(e);
+        }
+        return task.future;
+    }
+    
+    /**
+     * Mask a password which was not hashed, as the provider would have.
+     * 
+     * @param password the password, may be null
+     */
+    private static void mask(char[] password) {
+        if (password != null) {
+            Arrays.fill(password, '*');
+        }
+    }
+    
+    /**
+     * Get the number of queued hashes.
+     * 
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+    
+    /**
+     * Get the number of hashes being computed.
+     * 
+     * @return the active hash count
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+    
+    /**
+     * Get the number of submitted hashes.
+     * 
+     * @return the submitted count
+     */
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+    
+    /**
+     * Get the number of hashes rejected because the queue was full or the
+     * service was shut down.
+     * 
+     * @return the rejected count
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+    
+    /**
+     * Get the number of hashes dropped because they waited in the queue
+     * longer than the maximum queue wait.
+     * 
+     * @return the timed out count
+     */
+    public long getTimedOutCount() {
+        return timedOut.sum();
+    }
+    
+    /**
+     * Get the number of hashes computed.
+     * 
+     * @return the completed count
+     */
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+    
+    /**
+     * Get the number of hashes which failed with an exception.
+     * 
+     * @return the failed count
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+    
+    /**
+     * Get the total time hashes waited in the queue.
+     * 
+     * @return the total wait time in nanoseconds
+     */
+    public long getTotalWaitNanos() {
+        return waitNanos.sum();
+    }
+    
+    /**
+     * Get the total time spent computing hashes.
+     * 
+     * @return the total hash time in nanoseconds
+     */
+    public long getTotalHashNanos() {
+        return hashNanos.sum();
+    }
+    
+    /**
+     * Shut down the pool. Queued hashes are still computed, new hashes are
+     * rejected.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+    
+    /**
+     * Wait for queued hashes to finish after a shutdown.
+     * 
+     * @param timeout the maximum time to wait
+     * @param unit the time unit
+     * @return true if the pool terminated
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+}
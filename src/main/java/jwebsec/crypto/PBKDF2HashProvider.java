@@ -1,8 +1,13 @@
 package jwebsec.crypto;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
-import java.security.spec.KeySpec;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
 import jwebsec.JavaUtils;
@@ -11,10 +16,22 @@ import jwebsec.JavaUtils;
  * <code>PBKDF2HashProvider</code> provides support for the PBKDF2WithHmacSHA512
  * hash algorithm which should be included with the JRE.
  * <p>
+ *   The password, the copy held by the <code>PBEKeySpec</code> and the
+ *   intermediate key bytes are cleared after each hash, including when the
+ *   arguments are invalid.
+ * </p>
+ * <p>
+ *   Setting the <code>ENGINE</code> parameter to {@link Engine#JAVA} selects
+ *   a pure-Java implementation which precomputes the HMAC key block states
+ *   once per password and runs the iterations without allocation. It
+ *   produces the same hash values as the JRE implementation, which remains
+ *   the default.
+ * </p>
+ * <p>
  *   &copy;2025 jWebSec. All rights reserved.
  * </p>
  * 
- * @version 0.2.0
+ * @version 0.4.0
  * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
  */
 public final class PBKDF2HashProvider implements HashAlgorithmProvider {
@@ -26,13 +43,32 @@ public final class PBKDF2HashProvider implements HashAlgorithmProvider {
     public static final String PARAMETER_NAME_ITERATION_COUNT =
             "ITERATION_COUNT";
     
+    /* Parameter name: &quot;ENGINE&quot; */
+    public static final String PARAMETER_NAME_ENGINE = "ENGINE";
+    
     /* Default iteration count (65,536). */
     public static final int DEFAULT_ITERATION_COUNT = 65536;
     
     /* Key length in bits (512). */
     public static final int KEY_LENGTH = 512;
     
+    /* Hash length in bytes (64). */
+    public static final int HASH_LENGTH = KEY_LENGTH / 8;
+    
+    /**
+     * <code>Engine</code> selects the PBKDF2 implementation.
+     */
+    public static enum Engine {
+        
+        /* The JRE's <code>SecretKeyFactory</code> implementation. */
+        JCE,
+        
+        /* The pure-Java implementation. */
+        JAVA
+    }
+    
     private int iterationCount;
+    private Engine engine = Engine.JCE;
     
     /**
      * Default <code>PBKDF2HashProvider</code> constructor.
@@ -69,6 +105,24 @@ public final class PBKDF2HashProvider implements HashAlgorithmProvider {
         iterationCount = i;
     }
     
+    /**
+     * Return the PBKDF2 implementation.
+     * 
+     * @return the engine
+     */
+    public Engine getEngine() {
+        return engine;
+    }
+    
+    /**
+     * Set the PBKDF2 implementation.
+     * 
+     * @param engine the engine
+     */
+    public void setEngine(Engine engine) {
+        this.engine = engine == null ? Engine.JCE : engine;
+    }
+    
     @Override
     public String getAlgorithmName() {
         return ALGORITHM_NAME;
@@ -79,17 +133,30 @@ public final class PBKDF2HashProvider implements HashAlgorithmProvider {
         Object value;
         if (PARAMETER_NAME_ITERATION_COUNT.equals(name)) {
             value = iterationCount;
+        } else if (PARAMETER_NAME_ENGINE.equals(name)) {
+            value = engine;
         } else {
             value = null;
         }
         return value;
     }
-
+    
     @Override
     public void setParameter(String name, Object value) {
         if (PARAMETER_NAME_ITERATION_COUNT.equals(name)
                 && value instanceof Integer) {
             iterationCount = (Integer)value;
+        } else if (PARAMETER_NAME_ENGINE.equals(name)) {
+            if (value instanceof Engine e) {
+                engine = e;
+            } else if (value instanceof String str) {
+                try {
+                    engine = Engine.valueOf(
+                            str.trim().toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    // ignore unknown engine names
+                }
+            }
         }
     }
     
@@ -101,28 +168,100 @@ public final class PBKDF2HashProvider implements HashAlgorithmProvider {
     @Override
     public void reset() {
         iterationCount = DEFAULT_ITERATION_COUNT;
+        engine = Engine.JCE;
     }
     
     @Override
     public byte[] hash(char[] password, byte[] salt) throws HashException {
+        byte[] hashValue = new byte[HASH_LENGTH];
+        hash(password, salt, hashValue, 0);
+        return hashValue;
+    }
+    
+    /**
+     * Hash the password with the specified salt, writing the
+     * {@link #HASH_LENGTH} byte hash value into a buffer.
+     * 
+     * @param password the password to be hashed
+     * @param salt the hashing salt value
+     * @param out the buffer for the hash value
+     * @param offset the offset in the buffer
+     * @throws HashException
+     */
+    public void hash(char[] password, byte[] salt, byte[] out, int offset)
+            throws HashException {
+        PBEKeySpec spec = null;
+        byte[] key = null;
         try {
+            Objects.checkFromIndexSize(offset, HASH_LENGTH, out.length);
+            if (engine == Engine.JAVA) {
+                hashJava(password, salt, out, offset);
+                return;
+            }
             SecretKeyFactory factory =
                     SecretKeyFactory.getInstance(ALGORITHM_NAME);
-            KeySpec spec = new PBEKeySpec(
-                    password, salt, iterationCount, KEY_LENGTH);
-            byte[] hashValue = factory.generateSecret(spec).getEncoded();
-            for (int i = 0; i < password.length; i++) {
-                password[i] = '*';
-            }
-            return hashValue;
+            spec = new PBEKeySpec(password, salt, iterationCount, KEY_LENGTH);
+            key = factory.generateSecret(spec).getEncoded();
+            System.arraycopy(key, 0, out, offset, HASH_LENGTH);
         } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
             throw new HashException(e);
+        } finally {
+            if (spec != null) {
+                spec.clearPassword();
+            }
+            if (key != null) {
+                Arrays.fill(key, (byte)0);
+            }
+            if (password != null) {
+                Arrays.fill(password, '*');
+            }
+        }
+    }
+    
+    /**
+     * Hash the password with the pure-Java implementation. The password is
+     * encoded as UTF-8, as by the JRE implementation, and is masked by the
+     * caller.
+     * 
+     * @param password the password to be hashed
+     * @param salt the hashing salt value
+     * @param out the buffer for the hash value
+     * @param offset the offset in the buffer
+     * @throws HashException if the salt or iteration count is invalid
+     */
+    private void hashJava(char[] password, byte[] salt, byte[] out, int offset)
+            throws HashException {
+        byte[] bytes = null;
+        try {
+            if (salt == null || salt.length == 0 || iterationCount < 1) {
+                throw new HashException("invalid salt or iteration count");
+            }
+            ByteBuffer buffer =
+                    StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+            bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            Arrays.fill(buffer.array(), (byte)0);
+            PBKDF2HmacSHA512.derive(
+                    bytes, salt, iterationCount, out, offset, HASH_LENGTH);
+        } finally {
+            if (bytes != null) {
+                Arrays.fill(bytes, (byte)0);
+            }
         }
     }
     
     @Override
     public byte[] hash(
             char[] password, byte[] salt, byte[] pepper) throws HashException {
-        return hash(password, JavaUtils.combine(salt, pepper));
+        final byte[] combined;
+        try {
+            combined = JavaUtils.combine(salt, pepper);
+        } catch (RuntimeException e) {
+            if (password != null) {
+                Arrays.fill(password, '*');
+            }
+            throw e;
+        }
+        return hash(password, combined);
     }
 }
@@ -0,0 +1,286 @@
+package jwebsec.crypto;
+
+import java.util.Arrays;
+
+/**
+ * <code>PBKDF2HmacSHA512</code> is a pure-Java implementation of PBKDF2 (RFC
+ * 8018) with HMAC-SHA512, producing the same output as the JRE's
+ * <code>PBKDF2WithHmacSHA512</code>.
+ * <p>
+ *   The SHA-512 states after the HMAC inner and outer key blocks are
+ *   computed once per password, so each iteration is exactly two SHA-512
+ *   compressions of a single, pre-padded block. The iteration loop works
+ *   on preallocated <code>long</code> arrays and does not allocate.
+ * </p>
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+final class PBKDF2HmacSHA512 {
+    
+    /* SHA-512 block length in bytes (128). */
+    private static final int BLOCK_LENGTH = 128;
+    
+    /* SHA-512 digest length in bytes (64). */
+    private static final int DIGEST_LENGTH = 64;
+    
+    /* Bit length of a key block followed by a digest (1,536). */
+    private static final long BLOCK_AND_DIGEST_BITS =
+            (BLOCK_LENGTH + DIGEST_LENGTH) * 8;
+    
+    /* SHA-512 initial hash value. */
+    private static final long[] IV = {
+        0x6a09e667f3bcc908L, 0xbb67ae8584caa73bL, 0x3c6ef372fe94f82bL,
+        0xa54ff53a5f1d36f1L, 0x510e527fade682d1L, 0x9b05688c2b3e6c1fL,
+        0x1f83d9abfb41bd6bL, 0x5be0cd19137e2179L
+    };
+    
+    /* SHA-512 round constants. */
+    private static final long[] K = {
+        0x428a2f98d728ae22L, 0x7137449123ef65cdL, 0xb5c0fbcfec4d3b2fL,
+        0xe9b5dba58189dbbcL, 0x3956c25bf348b538L, 0x59f111f1b605d019L,
+        0x923f82a4af194f9bL, 0xab1c5ed5da6d8118L, 0xd807aa98a3030242L,
+        0x12835b0145706fbeL, 0x243185be4ee4b28cL, 0x550c7dc3d5ffb4e2L,
+        0x72be5d74f27b896fL, 0x80deb1fe3b1696b1L, 0x9bdc06a725c71235L,
+        0xc19bf174cf692694L, 0xe49b69c19ef14ad2L, 0xefbe4786384f25e3L,
+        0x0fc19dc68b8cd5b5L, 0x240ca1cc77ac9c65L, 0x2de92c6f592b0275L,
+        0x4a7484aa6ea6e483L, 0x5cb0a9dcbd41fbd4L, 0x76f988da831153b5L,
+        0x983e5152ee66dfabL, 0xa831c66d2db43210L, 0xb00327c898fb213fL,
+        0xbf597fc7beef0ee4L, 0xc6e00bf33da88fc2L, 0xd5a79147930aa725L,
+        0x06ca6351e003826fL, 0x142929670a0e6e70L, 0x27b70a8546d22ffcL,
+        0x2e1b21385c26c926L, 0x4d2c6dfc5ac42aedL, 0x53380d139d95b3dfL,
+        0x650a73548baf63deL, 0x766a0abb3c77b2a8L, 0x81c2c92e47edaee6L,
+        0x92722c851482353bL, 0xa2bfe8a14cf10364L, 0xa81a664bbc423001L,
+        0xc24b8b70d0f89791L, 0xc76c51a30654be30L, 0xd192e819d6ef5218L,
+        0xd69906245565a910L, 0xf40e35855771202aL, 0x106aa07032bbd1b8L,
+        0x19a4c116b8d2d0c8L, 0x1e376c085141ab53L, 0x2748774cdf8eeb99L,
+        0x34b0bcb5e19b48a8L, 0x391c0cb3c5c95a63L, 0x4ed8aa4ae3418acbL,
+        0x5b9cca4f7763e373L, 0x682e6ff3d6b2b8a3L, 0x748f82ee5defb2fcL,
+        0x78a5636f43172f60L, 0x84c87814a1f0ab72L, 0x8cc702081a6439ecL,
+        0x90befffa23631e28L, 0xa4506cebde82bde9L, 0xbef9a3f7b2c67915L,
+        0xc67178f2e372532bL, 0xca273eceea26619cL, 0xd186b8c721c0c207L,
+        0xeada7dd6cde0eb1eL, 0xf57d4f7fee6ed178L, 0x06f067aa72176fbaL,
+        0x0a637dc5a2c898a6L, 0x113f9804bef90daeL, 0x1b710b35131c471bL,
+        0x28db77f523047d84L, 0x32caab7b40c72493L, 0x3c9ebe0a15c9bebcL,
+        0x431d67c49c100d4cL, 0x4cc5d4becb3e42b6L, 0x597f299cfc657e2aL,
+        0x5fcb6fab3ad6faecL, 0x6c44198c4a475817L
+    };
+    
+    /**
+     * Private constructor.
+     */
+    private PBKDF2HmacSHA512() {
+    }
+    
+    /**
+     * Derive a key.
+     * 
+     * @param password the password bytes
+     * @param salt the salt
+     * @param iterations the iteration count
+     * @param out the buffer for the derived key
+     * @param offset the offset in the buffer
+     * @param length the derived key length in bytes
+     */
+    static void derive(byte[] password, byte[] salt, int iterations,
+            byte[] out, int offset, int length) {
+        final long[] w = new long[80];
+        final long[] inner = new long[8];
+        final long[] outer = new long[8];
+        final long[] u = new long[8];
+        final long[] t = new long[8];
+        // HMAC key blocks; keys longer than a block are hashed first
+        final byte[] key = new byte[BLOCK_LENGTH];
+        if (password.length > BLOCK_LENGTH) {
+            long[] digest = IV.clone();
+            digest(digest, 0, password, null, w);
+            toBytes(digest, key, 0, DIGEST_LENGTH);
+        } else {
+            System.arraycopy(password, 0, key, 0, password.length);
+        }
+        for (int j = 0; j < BLOCK_LENGTH; j++) {
+            key[j] ^= 0x36;
+        }
+        System.arraycopy(IV, 0, inner, 0, 8);
+        load(key, 0, w);
+        compress(inner, w);
+        for (int j = 0; j < BLOCK_LENGTH; j++) {
+            key[j] ^= 0x36 ^ 0x5c;
+        }
+        System.arraycopy(IV, 0, outer, 0, 8);
+        load(key, 0, w);
+        compress(outer, w);
+        Arrays.fill(key, (byte)0);
+        final byte[] index = new byte[4];
+        for (int block = 1; length > 0; block++) {
+            // U1 = HMAC(P, S || INT(i))
+            index[0] = (byte)(block >>> 24);
+            index[1] = (byte)(block >>> 16);
+            index[2] = (byte)(block >>> 8);
+            index[3] = (byte)block;
+            System.arraycopy(inner, 0, u, 0, 8);
+            digest(u, BLOCK_LENGTH, salt, index, w);
+            hmac(outer, u, w);
+            System.arraycopy(u, 0, t, 0, 8);
+            // Uj = HMAC(P, Uj-1)
+            for (int i = 1; i < iterations; i++) {
+                hmac(inner, u, w);
+                hmac(outer, u, w);
+                for (int k = 0; k < 8; k++) {
+                    t[k] ^= u[k];
+                }
+            }
+            final int n = Math.min(length, DIGEST_LENGTH);
+            toBytes(t, out, offset, n);
+            offset += n;
+            length -= n;
+        }
+        Arrays.fill(w, 0);
+        Arrays.fill(inner, 0);
+        Arrays.fill(outer, 0);
+        Arrays.fill(u, 0);
+        Arrays.fill(t, 0);
+    }
+    
+    /**
+     * Replace a digest with the SHA-512 hash of a key block followed by the
+     * digest, starting from the state after the key block. This is one half
+     * of an HMAC computation.
+     * 
+     * @param keyState the inner or outer key block state
+     * @param u the digest, replaced by the hash
+     * @param w the message schedule buffer
+     */
+    private static void hmac(long[] keyState, long[] u, long[] w) {
+        System.arraycopy(u, 0, w, 0, 8);
+        w[8] = 0x8000000000000000L;
+        Arrays.fill(w, 9, 15, 0);
+        w[15] = BLOCK_AND_DIGEST_BITS;
+        System.arraycopy(keyState, 0, u, 0, 8);
+        compress(u, w);
+    }
+    
+    /**
+     * Hash a message of one or two parts, after some bytes which have
+     * already been compressed into the state.
+     * 
+     * @param state the hash state, replaced by the digest
+     * @param processed the number of bytes already compressed
+     * @param first the first part
+     * @param second the second part, or null
+     * @param w the message schedule buffer
+     */
+    private static void digest(long[] state, long processed, byte[] first,
+            byte[] second, long[] w) {
+        final int length = first.length + (second == null ? 0 : second.length);
+        // pad with 0x80, zeros and the 128-bit bit length
+        final int padded = (length + 17 + BLOCK_LENGTH - 1)
+                / BLOCK_LENGTH * BLOCK_LENGTH;
+        final byte[] message = new byte[padded];
+        System.arraycopy(first, 0, message, 0, first.length);
+        if (second != null) {
+            System.arraycopy(second, 0, message, first.length, second.length);
+        }
+        message[length] = (byte)0x80;
+        final long bits = (processed + length) * 8;
+        for (int i = 0; i < 8; i++) {
+            message[padded - 1 - i] = (byte)(bits >>> 8 * i);
+        }
+        for (int i = 0; i < padded; i += BLOCK_LENGTH) {
+            load(message, i, w);
+            compress(state, w);
+        }
+        Arrays.fill(message, (byte)0);
+    }
+    
+    /**
+     * Load a block into the first 16 words of the message schedule.
+     * 
+     * @param b the bytes
+     * @param offset the block offset
+     * @param w the message schedule buffer
+     */
+    private static void load(byte[] b, int offset, long[] w) {
+        for (int i = 0; i < 16; i++, offset += 8) {
+            w[i] = (b[offset] & 0xFFL) << 56
+                    | (b[offset + 1] & 0xFFL) << 48
+                    | (b[offset + 2] & 0xFFL) << 40
+                    | (b[offset + 3] & 0xFFL) << 32
+                    | (b[offset + 4] & 0xFFL) << 24
+                    | (b[offset + 5] & 0xFFL) << 16
+                    | (b[offset + 6] & 0xFFL) << 8
+                    | (b[offset + 7] & 0xFFL);
+        }
+    }
+    
+    /**
+     * Write the first bytes of a hash state in big-endian order.
+     * 
+     * @param state the hash state
+     * @param out the buffer
+     * @param offset the offset in the buffer
+     * @param length the number of bytes
+     */
+    private static void toBytes(long[] state, byte[] out, int offset,
+            int length) {
+        for (int i = 0; i < length; i++) {
+            out[offset + i] = (byte)(state[i >>> 3] >>> 56 - 8 * (i & 7));
+        }
+    }
+    
+    /**
+     * SHA-512 compression function.
+     * 
+     * @param state the hash state, updated in place
+     * @param w the message schedule, with the block in the first 16 words
+     */
+    private static void compress(long[] state, long[] w) {
+        for (int i = 16; i < 80; i++) {
+            final long w2 = w[i - 2];
+            final long w15 = w[i - 15];
+            w[i] = (Long.rotateRight(w2, 19) ^ Long.rotateRight(w2, 61)
+                    ^ (w2 >>> 6))
+                    + w[i - 7]
+                    + (Long.rotateRight(w15, 1) ^ Long.rotateRight(w15, 8)
+                    ^ (w15 >>> 7))
+                    + w[i - 16];
+        }
+        long a = state[0];
+        long b = state[1];
+        long c = state[2];
+        long d = state[3];
+        long e = state[4];
+        long f = state[5];
+        long g = state[6];
+        long h = state[7];
+        for (int i = 0; i < 80; i++) {
+            final long t1 = h
+                    + (Long.rotateRight(e, 14) ^ Long.rotateRight(e, 18)
+                    ^ Long.rotateRight(e, 41))
+                    + ((e & f) ^ (~e & g))
+                    + K[i] + w[i];
+            final long t2 = (Long.rotateRight(a, 28) ^ Long.rotateRight(a, 34)
+                    ^ Long.rotateRight(a, 39))
+                    + ((a & b) ^ (a & c) ^ (b & c));
+            h = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+        state[4] += e;
+        state[5] += f;
+        state[6] += g;
+        state[7] += h;
+    }
+}
@@ -0,0 +1,377 @@
+package jwebsec.filters;
+
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.Collections;
+import java.util.List;
+import jwebsec.IPAddress;
+import jwebsec.IPPrefixTrie;
+
+/**
+ * <code>ClientAddressResolver</code> resolves the address of the client which
+ * sent a request through trusted reverse proxies or load balancers, from the
+ * <code>X-Forwarded-For</code> header or the RFC 7239 <code>Forwarded</code>
+ * header.
+ * <p>
+ *   The forwarding header is only used if the connection comes from a
+ *   trusted proxy. Each proxy appends the address it received the request
+ *   from, so the header is scanned right-to-left in a single pass, skipping
+ *   trusted proxies, and the first untrusted address is the client. Anything
+ *   to the left of it may have been forged by the client and is ignored. If
+ *   an entry cannot be parsed, e.g., an obfuscated <code>Forwarded</code>
+ *   node or a malformed address, or the header has more than the maximum
+ *   number of hops, the nearest trusted hop is used instead, which is the
+ *   proxy that received the request from the unknown client. If every hop
+ *   is trusted, the leftmost hop is used.
+ * </p>
+ * <p>
+ *   Entries may carry a port, e.g., <code>192.0.2.1:8080</code> or
+ *   <code>[2001:db8::1]:8080</code>. <code>Forwarded</code> elements are split
+ *   on commas without considering quoted strings, so an element containing a
+ *   quoted comma is treated as malformed.
+ * </p>
+ * <p>
+ *   The resolved address is cached in the request attribute
+ *   {@link #CLIENT_ADDRESS_ATTRIBUTE}, so later filters can read it with
+ *   {@link #getClientAddress(ServletRequest)} without parsing the headers
+ *   again.
+ * </p>
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public final class ClientAddressResolver {
+    
+    /* Request attribute name for the resolved client address. */
+    public static final String CLIENT_ADDRESS_ATTRIBUTE =
+            ClientAddressResolver.class.getName() + ".clientAddress";
+    
+    /* Default maximum number of hops scanned (20). */
+    public static final int DEFAULT_MAX_HOPS = 20;
+    
+    /**
+     * <code>ForwardedHeader</code> selects the header which carries the
+     * forwarding chain.
+     */
+    public static enum ForwardedHeader {
+        
+        /* De facto standard <code>X-Forwarded-For</code> header. */
+        X_FORWARDED_FOR("X-Forwarded-For"),
+        
+        /* RFC 7239 <code>Forwarded</code> header. */
+        FORWARDED("Forwarded");
+        
+        private final String headerName;
+        
+        private ForwardedHeader(String headerName) {
+            this.headerName = headerName;
+        }
+        
+        /**
+         * Get the HTTP header name.
+         * 
+         * @return the header name
+         */
+        public String getHeaderName() {
+            return headerName;
+        }
+    }
+    
+    private final IPPrefixTrie trustedProxies;
+    private final ForwardedHeader header;
+    private final int maxHops;
+    
+    /**
+     * Construct a new <code>ClientAddressResolver</code>.
+     * 
+     * @param trustedProxies the trusted proxy addresses
+     * @param header the forwarding header
+     */
+    public ClientAddressResolver(
+            IPPrefixTrie trustedProxies, ForwardedHeader header) {
+        this(trustedProxies, header, DEFAULT_MAX_HOPS);
+    }
+    
+    /**
+     * Construct a new <code>ClientAddressResolver</code>.
+     * 
+     * @param trustedProxies the trusted proxy addresses
+     * @param header the forwarding header
+     * @param maxHops the maximum number of hops scanned
+     */
+    public ClientAddressResolver(
+            IPPrefixTrie trustedProxies, ForwardedHeader header, int maxHops) {
+        if (maxHops < 1) {
+            throw new IllegalArgumentException("invalid maximum hops");
+        }
+        this.trustedProxies = trustedProxies;
+        this.header = header;
+        this.maxHops = maxHops;
+    }
+    
+    /**
+     * Create a resolver from the <code>TRUSTED_PROXIES</code> and
+     * <code>FORWARDED_HEADER</code> filter init parameters.
+     * 
+     * @param config the filter config
+     * @return the resolver, or null if no trusted proxies are configured
+     * @throws ServletException if a parameter is invalid
+     */
+    static ClientAddressResolver fromConfig(FilterConfig config)
+            throws ServletException {
+        String csv = config.getInitParameter("TRUSTED_PROXIES");
+        if (csv == null || (csv = csv.trim()).isEmpty()) {
+            return null;
+        }
+        ForwardedHeader header = ForwardedHeader.X_FORWARDED_FOR;
+        String param = config.getInitParameter("FORWARDED_HEADER");
+        if (param != null && !(param = param.trim()).isEmpty()) {
+            if (param.equalsIgnoreCase("Forwarded")) {
+                header = ForwardedHeader.FORWARDED;
+            } else if (!param.equalsIgnoreCase("X-Forwarded-For")) {
+                throw new ServletException(
+                        "invalid forwarded header: " + param);
+            }
+        }
+        IPPrefixTrie.Builder builder = IPPrefixTrie.builder();
+        try {
+            for (String proxy : csv.split("\\s*,\\s*")) {
+                if (!proxy.isEmpty()) {
+                    builder.add(proxy);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ServletException("invalid trusted proxies", e);
+        }
+        return new ClientAddressResolver(builder.build(), header);
+    }
+    
+    /**
+     * Get the client address cached in a request by a resolver, or parse the
+     * request's remote address if no address has been resolved.
+     * 
+     * @param req the request
+     * @return the client address, or null if it cannot be parsed
+     */
+    public static IPAddress getClientAddress(ServletRequest req) {
+        return req.getAttribute(CLIENT_ADDRESS_ATTRIBUTE)
+                instanceof IPAddress address ?
+                        address : IPAddress.tryParse(req.getRemoteAddr());
+    }
+    
+    /**
+     * Resolve the client address of a request and cache it in the request.
+     * 
+     * @param req the request
+     * @return the client address, or null if the remote address cannot be
+     *         parsed
+     */
+    public IPAddress resolve(ServletRequest req) {
+        if (req.getAttribute(CLIENT_ADDRESS_ATTRIBUTE)
+                instanceof IPAddress address) {
+            return address;
+        }
+        IPAddress address = IPAddress.tryParse(req.getRemoteAddr());
+        if (address != null && trustedProxies.contains(address)
+                && req instanceof HttpServletRequest request) {
+            List<String> values = Collections.list(
+                    request.getHeaders(header.getHeaderName()));
+            address = resolve(address, values);
+        }
+        if (address != null) {
+            req.setAttribute(CLIENT_ADDRESS_ATTRIBUTE, address);
+        }
+        return address;
+    }
+    
+    /**
+     * Resolve the client address from the remote address and the values of
+     * the forwarding header, in the order received.
+     * 
+     * @param remote the remote address
+     * @param values the header values
+     * @return the client address
+     */
+    public IPAddress resolve(IPAddress remote, List<String> values) {
+        if (!trustedProxies.contains(remote)) {
+            return remote;
+        }
+        IPAddress nearest = remote;
+        int hops = 0;
+        for (int h = values.size() - 1; h >= 0; h--) {
+            final String value = values.get(h);
+            if (value == null) {
+                continue;
+            }
+            int end = value.length();
+            while (end >= 0) {
+                final int comma = value.lastIndexOf(',', end - 1);
+                IPAddress hop = header == ForwardedHeader.FORWARDED ?
+                        parseForwardedElement(value, comma + 1, end) :
+                        parseNode(value, comma + 1, end);
+                if (hop == null || ++hops > maxHops) {
+                    return nearest;
+                }
+                if (!trustedProxies.contains(hop)) {
+                    return hop;
+                }
+                nearest = hop;
+                end = comma;
+            }
+        }
+        return nearest;
+    }
+    
+    /**
+     * Parse the <code>for</code> parameter of a <code>Forwarded</code>
+     * element.
+     * 
+     * @param s the header value
+     * @param start the element start index, inclusive
+     * @param end the element end index, exclusive
+     * @return the address, or null if it is missing or cannot be parsed
+     */
+    private static IPAddress parseForwardedElement(
+            String s, int start, int end) {
+        int pair = start;
+        while (pair < end) {
+            int semicolon = s.indexOf(';', pair);
+            if (semicolon < 0 || semicolon > end) {
+                semicolon = end;
+            }
+            int i = skipSpace(s, pair, semicolon);
+            if (semicolon - i > 4 && s.regionMatches(true, i, "for", 0, 3)) {
+                int j = skipSpace(s, i + 3, semicolon);
+                if (j < semicolon && s.charAt(j) == '=') {
+                    return parseForwardedNode(s, j + 1, semicolon);
+                }
+            }
+            pair = semicolon + 1;
+        }
+        return null;
+    }
+    
+    /**
+     * Parse a <code>Forwarded</code> node, which is a token or a quoted
+     * string.
+     * 
+     * @param s the header value
+     * @param start the node start index, inclusive
+     * @param end the node end index, exclusive
+     * @return the address, or null if it cannot be parsed
+     */
+    private static IPAddress parseForwardedNode(String s, int start, int end) {
+        start = skipSpace(s, start, end);
+        end = trimSpace(s, start, end);
+        if (end - start >= 2 && s.charAt(start) == '"') {
+            if (s.charAt(end - 1) != '"') {
+                return null;
+            }
+            start++;
+            end--;
+            final int escape = s.indexOf('\\', start);
+            if (escape >= 0 && escape < end) {
+                return null;
+            }
+        }
+        return parseNode(s, start, end);
+    }
+    
+    /**
+     * Parse an address which may be in brackets and may have a port.
+     * 
+     * @param s the header value
+     * @param start the node start index, inclusive
+     * @param end the node end index, exclusive
+     * @return the address, or null if it cannot be parsed
+     */
+    private static IPAddress parseNode(String s, int start, int end) {
+        start = skipSpace(s, start, end);
+        end = trimSpace(s, start, end);
+        if (start >= end) {
+            return null;
+        }
+        if (s.charAt(start) == '[') {
+            int close = s.indexOf(']', start);
+            if (close < 0 || close >= end
+                    || !isPort(s, close + 1, end)) {
+                return null;
+            }
+            return IPAddress.tryParse(s, start + 1, close);
+        }
+        int colon = s.indexOf(':', start);
+        if (colon >= 0 && colon < end) {
+            int last = s.lastIndexOf(':', end - 1);
+            if (colon == last) {
+                // IPv4 address with a port
+                return isPort(s, colon, end) ?
+                        IPAddress.tryParse(s, start, colon) : null;
+            }
+        }
+        return IPAddress.tryParse(s, start, end);
+    }
+    
+    /**
+     * Returns true if a region is empty or is a colon followed by a port
+     * number.
+     * 
+     * @param s the header value
+     * @param start the region start index, inclusive
+     * @param end the region end index, exclusive
+     * @return true if the region is empty or a valid port suffix
+     */
+    private static boolean isPort(String s, int start, int end) {
+        if (start == end) {
+            return true;
+        }
+        if (s.charAt(start) != ':' || end - start < 2 || end - start > 6) {
+            return false;
+        }
+        int port = 0;
+        for (int i = start + 1; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            port = port * 10 + (c - '0');
+        }
+        return port <= 65535;
+    }
+    
+    /**
+     * Skip leading spaces and tabs.
+     * 
+     * @param s the text
+     * @param start the start index
+     * @param end the end index
+     * @return the index of the first other character, or end
+     */
+    private static int skipSpace(String s, int start, int end) {
+        while (start < end
+                && (s.charAt(start) == ' ' || s.charAt(start) == '\t')) {
+            start++;
+        }
+        return start;
+    }
+    
+    /**
+     * Skip trailing spaces and tabs.
+     * 
+     * @param s the text
+     * @param start the start index
+     * @param end the end index
+     * @return the index after the last other character, or start
+     */
+    private static int trimSpace(String s, int start, int end) {
+        while (end > start
+                && (s.charAt(end - 1) == ' ' || s.charAt(end - 1) == '\t')) {
+            end--;
+        }
+        return end;
+    }
+}
@@ -11,11 +11,24 @@ import jakarta.servlet.http.HttpServletResponse;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.StringReader;
-import java.util.Arrays;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import jwebsec.IPAddress;
+import jwebsec.IPDenyList;
+import jwebsec.IPPrefixTrie;
 
 /**
  * <code>IPAccessControlFilter</code> is a simple IP-based access control and
@@ -33,10 +46,25 @@ import java.util.logging.Logger;
  *   </thead>
  *   <tbody>
  *     <tr>
+ *       <td>ACCESS_MODE</td>
+ *       <td>String</td>
+ *       <td>ALLOW</td>
+ *       <td>
+ *         <code>ALLOW</code> to block all addresses except allowed
+ *         addresses, or <code>DENY</code> to block only addresses in the
+ *         deny list file which are not allowed addresses.
+ *       </td>
+ *       <td>Optional</td>
+ *     </tr>
+ *     <tr>
  *       <td>ALLOWED_IP_ADDRESSES</td>
  *       <td>CSV</td>
  *       <td></td>
- *       <td>Comma-separated values list of allowed IP addresses.</td>
+ *       <td>
+ *         Comma-separated values list of allowed IP addresses, CIDR blocks,
+ *         e.g., <code>10.0.0.0/8</code>, and address ranges, e.g.,
+ *         <code>192.0.2.10-192.0.2.20</code>. IPv4 and IPv6 are supported.
+ *       </td>
  *       <td>Optional</td>
  *     </tr>
  *     <tr>
@@ -47,30 +75,172 @@ import java.util.logging.Logger;
  *       <td>Optional</td>
  *     </tr>
  *     <tr>
+ *       <td>DENY_LIST_FILE</td>
+ *       <td>String</td>
+ *       <td></td>
+ *       <td>
+ *         Path of a deny list file compiled with
+ *         <code>IPDenyList.compile</code>. Required in <code>DENY</code>
+ *         mode.
+ *       </td>
+ *       <td>Optional</td>
+ *     </tr>
+ *     <tr>
+ *       <td>FORWARDED_HEADER</td>
+ *       <td>String</td>
+ *       <td>X-Forwarded-For</td>
+ *       <td>
+ *         Header carrying the client address from trusted proxies,
+ *         <code>X-Forwarded-For</code> or <code>Forwarded</code>.
+ *       </td>
+ *       <td>Optional</td>
+ *     </tr>
+ *     <tr>
  *       <td>LOG_BLOCKED_REQUESTS</td>
  *       <td>boolean</td>
  *       <td>true</td>
  *       <td>Flag indicating whether or not to log blocked requests.</td>
  *       <td>Optional</td>
  *     </tr>
+ *     <tr>
+ *       <td>RULES_FILE</td>
+ *       <td>String</td>
+ *       <td></td>
+ *       <td>
+ *         Path of a text file of allowed address rules, in the same forms as
+ *         <code>ALLOWED_IP_ADDRESSES</code>, separated by commas or line
+ *         breaks. Lines starting with <code>#</code> are comments.
+ *       </td>
+ *       <td>Optional</td>
+ *     </tr>
+ *     <tr>
+ *       <td>TRUSTED_PROXIES</td>
+ *       <td>CSV</td>
+ *       <td></td>
+ *       <td>
+ *         Comma-separated values list of trusted proxy addresses and CIDR
+ *         blocks. If set, the client address of requests from trusted
+ *         proxies is resolved from <code>FORWARDED_HEADER</code>.
+ *       </td>
+ *       <td>Optional</td>
+ *     </tr>
+ *     <tr>
+ *       <td>WATCH_FILES</td>
+ *       <td>boolean</td>
+ *       <td>true</td>
+ *       <td>
+ *         Flag indicating whether or not to reload the rules file and deny
+ *         list file when they change.
+ *       </td>
+ *       <td>Optional</td>
+ *     </tr>
  *   </tbody>
  * </table>
  * <p>
+ *   Allowed addresses are compiled into an {@link IPPrefixTrie}, so each
+ *   request is checked with one parse of the remote address and a walk of
+ *   at most one trie node per address bit, however many rules there are.
+ *   Invalid entries are logged and ignored.
+ * </p>
+ * <p>
+ *   In <code>DENY</code> mode the deny list is an {@link IPDenyList}, which
+ *   is searched in a memory-mapped file without copying it onto the heap, so
+ *   it can hold millions of addresses and ranges. A new deny list file can
+ *   be swapped in with {@link #loadDenyList(Path)} without pausing requests.
+ * </p>
+ * <p>
+ *   Behind reverse proxies or load balancers, set <code>TRUSTED_PROXIES</code>
+ *   so that rules are applied to the client address resolved by a
+ *   {@link ClientAddressResolver} rather than the proxy address. The
+ *   resolved address is cached in a request attribute for later filters.
+ * </p>
+ * <p>
+ *   The allowed addresses and deny list form an immutable rules snapshot,
+ *   which requests read through a single volatile reference without locking.
+ *   Rule changes, from the watched files or from
+ *   {@link #setAllowedIPAddresses(Collection)} and
+ *   {@link #loadDenyList(Path)}, are compiled off the request path and
+ *   published by replacing the snapshot, so a request always sees one
+ *   complete set of rules. A reloaded rules file replaces the allowed
+ *   addresses with the <code>ALLOWED_IP_ADDRESSES</code> rules plus the
+ *   file's rules; if a file cannot be read, the previous rules are kept.
+ * </p>
+ * <p>
  *   &copy;2025 jWebSec. All rights reserved.
  * </p>
  *
- * @version 0.1.0
+ * @version 0.5.0
  * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
  */
 public final class IPAccessControlFilter implements Filter {
     
+    /**
+     * <code>AccessMode</code> selects whether addresses are blocked unless
+     * allowed, or allowed unless denied.
+     */
+    public static enum AccessMode {
+        
+        /* Block all addresses except allowed addresses. */
+        ALLOW,
+        
+        /* Allow all addresses except addresses in the deny list. */
+        DENY
+    }
+    
+    /**
+     * <code>Rules</code> is an immutable snapshot of the allowed addresses and
+     * deny list.
+     */
+    private static final class Rules {
+        
+        private final IPPrefixTrie allowed;
+        private final IPDenyList denied;
+        
+        private Rules(IPPrefixTrie allowed, IPDenyList denied) {
+            this.allowed = allowed;
+            this.denied = denied;
+        }
+    }
+    
+    /**
+     * <code>LocalAddress</code> is the most recently parsed local address, so
+     * that the address of the connector is not parsed on every request.
+     */
+    private static final class LocalAddress {
+        
+        private final String text;
+        private final IPAddress address;
+        
+        private LocalAddress(String text, IPAddress address) {
+            this.text = text;
+            this.address = address;
+        }
+    }
+    
     /* Logger */
     private static final Logger LOGGER =
             Logger.getLogger(IPAccessControlFilter.class.getName());
     
-    private final Set<String> ALLOWED_IP_ADDRESSES = new LinkedHashSet<>();
+    /* Empty rules snapshot. */
+    private static final Rules NO_RULES = new Rules(IPPrefixTrie.EMPTY, null);
+    
+    /* Delay for coalescing file change events in milliseconds (250). */
+    private static final long WATCH_DELAY_MILLIS = 250;
+    
+    private final List<String> CONFIGURED_RULES = new ArrayList<>();
+    private final ReentrantLock UPDATE_LOCK = new ReentrantLock();
+    private volatile Rules rules = NO_RULES;
+    private volatile long reloadCount = 0;
+    private volatile long lastReloadNanos = 0;
+    private volatile LocalAddress localAddress = new LocalAddress("", null);
+    private AccessMode accessMode = AccessMode.ALLOW;
     private boolean alwaysAllowLocalhost = true;
     private boolean logBlockedRequests = true;
+    private Path rulesFile = null;
+    private Path denyListFile = null;
+    private WatchService watchService = null;
+    private ClientAddressResolver resolver = null;
+    private boolean destroyed = false;
     
     /**
      * Default constructor.
@@ -81,7 +251,15 @@ public final class IPAccessControlFilter implements Filter {
     
     @Override
     public void init(final FilterConfig config) throws ServletException {
-        String param = config.getInitParameter("ALWAYS_ALLOW_LOCALHOST");
+        String param = config.getInitParameter("ACCESS_MODE");
+        if (param != null && !(param = param.trim()).isEmpty()) {
+            try {
+                accessMode = AccessMode.valueOf(param.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new ServletException("invalid access mode: " + param);
+            }
+        }
+        param = config.getInitParameter("ALWAYS_ALLOW_LOCALHOST");
         if (param != null && !(param = param.trim()).isEmpty()) {
             alwaysAllowLocalhost = Boolean.parseBoolean(param);
         }
@@ -91,14 +269,8 @@ public final class IPAccessControlFilter implements Filter {
         }
         String csv = config.getInitParameter("ALLOWED_IP_ADDRESSES");
         if (csv != null && !(csv = csv.trim()).isEmpty()) {
-            try (BufferedReader in =
-                    new BufferedReader(new StringReader(csv))) {
-                String line;
-                String[] tokens;
-                while ((line = in.readLine()) != null) {
-                    tokens = line.trim().split("\\s*,\\s*");
-                    ALLOWED_IP_ADDRESSES.addAll(Arrays.asList(tokens));
-                }
+            try {
+                readRules(csv, CONFIGURED_RULES);
             } catch (IOException e) {
                 LOGGER.log(
                         Level.SEVERE,
@@ -106,6 +278,261 @@ public final class IPAccessControlFilter implements Filter {
                         e);
             }
         }
+        resolver = ClientAddressResolver.fromConfig(config);
+        param = config.getInitParameter("RULES_FILE");
+        if (param != null && !(param = param.trim()).isEmpty()) {
+            rulesFile = Path.of(param);
+        }
+        try {
+            reloadRules();
+        } catch (IOException e) {
+            throw new ServletException(
+                    "error reading rules file: " + rulesFile, e);
+        }
+        param = config.getInitParameter("DENY_LIST_FILE");
+        if (param != null && !(param = param.trim()).isEmpty()) {
+            denyListFile = Path.of(param);
+            try {
+                loadDenyList(denyListFile);
+            } catch (IOException e) {
+                throw new ServletException(
+                        "error reading deny list file: " + param, e);
+            }
+        } else if (accessMode == AccessMode.DENY) {
+            throw new ServletException("DENY_LIST_FILE is required");
+        }
+        param = config.getInitParameter("WATCH_FILES");
+        boolean watch = param == null || (param = param.trim()).isEmpty()
+                || Boolean.parseBoolean(param);
+        if (watch && (rulesFile != null || denyListFile != null)) {
+            try {
+                startWatcher();
+            } catch (IOException e) {
+                throw new ServletException("error watching rule files", e);
+            }
+        }
+    }
+    
+    /**
+     * Read comma or line separated rules, skipping comment lines.
+     * 
+     * @param text the rules text
+     * @param rules the list to add the rules to
+     * @throws IOException if an I/O error occurs
+     */
+    private static void readRules(String text, List<String> rules)
+            throws IOException {
+        try (BufferedReader in = new BufferedReader(new StringReader(text))) {
+            String line;
+            String[] tokens;
+            while ((line = in.readLine()) != null) {
+                if ((line = line.trim()).startsWith("#")) {
+                    continue;
+                }
+                tokens = line.split("\\s*,\\s*");
+                for (String token : tokens) {
+                    if (!token.isEmpty()) {
+                        rules.add(token);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Compile the configured rules and the rules file, if any, and publish
+     * them as the allowed addresses. Invalid rules are logged and ignored.
+     * 
+     * @throws IOException if the rules file cannot be read
+     */
+    public void reloadRules() throws IOException {
+        final long start = System.nanoTime();
+        List<String> list = new ArrayList<>(CONFIGURED_RULES);
+        if (rulesFile != null) {
+            readRules(Files.readString(rulesFile), list);
+        }
+        IPPrefixTrie.Builder builder = IPPrefixTrie.builder();
+        for (String rule : list) {
+            try {
+                builder.add(rule);
+            } catch (IllegalArgumentException e) {
+                LOGGER.log(
+                        Level.WARNING,
+                        "ignoring invalid allowed IP address rule: {0}",
+                        rule);
+            }
+        }
+        publish(builder.build(), null, start);
+    }
+    
+    /**
+     * Replace the allowed addresses. The rules are compiled before the
+     * current rules are replaced, so requests are never blocked on the update.
+     * 
+     * @param allowed the allowed address rules
+     * @throws IllegalArgumentException if a rule is invalid
+     */
+    public void setAllowedIPAddresses(Collection<String> allowed) {
+        final long start = System.nanoTime();
+        IPPrefixTrie.Builder builder = IPPrefixTrie.builder();
+        for (String rule : allowed) {
+            builder.add(rule);
+        }
+        publish(builder.build(), null, start);
+    }
+    
+    /**
+     * Open a deny list file and replace the current deny list with it. Requests
+     * in progress finish with the previous deny list.
+     * 
+     * @param path the deny list file path
+     * @throws IOException if the file cannot be read or is invalid
+     */
+    public void loadDenyList(Path path) throws IOException {
+        final long start = System.nanoTime();
+        IPDenyList list = IPDenyList.open(path);
+        publish(null, list, start);
+        LOGGER.log(
+                Level.INFO,
+                "loaded {0} IP deny list ranges from {1}",
+                new Object[]{list.size(), path});
+    }
+    
+    /**
+     * Publish a new rules snapshot, replacing the allowed addresses or deny
+     * list. Updates are serialized so concurrent updates are not lost, and
+     * are ignored once the filter has been destroyed.
+     * 
+     * @param allowed the new allowed addresses, or null to keep the current
+     * @param denied the new deny list, or null to keep the current
+     * @param start the update start time from <code>System.nanoTime()</code>
+     */
+    private void publish(IPPrefixTrie allowed, IPDenyList denied, long start) {
+        UPDATE_LOCK.lock();
+        try {
+            if (destroyed) {
+                return;
+            }
+            Rules current = rules;
+            rules = new Rules(
+                    allowed != null ? allowed : current.allowed,
+                    denied != null ? denied : current.denied);
+            reloadCount++;
+            lastReloadNanos = System.nanoTime() - start;
+        } finally {
+            UPDATE_LOCK.unlock();
+        }
+    }
+    
+    /**
+     * Start a virtual thread which reloads the rules file and deny list file
+     * when they are created or modified.
+     * 
+     * @throws IOException if the files cannot be watched
+     */
+    private void startWatcher() throws IOException {
+        final WatchService watcher =
+                (rulesFile != null ? rulesFile : denyListFile)
+                        .getFileSystem().newWatchService();
+        for (Path file : new Path[]{rulesFile, denyListFile}) {
+            if (file != null) {
+                file.toAbsolutePath().normalize().getParent().register(watcher,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        }
+        watchService = watcher;
+        Thread.ofVirtual()
+                .name("jwebsec-ip-rules-watcher")
+                .start(() -> watch(watcher));
+    }
+    
+    /**
+     * Watcher loop. Events are coalesced for a short delay so that a file
+     * being written is reloaded once.
+     * 
+     * @param watcher the watch service
+     */
+    private void watch(final WatchService watcher) {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean reloadRules = false;
+                boolean reloadDenyList = false;
+                do {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (!(event.context() instanceof Path name)) {
+                            continue;
+                        }
+                        Path file = ((Path)key.watchable()).resolve(name);
+                        reloadRules |= isFile(file, rulesFile);
+                        reloadDenyList |= isFile(file, denyListFile);
+                    }
+                    key.reset();
+                } while ((key = watcher.poll(
+                        WATCH_DELAY_MILLIS, TimeUnit.MILLISECONDS)) != null);
+                if (reloadRules) {
+                    reload(rulesFile, true);
+                }
+                if (reloadDenyList) {
+                    reload(denyListFile, false);
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // filter destroyed
+        }
+    }
+    
+    /**
+     * Returns true if a changed file is a watched file.
+     * 
+     * @param file the changed file
+     * @param watched the watched file, may be null
+     * @return true if the files are the same
+     */
+    private static boolean isFile(Path file, Path watched) {
+        return watched != null
+                && file.equals(watched.toAbsolutePath().normalize());
+    }
+    
+    /**
+     * Reload a changed file, keeping the current rules if it cannot be read.
+     * 
+     * @param file the file
+     * @param rulesFile true for the rules file, false for the deny list file
+     */
+    private void reload(Path file, boolean rulesFile) {
+        try {
+            if (rulesFile) {
+                reloadRules();
+            } else {
+                loadDenyList(file);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(
+                    Level.SEVERE,
+                    "error reloading " + file + ", keeping current rules",
+                    e);
+        }
+    }
+    
+    /**
+     * Get the number of times the rules have been replaced.
+     * 
+     * @return the reload count
+     */
+    public long getReloadCount() {
+        return reloadCount;
+    }
+    
+    /**
+     * Get the time taken to compile and publish the most recent rules change
+     * in nanoseconds.
+     * 
+     * @return the last reload duration
+     */
+    public long getLastReloadNanos() {
+        return lastReloadNanos;
     }
     
     @Override
@@ -114,12 +541,18 @@ public final class IPAccessControlFilter implements Filter {
             final ServletResponse resp,
             final FilterChain chain) throws IOException, ServletException {
         final String ipAddress = req.getRemoteAddr();
-        final String localAddress = req.getLocalAddr();
-        if ((alwaysAllowLocalhost && ipAddress.equals(localAddress))
-                    || ALLOWED_IP_ADDRESSES.contains(ipAddress)) {
+        final IPAddress address = resolver != null ?
+                resolver.resolve(req) : IPAddress.tryParse(ipAddress);
+        final Rules current = rules;
+        if ((alwaysAllowLocalhost && isLocalhost(address, ipAddress,
+                        req.getLocalAddr()))
+                    || current.allowed.contains(address)
+                    || (accessMode == AccessMode.DENY
+                            && !(current.denied != null
+                                    && current.denied.contains(address)))) {
             chain.doFilter(req, resp);
         } else {
-            final HttpServletRequest request = (HttpServletRequest)resp;
+            final HttpServletRequest request = (HttpServletRequest)req;
             final HttpServletResponse response = (HttpServletResponse)resp;
             response.setHeader(
                     "Cache-Control", "private, max-age=1800, must-revalidate");
@@ -127,7 +560,7 @@ public final class IPAccessControlFilter implements Filter {
             if (logBlockedRequests) {
                 StringBuilder msg = new StringBuilder(128);
                 msg.append("HTTP request blocked: ");
-                msg.append(ipAddress);
+                msg.append(address != null ? address : ipAddress);
                 msg.append(" -> ");
                 msg.append(request.getMethod());
                 msg.append(" ");
@@ -137,10 +570,45 @@ public final class IPAccessControlFilter implements Filter {
         }
     }
     
+    /**
+     * Returns true if the client address is the server's local address. The
+     * local address is parsed only when it differs from the previous one.
+     * 
+     * @param address the parsed client address, may be null
+     * @param ipAddress the remote address text
+     * @param localText the local address text
+     * @return true if the client is localhost
+     */
+    private boolean isLocalhost(
+            IPAddress address, String ipAddress, String localText) {
+        if (address == null || localText == null) {
+            return ipAddress != null && ipAddress.equals(localText);
+        }
+        LocalAddress local = localAddress;
+        if (!local.text.equals(localText)) {
+            local = new LocalAddress(localText, IPAddress.tryParse(localText));
+            localAddress = local;
+        }
+        return address.equals(local.address);
+    }
+    
     @Override
     public void destroy() {
-        synchronized (ALLOWED_IP_ADDRESSES) {
-            ALLOWED_IP_ADDRESSES.clear();
+        WatchService watcher = watchService;
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            watchService = null;
+        }
+        UPDATE_LOCK.lock();
+        try {
+            destroyed = true;
+            rules = NO_RULES;
+        } finally {
+            UPDATE_LOCK.unlock();
         }
     }
 }
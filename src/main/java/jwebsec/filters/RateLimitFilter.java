@@ -0,0 +1,199 @@
+package jwebsec.filters;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jwebsec.IPAddress;
+import jwebsec.RateLimiter;
+
+/**
+ * <code>RateLimitFilter</code> limits the request rate of each client IP
+ * address, to protect applications from request floods from a single client.
+ * Requests over the limit are rejected with <code>429 Too Many Requests</code>
+ * and a <code>Retry-After</code> header.
+ * <table>
+ *   <thead>
+ *     <tr>
+ *       <th>Parameter Name</th>
+ *       <th>Type</th>
+ *       <th>Default Value</th>
+ *       <th>Description</th>
+ *       <th>Req/Opt</th>
+ *     </tr>
+ *   </thead>
+ *   <tbody>
+ *     <tr>
+ *       <td>BURST</td>
+ *       <td>int</td>
+ *       <td>20</td>
+ *       <td>Number of requests a client can make at once.</td>
+ *       <td>Optional</td>
+ *     </tr>
+ *     <tr>
+ *       <td>FORWARDED_HEADER</td>
+ *       <td>String</td>
+ *       <td>X-Forwarded-For</td>
+ *       <td>
+ *         Header carrying the client address from trusted proxies,
+ *         <code>X-Forwarded-For</code> or <code>Forwarded</code>.
+ *       </td>
+ *       <td>Optional</td>
+ *     </tr>
+ *     <tr>
+ *       <td>LOG_LIMITED_REQUESTS</td>
+ *       <td>boolean</td>
+ *       <td>false</td>
+ *       <td>Flag indicating whether or not to log limited requests.</td>
+ *       <td>Optional</td>
+ *     </tr>
+ *     <tr>
+ *       <td>MAX_CLIENTS</td>
+ *       <td>int</td>
+ *       <td>100000</td>
+ *       <td>Maximum number of tracked clients.</td>
+ *       <td>Optional</td>
+ *     </tr>
+ *     <tr>
+ *       <td>REQUESTS_PER_SECOND</td>
+ *       <td>double</td>
+ *       <td>10</td>
+ *       <td>Sustained request rate per client.</td>
+ *       <td>Optional</td>
+ *     </tr>
+ *     <tr>
+ *       <td>TRUSTED_PROXIES</td>
+ *       <td>CSV</td>
+ *       <td></td>
+ *       <td>
+ *         Comma-separated values list of trusted proxy addresses and CIDR
+ *         blocks. If set, the client address of requests from trusted
+ *         proxies is resolved from <code>FORWARDED_HEADER</code>.
+ *       </td>
+ *       <td>Optional</td>
+ *     </tr>
+ *   </tbody>
+ * </table>
+ * <p>
+ *   Clients are identified in the same way as by
+ *   {@link IPAccessControlFilter}: by the address already resolved by an
+ *   earlier filter, by the address resolved through
+ *   <code>TRUSTED_PROXIES</code>, or by the remote address. Limits are
+ *   enforced by a {@link RateLimiter}, which is lock-free and bounded, and
+ *   provides per-client and total request counts through
+ *   {@link #getRateLimiter()}.
+ * </p>
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public final class RateLimitFilter implements Filter {
+    
+    /* Logger */
+    private static final Logger LOGGER =
+            Logger.getLogger(RateLimitFilter.class.getName());
+    
+    /* Default sustained request rate per client (10). */
+    public static final double DEFAULT_REQUESTS_PER_SECOND = 10;
+    
+    /* Default burst size (20). */
+    public static final int DEFAULT_BURST = 20;
+    
+    private RateLimiter rateLimiter = null;
+    private ClientAddressResolver resolver = null;
+    private boolean logLimitedRequests = false;
+    
+    /**
+     * Default constructor.
+     */
+    public RateLimitFilter() {
+        super();
+    }
+    
+    @Override
+    public void init(final FilterConfig config) throws ServletException {
+        double requestsPerSecond = DEFAULT_REQUESTS_PER_SECOND;
+        int burst = DEFAULT_BURST;
+        int maxClients = RateLimiter.DEFAULT_MAX_SIZE;
+        String param = config.getInitParameter("REQUESTS_PER_SECOND");
+        try {
+            if (param != null && !(param = param.trim()).isEmpty()) {
+                requestsPerSecond = Double.parseDouble(param);
+            }
+            param = config.getInitParameter("BURST");
+            if (param != null && !(param = param.trim()).isEmpty()) {
+                burst = Integer.parseInt(param);
+            }
+            param = config.getInitParameter("MAX_CLIENTS");
+            if (param != null && !(param = param.trim()).isEmpty()) {
+                maxClients = Integer.parseInt(param);
+            }
+            rateLimiter = new RateLimiter(requestsPerSecond, burst, maxClients);
+        } catch (IllegalArgumentException e) {
+            throw new ServletException("invalid rate limit: " + param, e);
+        }
+        param = config.getInitParameter("LOG_LIMITED_REQUESTS");
+        if (param != null && !(param = param.trim()).isEmpty()) {
+            logLimitedRequests = Boolean.parseBoolean(param);
+        }
+        resolver = ClientAddressResolver.fromConfig(config);
+    }
+    
+    /**
+     * Get the rate limiter, for its request counts.
+     * 
+     * @return the rate limiter
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+    
+    @Override
+    public void doFilter(
+            final ServletRequest req,
+            final ServletResponse resp,
+            final FilterChain chain) throws IOException, ServletException {
+        final IPAddress address = resolver != null ?
+                resolver.resolve(req) :
+                ClientAddressResolver.getClientAddress(req);
+        final long wait = rateLimiter.acquire(address);
+        if (wait == 0) {
+            chain.doFilter(req, resp);
+        } else {
+            final HttpServletRequest request = (HttpServletRequest)req;
+            final HttpServletResponse response = (HttpServletResponse)resp;
+            // whole seconds, rounded up
+            response.setHeader("Retry-After",
+                    Long.toString((wait + 999999999L) / 1000000000L));
+            response.sendError(429);
+            if (logLimitedRequests) {
+                StringBuilder msg = new StringBuilder(128);
+                msg.append("HTTP request rate limited: ");
+                msg.append(address != null ? address : req.getRemoteAddr());
+                msg.append(" -> ");
+                msg.append(request.getMethod());
+                msg.append(" ");
+                msg.append(request.getRequestURL().toString());
+                LOGGER.log(Level.INFO, msg.toString());
+            }
+        }
+    }
+    
+    @Override
+    public void destroy() {
+        RateLimiter limiter = rateLimiter;
+        if (limiter != null) {
+            limiter.clear();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package jwebsec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <code>HttpClientRegistryTest</code> checks client verdicts and the number
+ * and choice of entries evicted from a full registry.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public class HttpClientRegistryTest {
+    
+    /* User-Agent header value of test clients. */
+    private static final String USER_AGENT =
+            "Mozilla/5.0 (X11; Linux x86_64; rv:128.0) Gecko/20100101";
+    
+    @Test
+    public void testCheck() {
+        HttpClientRegistry registry = new HttpClientRegistry();
+        registry.register("session", "192.0.2.1", USER_AGENT);
+        assertEquals(HttpClientRegistry.Verdict.MATCH,
+                registry.check("session", "192.0.2.1", USER_AGENT));
+        assertEquals(HttpClientRegistry.Verdict.MISMATCH,
+                registry.check("session", "192.0.2.2", USER_AGENT));
+        assertEquals(HttpClientRegistry.Verdict.MISMATCH,
+                registry.check("session", "192.0.2.1", "curl/8.5.0"));
+        assertEquals(HttpClientRegistry.Verdict.UNKNOWN,
+                registry.check("other", "192.0.2.1", USER_AGENT));
+        assertEquals(HttpClientRegistry.Verdict.UNKNOWN,
+                registry.check(null, "192.0.2.1", USER_AGENT));
+        assertEquals(1, registry.getHitCount());
+        assertEquals(2, registry.getMismatchCount());
+        assertEquals(2, registry.getMissCount());
+        assertTrue(registry.remove("session"));
+        assertNull(registry.get("session"));
+    }
+    
+    @Test
+    public void testCheckParsedAddress() {
+        HttpClientRegistry registry = new HttpClientRegistry();
+        registry.register("v4", IPAddress.parse("192.0.2.1"), USER_AGENT);
+        registry.register("v6", "2001:db8::1", USER_AGENT);
+        assertEquals(HttpClientRegistry.Verdict.MATCH, registry.check(
+                "v4", IPAddress.parse("::ffff:192.0.2.1"), USER_AGENT));
+        assertEquals(HttpClientRegistry.Verdict.MATCH,
+                registry.check("v4", "192.0.2.1", USER_AGENT));
+        assertEquals(HttpClientRegistry.Verdict.MATCH, registry.check(
+                "v6", IPAddress.parse("2001:db8:0:0:0:0:0:1"), USER_AGENT));
+        assertEquals(HttpClientRegistry.Verdict.MISMATCH, registry.check(
+                "v6", IPAddress.parse("2001:db8::2"), USER_AGENT));
+        assertEquals(HttpClientRegistry.Verdict.MISMATCH, registry.check(
+                "v4", IPAddress.parse("192.0.2.1"), "curl/8.5.0"));
+        assertEquals(HttpClientRegistry.Verdict.MISMATCH,
+                registry.check("v4", (IPAddress)null, USER_AGENT));
+        assertEquals(HttpClientRegistry.Verdict.UNKNOWN, registry.check(
+                "other", IPAddress.parse("192.0.2.1"), USER_AGENT));
+        // a client registered with unparseable text matches only that text
+        registry.register("text", "unknown", USER_AGENT);
+        assertEquals(HttpClientRegistry.Verdict.MATCH,
+                registry.check("text", "unknown", USER_AGENT));
+        assertEquals(HttpClientRegistry.Verdict.MISMATCH,
+                registry.check("text", (IPAddress)null, USER_AGENT));
+        assertEquals(4, registry.getHitCount());
+        assertEquals(4, registry.getMismatchCount());
+        assertEquals(1, registry.getMissCount());
+    }
+    
+    @Test
+    public void testEvictionCount() {
+        final int maxSize = 8000;
+        HttpClientRegistry registry = new HttpClientRegistry(maxSize);
+        // a map with the same keys iterates in the same order as the
+        // registry's map
+        Map<String, Boolean> keys = new ConcurrentHashMap<>();
+        for (int i = 0; i < maxSize; i++) {
+            registry.register("client-" + i, "192.0.2.1", USER_AGENT);
+            keys.put("client-" + i, Boolean.TRUE);
+        }
+        List<String> order = new ArrayList<>(keys.keySet());
+        // the entries iterated first are the most recently used, which
+        // skews a cutoff sampled from the start of the map
+        for (int i = order.size() - 1; i >= 0; i--) {
+            assertEquals(HttpClientRegistry.Verdict.MATCH,
+                    registry.check(order.get(i), "192.0.2.1", USER_AGENT));
+        }
+        registry.register("client-new", "192.0.2.1", USER_AGENT);
+        final long evicted = registry.getEvictionCount();
+        assertTrue(evicted >= 1 && evicted <= 1 + maxSize / 8,
+                "evicted " + evicted);
+        assertEquals(maxSize + 1 - evicted, registry.size());
+        assertNotNull(registry.get("client-new"));
+        // evicted entries are the least recently used
+        for (int i = 0; i < maxSize / 2; i++) {
+            assertNotNull(registry.get(order.get(i)), order.get(i));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package jwebsec;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <code>IPPrefixTrieTest</code> checks rule parsing, prefix lengths of IPv4,
+ * IPv4-mapped and IPv6 rules, and matching against randomly built tries.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public class IPPrefixTrieTest {
+    
+    @Test
+    public void testRules() {
+        IPPrefixTrie trie = IPPrefixTrie.builder()
+                .add("192.0.2.0/24")
+                .add("198.51.100.7")
+                .add("203.0.113.10-203.0.113.20")
+                .add("2001:db8::/32")
+                .build();
+        assertTrue(trie.contains("192.0.2.255"));
+        assertFalse(trie.contains("192.0.3.0"));
+        assertTrue(trie.contains("198.51.100.7"));
+        assertFalse(trie.contains("198.51.100.8"));
+        assertTrue(trie.contains("203.0.113.10"));
+        assertTrue(trie.contains("203.0.113.20"));
+        assertFalse(trie.contains("203.0.113.21"));
+        assertTrue(trie.contains("2001:db8:1::1"));
+        assertFalse(trie.contains("2001:db9::1"));
+        assertFalse(trie.contains("not an address"));
+        assertFalse(trie.contains((IPAddress)null));
+        assertTrue(IPPrefixTrie.EMPTY.isEmpty());
+    }
+    
+    @Test
+    public void testMappedPrefixLengths() {
+        // IPv6-form rules take prefix lengths of the 128-bit space
+        IPPrefixTrie mapped = IPPrefixTrie.builder()
+                .add("::ffff:10.0.0.0/104")
+                .build();
+        IPPrefixTrie plain = IPPrefixTrie.builder()
+                .add("10.0.0.0/8")
+                .build();
+        for (String address : new String[] {
+                "10.0.0.0", "10.1.2.3", "10.255.255.255", "::ffff:10.9.8.7"}) {
+            assertTrue(mapped.contains(address), address);
+            assertTrue(plain.contains(address), address);
+        }
+        for (String address : new String[] {"9.255.255.255", "11.0.0.0"}) {
+            assertFalse(mapped.contains(address), address);
+            assertFalse(plain.contains(address), address);
+        }
+        assertTrue(IPPrefixTrie.builder().add("::ffff:192.0.2.1/128")
+                .build().contains("192.0.2.1"));
+        assertTrue(IPPrefixTrie.builder().add("::ffff:0.0.0.0/96")
+                .build().contains("203.0.113.1"));
+        assertThrows(IllegalArgumentException.class, () ->
+                IPPrefixTrie.builder().add("::ffff:10.0.0.0/129"));
+        assertThrows(IllegalArgumentException.class, () ->
+                IPPrefixTrie.builder().add("10.0.0.0/33"));
+        assertThrows(IllegalArgumentException.class, () ->
+                IPPrefixTrie.builder().add("10.0.0.0/-1"));
+        assertThrows(IllegalArgumentException.class, () ->
+                IPPrefixTrie.builder().add("10.0.0.0/x"));
+    }
+    
+    @Test
+    public void testRandomPrefixes() {
+        Random random = new Random(42);
+        final int n = 500;
+        long[] highs = new long[n];
+        long[] lows = new long[n];
+        int[] lengths = new int[n];
+        IPPrefixTrie.Builder builder = IPPrefixTrie.builder();
+        for (int i = 0; i < n; i++) {
+            highs[i] = random.nextLong();
+            lows[i] = random.nextLong();
+            lengths[i] = 8 + random.nextInt(121);
+            builder.add(new IPAddress(highs[i], lows[i]), lengths[i]);
+        }
+        IPPrefixTrie trie = builder.build();
+        for (int t = 0; t < 20000; t++) {
+            long high = random.nextLong();
+            long low = random.nextLong();
+            if ((t & 1) == 0) {
+                // an address within a random prefix
+                int i = random.nextInt(n);
+                long highMask = highMask(lengths[i]);
+                long lowMask = lowMask(lengths[i]);
+                high = (highs[i] & highMask) | (high & ~highMask);
+                low = (lows[i] & lowMask) | (low & ~lowMask);
+            }
+            boolean expected = false;
+            for (int i = 0; i < n && !expected; i++) {
+                expected = ((highs[i] ^ high) & highMask(lengths[i])) == 0
+                        && ((lows[i] ^ low) & lowMask(lengths[i])) == 0;
+            }
+            assertEquals(expected, trie.contains(high, low));
+        }
+    }
+    
+    /**
+     * Get the mask of the high 64 bits of a prefix.
+     * 
+     * @param bits the prefix length
+     * @return the mask
+     */
+    private static long highMask(int bits) {
+        return bits >= 64 ? -1L : bits == 0 ? 0 : -1L << (64 - bits);
+    }
+    
+    /**
+     * Get the mask of the low 64 bits of a prefix.
+     * 
+     * @param bits the prefix length
+     * @return the mask
+     */
+    private static long lowMask(int bits) {
+        return bits <= 64 ? 0 : -1L << (128 - bits);
+    }
+}
@@ -0,0 +1,105 @@
+package jwebsec;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <code>InMemoryTokenStoreTest</code> checks lookups, revocation and
+ * replacement, the expiry of tokens by the timing wheel, and that a closed
+ * store accepts no tokens.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public class InMemoryTokenStoreTest {
+    
+    /* Expiry time of long-lived test tokens, one hour from now. */
+    private static final long EXPIRY = System.currentTimeMillis() + 3600000;
+    
+    @Test
+    public void testPutGetRevoke() {
+        try (InMemoryTokenStore store = new InMemoryTokenStore()) {
+            Token a = new Token("session", "a", 1, EXPIRY);
+            Token b = new Token("session", "a", 1, EXPIRY + 1000);
+            store.put(a);
+            assertSame(a, store.get("a"));
+            store.put(b);
+            assertSame(b, store.get("a"));
+            assertEquals(1, store.size());
+            assertNull(store.get("b"));
+            assertNull(store.get(null));
+            assertTrue(store.revoke("a"));
+            assertFalse(store.revoke("a"));
+            assertFalse(store.contains("a"));
+            store.sweep();
+            assertEquals(0, store.size());
+        }
+    }
+    
+    @Test
+    public void testExpiry() throws Exception {
+        try (InMemoryTokenStore store = new InMemoryTokenStore(10)) {
+            final long now = System.currentTimeMillis();
+            List<Token> tokens = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                // expiry times span several wheel levels
+                long expiry = now + 50 + (i < 500 ? i : 1000L * i);
+                tokens.add(new Token("session", "t" + i, 1, expiry));
+                store.put(tokens.get(i));
+            }
+            Token replaced = new Token("session", "t0", 1, EXPIRY);
+            store.put(replaced);
+            Thread.sleep(700);
+            store.sweep();
+            // expired tokens are removed, and the replaced entry's expiry
+            // does not remove its replacement
+            assertNull(store.get("t1"));
+            assertSame(replaced, store.get("t0"));
+            assertEquals(501, store.size());
+            assertEquals(499, store.getExpirationCount());
+            for (int i = 500; i < 1000; i++) {
+                assertSame(tokens.get(i), store.get("t" + i));
+            }
+        }
+    }
+    
+    @Test
+    public void testClosedStoreAcceptsNoTokens() throws Exception {
+        InMemoryTokenStore store = new InMemoryTokenStore();
+        store.put(new Token("session", "a", 1, EXPIRY));
+        store.close();
+        assertEquals(0, store.size());
+        assertNull(store.get("a"));
+        assertThrows(IllegalStateException.class,
+                () -> store.put(new Token("session", "b", 1, EXPIRY)));
+        assertEquals(0, store.size());
+        // tokens put while the store is closed concurrently are not kept
+        for (int round = 0; round < 20; round++) {
+            InMemoryTokenStore racing = new InMemoryTokenStore();
+            Thread writer = new Thread(() -> {
+                try {
+                    for (int i = 0;; i++) {
+                        racing.put(new Token("session", "t" + i, 1, EXPIRY));
+                    }
+                } catch (IllegalStateException e) {
+                    // closed
+                }
+            });
+            writer.start();
+            Thread.sleep(2);
+            racing.close();
+            writer.join();
+            assertEquals(0, racing.size());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package jwebsec;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <code>LoginThrottleTest</code> checks failure counting, lockout backoff
+ * and the behaviour of a full throttle under a flood of distinct keys.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public class LoginThrottleTest {
+    
+    @Test
+    public void testLockoutBackoff() {
+        LoginThrottle throttle = new LoginThrottle(3, 100, 60000);
+        throttle.recordFailure("alice", null);
+        throttle.recordFailure("alice", null);
+        assertEquals(0, throttle.check("alice", null));
+        assertEquals(2, throttle.getFailureCount("alice"));
+        throttle.recordFailure("alice", null);
+        long wait = throttle.check("alice", null);
+        assertTrue(wait > 0 && wait <= 1000, "wait " + wait);
+        throttle.recordFailure("alice", null);
+        wait = throttle.check("alice", null);
+        assertTrue(wait > 1000 && wait <= 2000, "wait " + wait);
+        assertTrue(throttle.isAllowed("bob", null));
+        assertTrue(throttle.isAllowed(null, null));
+        assertEquals(2, throttle.getRejectionCount());
+        throttle.clear();
+        assertTrue(throttle.isAllowed("alice", null));
+        assertEquals(0, throttle.getAccountCount());
+    }
+    
+    @Test
+    public void testIPv6FailuresCountedPerPrefix() {
+        LoginThrottle throttle = new LoginThrottle(100, 3, 60000);
+        throttle.recordFailure(null, IPAddress.parse("2001:db8::1"));
+        throttle.recordFailure(null, IPAddress.parse("2001:db8::2"));
+        throttle.recordFailure(null, IPAddress.parse("2001:db8::3:4"));
+        assertEquals(3, throttle.getFailureCount(
+                IPAddress.parse("2001:db8::ffff")));
+        assertFalse(throttle.isAllowed(null, IPAddress.parse("2001:db8::9")));
+        assertTrue(throttle.isAllowed(null,
+                IPAddress.parse("2001:db8:0:1::1")));
+        throttle.recordFailure(null, IPAddress.parse("192.0.2.1"));
+        assertEquals(0, throttle.getFailureCount(
+                IPAddress.parse("192.0.2.2")));
+        assertEquals(2, throttle.getAddressCount());
+    }
+    
+    @Test
+    public void testCountsDecay() throws InterruptedException {
+        LoginThrottle throttle = new LoginThrottle(5, 20, 1000);
+        for (int i = 0; i < 4; i++) {
+            throttle.recordFailure("alice", null);
+        }
+        assertEquals(4, throttle.getFailureCount("alice"));
+        // two windows later neither window holds a failure
+        Thread.sleep(2100);
+        assertEquals(0, throttle.getFailureCount("alice"));
+        assertEquals(4, throttle.getFailureCount());
+    }
+    
+    @Test
+    public void testFloodDoesNotLockOutUnrelatedKeys() {
+        // every flood key is locked out after one failure, so the tables
+        // fill with locked out keys
+        LoginThrottle throttle = new LoginThrottle(1, 1, 60000, 64);
+        for (int i = 0; i < 10; i++) {
+            throttle.recordFailure("victim", null);
+        }
+        for (int i = 0; i < 100000; i++) {
+            throttle.recordFailure("user" + i, IPAddress.parse(
+                    "198.51." + (i >>> 8 & 0xFF) + "." + (i & 0xFF)));
+        }
+        assertTrue(throttle.getReleasedLockoutCount() > 0);
+        assertTrue(throttle.getAccountCount() <= 128);
+        assertTrue(throttle.getAddressCount() <= 128);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(0, throttle.check("alice" + i,
+                    IPAddress.parse("203.0.113." + (i & 0xFF))));
+        }
+        // the longest lockout is kept
+        assertTrue(throttle.check("victim", null) > 1000);
+        // the most recent flood key is still tracked and locked out
+        assertFalse(throttle.isAllowed("user99999", null));
+    }
+}
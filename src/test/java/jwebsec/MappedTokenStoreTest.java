@@ -0,0 +1,369 @@
+package jwebsec;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <code>MappedTokenStoreTest</code> checks that a memory-mapped token store
+ * survives reopening, torn record writes and a killed process, and that
+ * tombstones are compacted on reopen and rehashed away while open.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public class MappedTokenStoreTest {
+    
+    /* File layout: header size, record size and field offsets. */
+    private static final int HEADER_SIZE = 4096;
+    private static final int RECORD_SIZE = 48;
+    private static final int EXPIRY_TIME = 24;
+    private static final int STATE = 36;
+    private static final int SEQUENCE = 40;
+    
+    /* Record states. */
+    private static final int USED = 1;
+    private static final int REMOVED = 2;
+    
+    /* Expiry time of test tokens, in 2100. */
+    private static final long EXPIRY = 4102444800000L;
+    
+    @TempDir
+    Path dir;
+    
+    /**
+     * <code>Writer</code> is run in a child process which puts tokens,
+     * revoking every third one, and prints the number of each token once it
+     * is stored, until the process is killed.
+     */
+    public static final class Writer {
+        
+        public static void main(String[] args) throws IOException {
+            MappedTokenStore store =
+                    new MappedTokenStore(Path.of(args[0]), 100000);
+            for (int i = 0; i < 100000; i++) {
+                store.put(token(i));
+                if (i % 3 == 0) {
+                    store.revoke(value(i));
+                }
+                System.out.println(i);
+                System.out.flush();
+            }
+            // wait to be killed without closing the store
+            while (true) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Get the value of a test token.
+     * 
+     * @param i the token number
+     * @return the token value
+     */
+    private static String value(int i) {
+        return "token-" + i;
+    }
+    
+    /**
+     * Get a test token.
+     * 
+     * @param i the token number
+     * @return the token
+     */
+    private static Token token(int i) {
+        return new Token("session", value(i), EXPIRY / 2 + i, EXPIRY);
+    }
+    
+    /**
+     * Get the class path of the classes and test classes, which may not be
+     * on the <code>java.class.path</code> of a test launcher.
+     * 
+     * @return the class path
+     */
+    private static String getClassPath() throws Exception {
+        return Path.of(Writer.class.getProtectionDomain().getCodeSource()
+                        .getLocation().toURI())
+                + File.pathSeparator
+                + Path.of(MappedTokenStore.class.getProtectionDomain()
+                        .getCodeSource().getLocation().toURI());
+    }
+    
+    /**
+     * Count the records in the specified state in a closed store file.
+     * 
+     * @param path the file path
+     * @param state the record state
+     * @return the number of records
+     */
+    private static int count(Path path, int state) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        int n = 0;
+        for (int base = HEADER_SIZE; base < buffer.limit();
+                base += RECORD_SIZE) {
+            if (buffer.getInt(base + STATE) == state) {
+                n++;
+            }
+        }
+        return n;
+    }
+    
+    /**
+     * Get the index of the only used record in a closed store file.
+     * 
+     * @param path the file path
+     * @return the record index
+     */
+    private static int findUsed(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        int index = -1;
+        for (int i = 0; HEADER_SIZE + i * RECORD_SIZE < buffer.limit(); i++) {
+            if (buffer.getInt(HEADER_SIZE + i * RECORD_SIZE + STATE) == USED) {
+                assertEquals(-1, index, "more than one used record");
+                index = i;
+            }
+        }
+        return index;
+    }
+    
+    /**
+     * Check that a reopened store holds the stored tokens and not the revoked
+     * ones.
+     * 
+     * @param store the store
+     * @param count the number of tokens put
+     * @return the number of tokens which should be stored
+     */
+    private static int checkTokens(MappedTokenStore store, int count) {
+        int expected = 0;
+        for (int i = 0; i < count; i++) {
+            if (i % 3 == 0) {
+                assertFalse(store.contains(value(i)), value(i));
+                assertNull(store.get(value(i)), value(i));
+            } else {
+                Token token = store.get(value(i));
+                assertNotNull(token, value(i));
+                assertEquals(token(i).getIssuedTime(), token.getIssuedTime());
+                assertEquals(EXPIRY, token.getExpiryTime());
+                assertEquals("session", token.getId());
+                expected++;
+            }
+        }
+        return expected;
+    }
+    
+    @Test
+    public void testReopen() throws IOException {
+        Path path = dir.resolve("tokens.db");
+        try (MappedTokenStore store = new MappedTokenStore(path, 1000)) {
+            for (int i = 0; i < 900; i++) {
+                store.put(token(i));
+                if (i % 3 == 0) {
+                    assertTrue(store.revoke(value(i)));
+                }
+            }
+            assertThrows(IOException.class,
+                    () -> new MappedTokenStore(path, 1000));
+            assertEquals(600, checkTokens(store, 900));
+            assertEquals(600, store.size());
+            // tokens are hashed from their value bytes, Latin-1 or UTF-16
+            store.put(new Token("session", "caf\u00E9", 0, EXPIRY));
+            store.put(new Token("session", "\u20AC100", 0, EXPIRY));
+            assertTrue(store.contains("caf\u00E9"));
+            assertTrue(store.contains("\u20AC100"));
+            assertTrue(store.revoke("caf\u00E9"));
+            assertTrue(store.revoke("\u20AC100"));
+        }
+        try (MappedTokenStore store = new MappedTokenStore(path, 10)) {
+            assertEquals(2048, store.getCapacity());
+            assertEquals(600, checkTokens(store, 900));
+            assertEquals(600, store.size());
+        }
+    }
+    
+    @Test
+    public void testTornWriteIsDiscarded() throws IOException {
+        Path path = dir.resolve("tokens.db");
+        try (MappedTokenStore store = new MappedTokenStore(path, 1000)) {
+            store.put(token(0));
+        }
+        final int torn = findUsed(path);
+        try (MappedTokenStore store = new MappedTokenStore(path, 1000)) {
+            for (int i = 1; i < 100; i++) {
+                store.put(token(i));
+            }
+        }
+        // a writer died between the two sequence increments, leaving an odd
+        // sequence and a half-written expiry time
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final int base = HEADER_SIZE + torn * RECORD_SIZE;
+            ByteBuffer field = ByteBuffer.allocate(4);
+            channel.read(field, base + SEQUENCE);
+            field.putInt(0, field.getInt(0) + 1).rewind();
+            channel.write(field, base + SEQUENCE);
+            channel.write(ByteBuffer.wrap(new byte[] {-1, -1, -1, -1}),
+                    base + EXPIRY_TIME);
+        }
+        try (MappedTokenStore store = new MappedTokenStore(path, 1000)) {
+            // lookups would spin on the odd sequence if it were kept
+            assertFalse(store.contains(value(0)));
+            assertEquals(99, store.size());
+            for (int i = 1; i < 100; i++) {
+                assertEquals(EXPIRY, store.get(value(i)).getExpiryTime());
+            }
+            store.put(token(0));
+            assertEquals(EXPIRY, store.get(value(0)).getExpiryTime());
+        }
+    }
+    
+    @Test
+    public void testReopenAfterKill() throws Exception {
+        final Path path = dir.resolve("tokens.db");
+        final Process process = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java")
+                        .toString(),
+                "-cp", getClassPath(),
+                Writer.class.getName(), path.toString())
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        int stored = 0;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                process.getInputStream(), StandardCharsets.US_ASCII))) {
+            // kill the writer while it is still writing
+            String line;
+            while (stored < 5000 && (line = in.readLine()) != null) {
+                stored = Integer.parseInt(line) + 1;
+            }
+        } finally {
+            process.destroyForcibly().waitFor();
+        }
+        assertEquals(5000, stored);
+        try (MappedTokenStore store = new MappedTokenStore(path, 10)) {
+            // the writer may have stored more tokens after the last one read
+            assertTrue(store.size() >= checkTokens(store, stored));
+            store.put(token(200000));
+            assertTrue(store.contains(value(200000)));
+        }
+    }
+    
+    @Test
+    public void testCompactOnReopen() throws IOException {
+        final Path path = dir.resolve("tokens.db");
+        final int n = 3000;
+        try (MappedTokenStore store = new MappedTokenStore(path, n)) {
+            assertEquals(4096, store.getCapacity());
+            for (int i = 0; i < n; i++) {
+                store.put(token(i));
+            }
+            // revoke after all puts, as puts reuse the slots of revoked tokens
+            for (int i = 0; i < n; i += 3) {
+                store.revoke(value(i));
+            }
+        }
+        assertEquals(n / 3, count(path, REMOVED));
+        try (MappedTokenStore store = new MappedTokenStore(path, n)) {
+            assertEquals(n - n / 3, checkTokens(store, n));
+            assertEquals(n - n / 3, store.size());
+        }
+        assertEquals(0, count(path, REMOVED));
+        assertEquals(n - n / 3, count(path, USED));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count(), "temporary file left behind");
+        }
+        // below an eighth of the table, tombstones are kept
+        try (MappedTokenStore store = new MappedTokenStore(path, n)) {
+            for (int i = 1; i < 300; i += 3) {
+                store.revoke(value(i));
+            }
+        }
+        try (MappedTokenStore store = new MappedTokenStore(path, n)) {
+            assertEquals(n - n / 3 - 100, store.size());
+        }
+        assertEquals(100, count(path, REMOVED));
+    }
+    
+    @Test
+    public void testChurn() throws Exception {
+        final Path path = dir.resolve("tokens.db");
+        try (MappedTokenStore store = new MappedTokenStore(path, 700)) {
+            final int capacity = store.getCapacity();
+            assertEquals(1024, capacity);
+            for (int i = 0; i < 100; i++) {
+                store.put(token(i));
+            }
+            // a concurrent reader must always find the long-lived tokens
+            final AtomicBoolean done = new AtomicBoolean();
+            final AtomicInteger misses = new AtomicInteger();
+            Thread reader = new Thread(() -> {
+                while (!done.get()) {
+                    for (int i = 0; i < 100; i++) {
+                        if (!store.contains(value(i))) {
+                            misses.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            reader.start();
+            final long now = System.currentTimeMillis();
+            try {
+                // put ten times the capacity in revoked and expired tokens
+                for (int i = 100; i < 100 + 10 * capacity; i++) {
+                    if (i % 2 == 0) {
+                        store.put(token(i));
+                        assertTrue(store.revoke(value(i)));
+                    } else {
+                        store.put(new Token(
+                                "session", value(i), now - 2, now - 1));
+                    }
+                }
+            } finally {
+                done.set(true);
+                reader.join();
+            }
+            assertEquals(0, misses.get());
+            for (int i = 0; i < 100; i++) {
+                assertEquals(EXPIRY, store.get(value(i)).getExpiryTime());
+            }
+            assertFalse(store.contains(value(100 + 10 * capacity - 1)));
+            // a table full of live tokens is still full
+            assertThrows(IllegalStateException.class, () -> {
+                for (int i = 200000; i < 200000 + capacity; i++) {
+                    store.put(token(i));
+                }
+            });
+            assertTrue(store.size() > capacity * 9 / 10 - capacity / 16);
+        }
+        try (MappedTokenStore store = new MappedTokenStore(path, 700)) {
+            for (int i = 0; i < 100; i++) {
+                assertEquals(EXPIRY, store.get(value(i)).getExpiryTime());
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package jwebsec;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <code>RNGUtilTest</code> checks the selection of the entropy mode, the
+ * pooled convenience methods and that pool stripes are reseeded in the
+ * background, at most once per reseed interval, while callers keep drawing
+ * values.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public class RNGUtilTest {
+    
+    /* Uses after which a pool stripe is reseeded. */
+    private static final int RESEED_INTERVAL = 65536;
+    
+    /**
+     * <code>Probe</code> prints the entropy mode and the algorithm of a new
+     * instance, in a JVM started with an entropy mode property.
+     */
+    public static final class Probe {
+        
+        public static void main(String[] args) {
+            System.out.println(RNGUtil.getEntropyMode());
+            System.out.println(((SecureRandom)RNGUtil.createRandomInstance())
+                    .getAlgorithm());
+            System.out.println(RNGUtil.nextBytes(32).length);
+        }
+    }
+    
+    /**
+     * Run the probe in a new JVM.
+     * 
+     * @param mode the entropy mode property value, or null
+     * @return the lines printed by the probe
+     * @throws Exception if the JVM cannot be run
+     */
+    private static List<String> probe(String mode) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java")
+                .toString());
+        if (mode != null) {
+            command.add("-D" + RNGUtil.ENTROPY_MODE_PROPERTY + "=" + mode);
+        }
+        command.add("-cp");
+        command.add(Path.of(Probe.class.getProtectionDomain().getCodeSource()
+                        .getLocation().toURI())
+                + File.pathSeparator
+                + Path.of(RNGUtil.class.getProtectionDomain().getCodeSource()
+                        .getLocation().toURI()));
+        command.add(Probe.class.getName());
+        Process process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                process.getInputStream(), StandardCharsets.US_ASCII))) {
+            for (String line; (line = in.readLine()) != null;) {
+                lines.add(line);
+            }
+        }
+        assertEquals(0, process.waitFor());
+        return lines;
+    }
+    
+    @Test
+    public void testEntropyModes() throws Exception {
+        assertEquals("DRBG",
+                RNGUtil.EntropyMode.DRBG.newSecureRandom().getAlgorithm());
+        assertEquals("NativePRNGNonBlocking", RNGUtil.EntropyMode.NON_BLOCKING
+                .newSecureRandom().getAlgorithm());
+        assertEquals("DRBG", ((SecureRandom)RNGUtil.createRandomInstance())
+                .getAlgorithm());
+        // instances with the same seed still differ, as the DRBG mixes in
+        // its own entropy
+        assertTrue(RNGUtil.createRandomInstance(42).nextLong()
+                != RNGUtil.createRandomInstance(42).nextLong());
+    }
+    
+    @Test
+    public void testEntropyModeProperty() throws Exception {
+        assertEquals(List.of("DRBG", "DRBG", "32"), probe(null));
+        assertEquals(List.of("NON_BLOCKING", "NativePRNGNonBlocking", "32"),
+                probe(" non_blocking "));
+        assertEquals(List.of("DRBG", "DRBG", "32"), probe("bogus"));
+        List<String> strong = probe("strong");
+        assertEquals("STRONG", strong.get(0));
+        assertEquals(SecureRandom.getInstanceStrong().getAlgorithm(),
+                strong.get(1));
+    }
+    
+    @Test
+    public void testConvenienceMethods() {
+        assertEquals(RNGUtil.EntropyMode.DRBG, RNGUtil.getEntropyMode());
+        assertEquals(16, RNGUtil.nextBytes(16).length);
+        Set<Long> values = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            values.add(RNGUtil.nextLong());
+            int n = RNGUtil.nextInt(10);
+            assertTrue(n >= 0 && n < 10);
+            long l = RNGUtil.nextLong(1000);
+            assertTrue(l >= 0 && l < 1000);
+        }
+        assertEquals(1000, values.size());
+    }
+    
+    @Test
+    public void testStripesAreReseeded() throws Exception {
+        final long before = RNGUtil.getReseedCount();
+        final int threads = 8;
+        final int calls = 4 * RESEED_INTERVAL;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < calls; i++) {
+                        RNGUtil.nextLong();
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertNull(failure.get());
+        final long reseeds = RNGUtil.getReseedCount() - before;
+        // every stripe is reseeded at most once per interval of its uses
+        assertTrue(reseeds >= 1, "no reseeds");
+        assertTrue(reseeds <= (long)threads * calls / RESEED_INTERVAL,
+                "reseeds " + reseeds);
+        assertEquals(32, RNGUtil.nextBytes(32).length);
+    }
+}
@@ -0,0 +1,233 @@
+package jwebsec;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <code>RandomTokenGeneratorTest</code> checks token value lengths and
+ * alphabets, that the characters of generated values are uniformly
+ * distributed for every radix and encoding, both inline and in batches, that
+ * binary values are uniform, and that batches of any size stream distinct
+ * tokens with shared issue and expiry times.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public class RandomTokenGeneratorTest {
+    
+    /* Alphanumeric characters in radix order. */
+    private static final String CHARS =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    
+    /* Standard normal quantile for a false failure rate of 10^-4. */
+    private static final double Z = 3.719;
+    
+    /* Expiry time of test tokens, one hour from now. */
+    private static final long EXPIRY = System.currentTimeMillis() + 3600000;
+    
+    /* URL-safe Base-64 characters. */
+    private static final String BASE64URL_CHARS =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+    
+    /* Base-32 characters. */
+    private static final String BASE32_CHARS =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567";
+    
+    /* Crockford's Base-32 characters. */
+    private static final String CROCKFORD_BASE32_CHARS =
+            "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+    
+    /**
+     * Count the alphanumeric characters of token values.
+     * 
+     * @param counts the counts, indexed by digit value
+     * @param value the token value
+     */
+    private static void count(long[] counts, String value) {
+        count(CHARS, counts, value);
+    }
+    
+    /**
+     * Count the characters of token values.
+     * 
+     * @param chars the alphabet in digit order
+     * @param counts the counts, indexed by digit value
+     * @param value the token value
+     */
+    private static void count(String chars, long[] counts, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            int digit = chars.indexOf(value.charAt(i));
+            assertTrue(digit >= 0 && digit < counts.length, value);
+            counts[digit]++;
+        }
+    }
+    
+    /**
+     * Assert that character counts are consistent with a uniform
+     * distribution, using Pearson's chi-squared test and the Wilson-Hilferty
+     * approximation of the critical value.
+     * 
+     * @param counts the counts, indexed by digit value
+     */
+    private static void assertUniform(long[] counts) {
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        final double expected = (double)total / counts.length;
+        double chi2 = 0;
+        for (long c : counts) {
+            chi2 += (c - expected) * (c - expected) / expected;
+        }
+        final int df = counts.length - 1;
+        final double k = 2.0 / (9 * df);
+        final double critical = df * Math.pow(1 - k + Z * Math.sqrt(k), 3);
+        assertTrue(chi2 < critical, "radix " + counts.length
+                + ": chi-squared " + chi2 + " >= " + critical);
+    }
+    
+    @Test
+    public void testCharTokenValuesAreUniform() {
+        RandomTokenGenerator generator = new RandomTokenGenerator();
+        for (int radix : new int[] {10, 16, 36, 62}) {
+            long[] counts = new long[radix];
+            for (int i = 0; i < 2000; i++) {
+                String value = generator.createCharTokenValue(64, radix);
+                assertEquals(64, value.length());
+                count(counts, value);
+            }
+            assertUniform(counts);
+        }
+    }
+    
+    @Test
+    public void testBatchTokenValuesAreUniform() {
+        RandomTokenGenerator generator = new RandomTokenGenerator();
+        long[] alphanumeric = new long[62];
+        List<Token> tokens = generator.createAlphanumericTokens(
+                "session", 64, EXPIRY, 2000);
+        assertEquals(2000, tokens.size());
+        for (Token token : tokens) {
+            assertEquals(64, token.getValue().length());
+            count(alphanumeric, token.getValue());
+        }
+        assertUniform(alphanumeric);
+        long[] hexadecimal = new long[16];
+        for (Token token : generator.createHexadecimalTokens(
+                "session", 64, EXPIRY, 2000)) {
+            count(hexadecimal, token.getValue());
+        }
+        assertUniform(hexadecimal);
+    }
+    
+    @Test
+    public void testBatches() {
+        RandomTokenGenerator generator = new RandomTokenGenerator();
+        // more value bytes than one batch buffer holds
+        final int count = 5000;
+        List<Token> tokens = new ArrayList<>();
+        generator.createAlphanumericTokens(
+                "batch", 64, EXPIRY, count, tokens::add);
+        generator.createHexadecimalTokens(
+                "batch", 64, EXPIRY, count, tokens::add);
+        tokens.addAll(generator.createBase64Tokens("batch", 64, EXPIRY, count));
+        assertEquals(3 * count, tokens.size());
+        Set<String> values = new HashSet<>();
+        final long issued = tokens.get(0).getIssuedTime();
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            assertTrue(values.add(token.getValue()), token.getValue());
+            assertEquals("batch", token.getId());
+            assertEquals(EXPIRY, token.getExpiryTime());
+            assertTrue(token.getIssuedTime() >= issued);
+            if (i >= 2 * count) {
+                assertEquals(48, Base64.getDecoder()
+                        .decode(token.getValue()).length);
+            } else {
+                assertEquals(64, token.getValue().length());
+            }
+        }
+        // every token in a batch is issued at the same time
+        for (int i = 1; i < count; i++) {
+            assertEquals(tokens.get(0).getIssuedTime(),
+                    tokens.get(i).getIssuedTime());
+        }
+        assertEquals(0, generator.createAlphanumericTokens(
+                "batch", 64, EXPIRY, 0).size());
+        assertThrows(IllegalArgumentException.class, () ->
+                generator.createHexadecimalTokens("batch", 64, EXPIRY, -1));
+        assertThrows(IllegalArgumentException.class, () ->
+                generator.createBase64Tokens("batch", 64, EXPIRY, -1));
+    }
+    
+    @Test
+    public void testEncodedFormats() {
+        RandomTokenGenerator generator = new RandomTokenGenerator();
+        long[] base64url = new long[64];
+        long[] base32 = new long[32];
+        long[] crockford = new long[32];
+        for (int i = 0; i < 2000; i++) {
+            count(BASE64URL_CHARS, base64url, generator.createBase64URLToken(
+                    "session", 64, EXPIRY).getValue());
+            count(BASE32_CHARS, base32, generator.createBase32Token(
+                    "session", 64, EXPIRY).getValue());
+            count(CROCKFORD_BASE32_CHARS, crockford,
+                    generator.createCrockfordBase32Token(
+                            "session", 64, EXPIRY).getValue());
+        }
+        assertUniform(base64url);
+        assertUniform(base32);
+        assertUniform(crockford);
+        // values decode as unpadded URL-safe Base-64
+        String value = generator.createBase64URLToken(
+                "session", 64, EXPIRY).getValue();
+        assertEquals(48, Base64.getUrlDecoder().decode(value).length);
+    }
+    
+    @Test
+    public void testBinaryTokenValues() {
+        RandomTokenGenerator generator = new RandomTokenGenerator();
+        assertEquals(RandomTokenGenerator.MIN_TOKEN_LENGTH,
+                generator.createBinaryTokenValue(0).length);
+        assertEquals(RandomTokenGenerator.MAX_TOKEN_LENGTH,
+                generator.createBinaryTokenValue(100000).length);
+        long[] counts = new long[256];
+        Set<String> values = new HashSet<>();
+        for (int i = 0; i < 2000; i++) {
+            byte[] bytes = generator.createBinaryTokenValue(64);
+            assertEquals(64, bytes.length);
+            assertTrue(values.add(Base64.getEncoder().encodeToString(bytes)));
+            for (byte b : bytes) {
+                counts[b & 0xFF]++;
+            }
+        }
+        assertUniform(counts);
+    }
+    
+    @Test
+    public void testTokenLengths() {
+        RandomTokenGenerator generator = new RandomTokenGenerator();
+        assertEquals(RandomTokenGenerator.MIN_TOKEN_LENGTH,
+                generator.createAlphanumericToken("session", 1, EXPIRY)
+                        .getValue().length());
+        assertEquals(RandomTokenGenerator.MAX_TOKEN_LENGTH,
+                generator.createAlphanumericToken("session", 100000, EXPIRY)
+                        .getValue().length());
+        for (int length = 32; length < 100; length++) {
+            assertEquals(length, generator.createBase64URLToken(
+                    "session", length, EXPIRY).getValue().length());
+            assertEquals(length, generator.createBase32Token(
+                    "session", length, EXPIRY).getValue().length());
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package jwebsec;
+
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <code>RateLimiterTest</code> checks bursts, refills, client keys, the
+ * overflow bucket of a full limiter and exact accounting under concurrent
+ * requests.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public class RateLimiterTest {
+    
+    /* Request rate at which no bucket refills during a test (1/1000s). */
+    private static final double NO_REFILL = 0.001;
+    
+    @Test
+    public void testBurstAndRefill() throws Exception {
+        RateLimiter limiter = new RateLimiter(100, 5);
+        IPAddress client = IPAddress.parse("192.0.2.1");
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.acquire(client));
+        }
+        final long wait = limiter.acquire(client);
+        assertTrue(wait > 0 && wait <= 10000000, "wait " + wait);
+        assertEquals(5, limiter.getAllowedCount(client));
+        assertEquals(1, limiter.getLimitedCount(client));
+        // one request is allowed again once its interval has passed
+        Thread.sleep(wait / 1000000 + 1);
+        assertTrue(limiter.tryAcquire(client));
+        assertEquals(6, limiter.getAllowedCount());
+        assertEquals(1, limiter.getLimitedCount());
+        assertThrows(IllegalArgumentException.class,
+                () -> new RateLimiter(0, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RateLimiter(1, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RateLimiter(1, 1, 0));
+    }
+    
+    @Test
+    public void testClientKeys() {
+        RateLimiter limiter = new RateLimiter(NO_REFILL, 2);
+        // IPv6 clients are keyed by their /64 prefix
+        assertTrue(limiter.tryAcquire(IPAddress.parse("2001:db8:0:1::1")));
+        assertTrue(limiter.tryAcquire(IPAddress.parse("2001:db8:0:1::2")));
+        assertFalse(limiter.tryAcquire(IPAddress.parse("2001:db8:0:1::3")));
+        assertTrue(limiter.tryAcquire(IPAddress.parse("2001:db8:0:2::1")));
+        // IPv4 clients are keyed by address
+        assertTrue(limiter.tryAcquire(IPAddress.parse("192.0.2.1")));
+        assertTrue(limiter.tryAcquire(IPAddress.parse("192.0.2.1")));
+        assertFalse(limiter.tryAcquire(IPAddress.parse("192.0.2.1")));
+        assertTrue(limiter.tryAcquire(IPAddress.parse("192.0.2.2")));
+        assertEquals(4, limiter.size());
+        // clients without an address share the overflow bucket
+        assertTrue(limiter.tryAcquire(null));
+        assertTrue(limiter.tryAcquire(null));
+        assertFalse(limiter.tryAcquire(null));
+        assertEquals(4, limiter.size());
+        limiter.clear();
+        assertEquals(0, limiter.size());
+        assertTrue(limiter.tryAcquire(IPAddress.parse("192.0.2.1")));
+    }
+    
+    @Test
+    public void testFullLimiterUsesOverflowBucket() {
+        RateLimiter limiter = new RateLimiter(NO_REFILL, 5, 10);
+        int allowed = 0;
+        for (int i = 0; i < 100; i++) {
+            if (limiter.tryAcquire(IPAddress.ofIPv4(0xC0000200 + i))) {
+                allowed++;
+            }
+        }
+        // ten tracked clients, and five requests from the rest together
+        assertEquals(10, limiter.size());
+        assertEquals(15, allowed);
+        assertEquals(90, limiter.getOverflowCount());
+        assertEquals(85, limiter.getLimitedCount());
+        // tracked clients keep their own buckets
+        assertTrue(limiter.tryAcquire(IPAddress.ofIPv4(0xC0000200)));
+    }
+    
+    @Test
+    public void testConcurrentRequestsAreCountedExactly() throws Exception {
+        final int burst = 1000;
+        RateLimiter limiter = new RateLimiter(NO_REFILL, burst);
+        final IPAddress client = IPAddress.parse("198.51.100.7");
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < burst; i++) {
+                        limiter.acquire(client);
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        assertEquals(burst, limiter.getAllowedCount(client));
+        assertEquals(7L * burst, limiter.getLimitedCount(client));
+        assertEquals(8L * burst,
+                limiter.getAllowedCount() + limiter.getLimitedCount());
+    }
+}
@@ -0,0 +1,224 @@
+package jwebsec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <code>RevocationIndexTest</code> checks revocation lookups, revocation of
+ * signed tokens by their tags, serialization and the bounds applied to
+ * indexes read from other nodes.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public class RevocationIndexTest {
+    
+    /* Serialization magic number and version. */
+    private static final int MAGIC = 0x4A575249;
+    private static final int VERSION = 1;
+    
+    /* Expiry time of test tokens, one hour from now. */
+    private static final long EXPIRY = System.currentTimeMillis() + 3600000;
+    
+    /**
+     * Serialize an index.
+     * 
+     * @param index the index
+     * @return the serialized index
+     */
+    private static byte[] write(RevocationIndex index) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * Get an input stream over serialized data.
+     * 
+     * @param bytes the serialized data
+     * @return the input
+     */
+    private static DataInputStream in(byte[] bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+    
+    /**
+     * Write the header of a serialized index with one filter block.
+     * 
+     * @param out the output
+     * @param partitions the partition count
+     */
+    private static void header(DataOutputStream out, int partitions)
+            throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(1);
+        out.writeLong(3600000);
+        out.writeInt(1);
+        out.writeInt(partitions);
+    }
+    
+    @Test
+    public void testRevoke() {
+        RevocationIndex index = new RevocationIndex(3600000, 1000, 1);
+        for (int i = 0; i < 1000; i++) {
+            index.revoke("revoked" + i, EXPIRY);
+        }
+        assertEquals(1000, index.size());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(index.isRevoked("revoked" + i, EXPIRY));
+            assertFalse(index.isRevoked("valid" + i, EXPIRY));
+        }
+        // a different expiry time is a different partition
+        assertFalse(index.isRevoked("revoked0", EXPIRY + 86400000));
+        index.revoke("expired", System.currentTimeMillis() - 1);
+        assertEquals(1000, index.size());
+        assertThrows(IllegalArgumentException.class, () -> index.revoke(
+                "late", System.currentTimeMillis() + 401L * 86400000));
+        assertFalse(index.isRevoked(null, EXPIRY));
+        // tokens are probed with their value bytes, Latin-1 or UTF-16
+        for (String value : new String[] {"caf\u00E9", "\u20AC100"}) {
+            Token token = new Token("session", value, 0, EXPIRY);
+            assertFalse(index.isRevoked(token));
+            index.revoke(value, EXPIRY);
+            assertTrue(index.isRevoked(token));
+            assertTrue(index.isRevoked(new Token("session", value, 1, EXPIRY)));
+        }
+    }
+    
+    @Test
+    public void testValuesMatchExactly() {
+        RevocationIndex index = new RevocationIndex();
+        // random tokens which differ only in the low bits of the last
+        // character, or in padding, are different tokens
+        index.revoke("abcdefghij", EXPIRY);
+        assertTrue(index.isRevoked("abcdefghij", EXPIRY));
+        assertFalse(index.isRevoked("abcdefghik", EXPIRY));
+        assertFalse(index.isRevoked("abcdefghij==", EXPIRY));
+    }
+    
+    @Test
+    public void testSignedTokenVariantsAreRevoked() {
+        SignedTokenCodec codec = new SignedTokenCodec(1, new byte[32]);
+        RevocationIndex index = new RevocationIndex();
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZ"
+                + "abcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (String id : new String[] {"a", "ab", "abc"}) {
+            Token token = codec.sign(id, EXPIRY);
+            String value = token.getValue();
+            String key = SignedTokenCodec.getRevocationKey(value);
+            index.revoke(key, EXPIRY);
+            assertTrue(index.isRevoked(key, EXPIRY));
+            assertFalse(index.isRevoked(SignedTokenCodec.getRevocationKey(
+                    codec.sign(id + id, EXPIRY).getValue()), EXPIRY));
+            int rem = value.length() & 3;
+            if (rem == 0) {
+                continue;
+            }
+            String padded = value + "=".repeat(4 - rem);
+            assertTrue(index.isRevoked(
+                    SignedTokenCodec.getRevocationKey(padded), EXPIRY));
+            int last = alphabet.indexOf(value.charAt(value.length() - 1));
+            String flipped = value.substring(0, value.length() - 1)
+                    + alphabet.charAt(last | 1);
+            assertTrue(index.isRevoked(
+                    SignedTokenCodec.getRevocationKey(flipped), EXPIRY));
+        }
+        assertNull(SignedTokenCodec.getRevocationKey("not base 64!"));
+        assertNull(SignedTokenCodec.getRevocationKey("AAAA"));
+    }
+    
+    @Test
+    public void testPurge() throws InterruptedException {
+        RevocationIndex index = new RevocationIndex(50, 1000, 1);
+        index.revoke("value", System.currentTimeMillis() + 60);
+        assertEquals(1, index.getPartitionCount());
+        Thread.sleep(200);
+        index.purge();
+        assertEquals(0, index.getPartitionCount());
+        assertEquals(0, index.size());
+    }
+    
+    @Test
+    public void testWriteReadAndMerge() throws IOException {
+        RevocationIndex a = new RevocationIndex(3600000, 1000, 7);
+        RevocationIndex b = new RevocationIndex(3600000, 1000, 7);
+        a.revoke("a", EXPIRY);
+        b.revoke("b", EXPIRY + 7200000);
+        RevocationIndex replica = RevocationIndex.readFrom(in(write(a)));
+        assertTrue(replica.isRevoked("a", EXPIRY));
+        assertFalse(replica.isRevoked("b", EXPIRY + 7200000));
+        replica.merge(in(write(b)));
+        assertTrue(replica.isRevoked("a", EXPIRY));
+        assertTrue(replica.isRevoked("b", EXPIRY + 7200000));
+        assertEquals(2, replica.size());
+        RevocationIndex other = new RevocationIndex(3600000, 1000, 8);
+        assertThrows(IOException.class, () -> other.merge(in(write(a))));
+    }
+    
+    @Test
+    public void testHostileStreamsAreRejected() throws IOException {
+        // 2^28 blocks would be a 16 GiB filter
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(1);
+        out.writeLong(3600000);
+        out.writeInt(1 << 28);
+        out.writeInt(1);
+        assertThrows(IOException.class,
+                () -> RevocationIndex.readFrom(in(bytes.toByteArray())));
+        // too many partitions
+        bytes.reset();
+        header(out, Integer.MAX_VALUE);
+        assertThrows(IOException.class,
+                () -> RevocationIndex.readFrom(in(bytes.toByteArray())));
+        bytes.reset();
+        header(out, -1);
+        assertThrows(IOException.class,
+                () -> RevocationIndex.readFrom(in(bytes.toByteArray())));
+        // a partition far in the future
+        bytes.reset();
+        header(out, 1);
+        out.writeLong(Long.MAX_VALUE);
+        for (int i = 0; i < 8; i++) {
+            out.writeLong(-1);
+        }
+        out.writeInt(0);
+        assertThrows(IOException.class,
+                () -> RevocationIndex.readFrom(in(bytes.toByteArray())));
+        // a truncated stream
+        bytes.reset();
+        header(out, 1);
+        out.writeLong(System.currentTimeMillis() / 3600000 + 1);
+        out.writeLong(-1);
+        assertThrows(IOException.class,
+                () -> RevocationIndex.readFrom(in(bytes.toByteArray())));
+        // a partition within 400 days is accepted
+        bytes.reset();
+        header(out, 1);
+        out.writeLong(System.currentTimeMillis() / 3600000 + 24 * 399);
+        for (int i = 0; i < 8; i++) {
+            out.writeLong(0);
+        }
+        out.writeInt(1);
+        out.writeUTF("value");
+        RevocationIndex index = RevocationIndex.readFrom(
+                in(bytes.toByteArray()));
+        assertEquals(1, index.size());
+        assertEquals(1, index.getPartitionCount());
+    }
+}
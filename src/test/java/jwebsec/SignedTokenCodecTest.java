@@ -0,0 +1,126 @@
+package jwebsec;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * <code>SignedTokenCodecTest</code> checks signing, verification, key
+ * rotation and the rejection of tampered and non-canonical token values.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public class SignedTokenCodecTest {
+    
+    /* URL-safe Base-64 alphabet. */
+    private static final String ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+    
+    /* Expiry time of test tokens, one hour from now. */
+    private static final long EXPIRY = System.currentTimeMillis() + 3600000;
+    
+    /**
+     * Get a test key.
+     * 
+     * @param b the key byte value
+     * @return the key
+     */
+    private static byte[] key(int b) {
+        byte[] key = new byte[32];
+        Arrays.fill(key, (byte)b);
+        return key;
+    }
+    
+    @Test
+    public void testSignAndVerify() {
+        SignedTokenCodec codec = new SignedTokenCodec(1, key(1));
+        Token token = codec.sign("session", EXPIRY,
+                Map.of("user", "alice", "role", "admin"));
+        Token verified = codec.verify(token.getValue());
+        assertNotNull(verified);
+        assertEquals("session", verified.getId());
+        assertEquals(token.getIssuedTime(), verified.getIssuedTime());
+        assertEquals(EXPIRY, verified.getExpiryTime());
+        assertEquals(Map.of("user", "alice", "role", "admin"),
+                codec.getClaims(token.getValue()));
+        assertNull(codec.verify(codec.encode("session",
+                0, System.currentTimeMillis() - 1, null)));
+        assertNull(codec.verify(null));
+        assertNull(codec.verify(""));
+        assertNull(codec.verify("not base 64!"));
+    }
+    
+    @Test
+    public void testTamperedValuesAreRejected() {
+        SignedTokenCodec codec = new SignedTokenCodec(1, key(1));
+        String value = codec.sign("session", EXPIRY).getValue();
+        byte[] buf = Base64.getUrlDecoder().decode(value);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        for (int i = 0; i < buf.length; i++) {
+            byte[] tampered = buf.clone();
+            tampered[i] ^= 1;
+            assertNull(codec.verify(encoder.encodeToString(tampered)),
+                    "byte " + i);
+        }
+        assertNull(codec.verify(value.substring(0, value.length() - 1)));
+        assertNull(new SignedTokenCodec(1, key(2)).verify(value));
+    }
+    
+    @Test
+    public void testNonCanonicalValuesAreRejected() {
+        SignedTokenCodec codec = new SignedTokenCodec(1, key(1));
+        // IDs of one to three bytes cover every encoded length modulo four
+        for (String id : new String[] {"a", "ab", "abc"}) {
+            String value = codec.sign(id, EXPIRY).getValue();
+            assertNotNull(codec.verify(value));
+            int rem = value.length() & 3;
+            if (rem == 0) {
+                continue;
+            }
+            // padding decodes to the same bytes
+            String padded = value + "=".repeat(4 - rem);
+            assertArrayEquals(Base64.getUrlDecoder().decode(value),
+                    Base64.getUrlDecoder().decode(padded));
+            assertNull(codec.verify(padded), padded);
+            assertNull(codec.getClaims(padded), padded);
+            // so does setting any of the unused bits of the last character
+            int last = ALPHABET.indexOf(value.charAt(value.length() - 1));
+            for (int bit = 1; bit < (rem == 2 ? 16 : 4); bit <<= 1) {
+                String flipped = value.substring(0, value.length() - 1)
+                        + ALPHABET.charAt(last ^ bit);
+                assertArrayEquals(Base64.getUrlDecoder().decode(value),
+                        Base64.getUrlDecoder().decode(flipped));
+                assertNull(codec.verify(flipped), flipped);
+            }
+        }
+    }
+    
+    @Test
+    public void testKeyRotation() {
+        SignedTokenCodec codec = new SignedTokenCodec(1, key(1));
+        String old = codec.sign("session", EXPIRY).getValue();
+        codec.addKey(2, key(2));
+        codec.setSigningKeyId(2);
+        String current = codec.sign("session", EXPIRY).getValue();
+        assertNotNull(codec.verify(old));
+        assertNotNull(codec.verify(current));
+        assertThrows(IllegalStateException.class, () -> codec.removeKey(2));
+        codec.removeKey(1);
+        assertNull(codec.verify(old));
+        assertNotNull(codec.verify(current));
+        assertThrows(IllegalArgumentException.class,
+                () -> codec.setSigningKeyId(1));
+        assertThrows(IllegalArgumentException.class,
+                () -> codec.addKey(3, new byte[16]));
+    }
+}
@@ -0,0 +1,87 @@
+package jwebsec;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <code>TokenReservoirTest</code> checks that a token reservoir serves
+ * pre-generated values and keeps a bounded number of buffers.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public class TokenReservoirTest {
+    
+    /* Expiry time of test tokens, one hour from now. */
+    private static final long EXPIRY = System.currentTimeMillis() + 3600000;
+    
+    /**
+     * Wait until a buffer is filled.
+     * 
+     * @param reservoir the reservoir
+     * @param length the alphanumeric token length
+     * @param level the fill level
+     */
+    private static void awaitFillLevel(
+            TokenReservoir reservoir, int length, int level)
+            throws InterruptedException {
+        for (int i = 0; i < 500 && reservoir.getFillLevel(length) < level;
+                i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(level, reservoir.getFillLevel(length));
+    }
+    
+    @Test
+    public void testValuesAreServedFromReservoir()
+            throws InterruptedException {
+        RandomTokenGenerator generator = new RandomTokenGenerator();
+        try (TokenReservoir reservoir = new TokenReservoir(generator, 64, 16)) {
+            generator.setTokenReservoir(reservoir);
+            // the first request creates the buffer and misses
+            generator.createAlphanumericToken("session", 40, EXPIRY);
+            assertEquals(1, reservoir.getMissCount());
+            awaitFillLevel(reservoir, 40, 64);
+            for (int i = 0; i < 32; i++) {
+                String value = generator.createAlphanumericToken(
+                        "session", 40, EXPIRY).getValue();
+                assertEquals(40, value.length());
+                assertTrue(value.chars().allMatch(Character::isLetterOrDigit));
+            }
+            assertEquals(32, reservoir.getHitCount());
+            // still above the low-water mark, so not refilled
+            assertEquals(32, reservoir.getFillLevel(40));
+            reservoir.close();
+            assertNull(reservoir.poll(40, 62));
+            assertEquals(0, reservoir.getBufferCount());
+        }
+    }
+    
+    @Test
+    public void testBufferCountIsBounded() {
+        RandomTokenGenerator generator = new RandomTokenGenerator();
+        try (TokenReservoir reservoir = new TokenReservoir(generator, 16, 4)) {
+            generator.setTokenReservoir(reservoir);
+            for (int length = 32; length < 32 + 200; length++) {
+                assertEquals(length, generator.createAlphanumericToken(
+                        "session", length, EXPIRY).getValue().length());
+                assertEquals(length, generator.createHexadecimalToken(
+                        "session", length, EXPIRY).getValue().length());
+            }
+            assertEquals(TokenReservoir.MAX_BUFFERS,
+                    reservoir.getBufferCount());
+            assertEquals(0, reservoir.getFillLevel(200));
+            // long values are never buffered
+            TokenReservoir other = new TokenReservoir(generator, 16, 4);
+            generator.setTokenReservoir(other);
+            generator.createAlphanumericToken("session", 1000, EXPIRY);
+            assertEquals(0, other.getBufferCount());
+            other.close();
+        }
+    }
+}
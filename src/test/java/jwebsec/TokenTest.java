@@ -0,0 +1,113 @@
+package jwebsec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <code>TokenTest</code> checks value encoding, equality, ordering,
+ * verification against candidates differing in any position,
+ * serialization and the bounded sharing of token IDs.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public class TokenTest {
+    
+    /* Expiry time of test tokens, one hour from now. */
+    private static final long EXPIRY = System.currentTimeMillis() + 3600000;
+    
+    @Test
+    public void testValues() {
+        for (String value : new String[] {"abc\u00E9", "abc\u20AC", ""}) {
+            Token token = new Token("session", value, 1, EXPIRY);
+            Token other = new Token("session", new String(value), 1, EXPIRY);
+            assertEquals(value, token.getValue());
+            assertEquals(token, other);
+            assertEquals(token.hashCode(), other.hashCode());
+            assertEquals(0, token.compareTo(other));
+            assertTrue(token.verify(value));
+            assertFalse(token.verify(value + "x"));
+        }
+        Token latin1 = new Token("session", "abc\u00E9", 1, EXPIRY);
+        Token utf16 = new Token("session", "abc\u20AC", 1, EXPIRY);
+        assertEquals(Integer.signum("abc\u00E9".compareTo("abc\u20AC")),
+                Integer.signum(latin1.compareTo(utf16)));
+        assertTrue(latin1.verify(new byte[] {'a', 'b', 'c', (byte)0xE9}));
+        assertFalse(utf16.verify(new byte[] {'a', 'b', 'c', 0x20}));
+    }
+    
+    @Test
+    public void testVerifyMismatches() {
+        for (String value : new String[] {
+                new RandomTokenGenerator().createAlphanumericToken(
+                        "session", 64, EXPIRY).getValue(),
+                "abc\u20ACdef"}) {
+            Token token = new Token("session", value, 1, EXPIRY);
+            assertTrue(token.verify(new String(value.toCharArray())));
+            assertFalse(token.verify((String)null));
+            assertFalse(token.verify(""));
+            assertFalse(token.verify(value.substring(1)));
+            assertFalse(token.verify(value + value.charAt(0)));
+            // a mismatch in any position, and in either byte of a
+            // character, is detected
+            for (int i = 0; i < value.length(); i++) {
+                char[] chars = value.toCharArray();
+                for (int flip : new int[] {0x01, 0x80, 0x100, 0x8000}) {
+                    chars[i] = (char)(value.charAt(i) ^ flip);
+                    assertFalse(token.verify(new String(chars)),
+                            i + ": " + Integer.toHexString(flip));
+                }
+            }
+        }
+        byte[] bytes = {'a', 'b', 'c', (byte)0xFF};
+        Token latin1 = new Token("session", "abc\u00FF", 1, EXPIRY);
+        assertTrue(latin1.verify(bytes.clone()));
+        assertFalse(latin1.verify((byte[])null));
+        assertFalse(latin1.verify(new byte[] {'a', 'b', 'c'}));
+        for (int i = 0; i < bytes.length; i++) {
+            byte[] other = bytes.clone();
+            other[i] ^= 0x80;
+            assertFalse(latin1.verify(other));
+        }
+    }
+    
+    @Test
+    public void testIdsAreSharedUpToBound() throws Exception {
+        Token a = new Token(new String("shared-id"), "a", 1, EXPIRY);
+        Token b = new Token(new String("shared-id"), "b", 1, EXPIRY);
+        assertSame(a.getId(), b.getId());
+        // deserialized tokens share the canonical ID
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(a);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))) {
+            Token c = (Token)in.readObject();
+            assertEquals(a, c);
+            assertSame(a.getId(), c.getId());
+        }
+        // a flood of distinct IDs does not grow the map without bound
+        for (int i = 0; i < 10000; i++) {
+            new Token("flood-" + i, "a", 1, EXPIRY);
+        }
+        String id = new String("unshared-id");
+        Token d = new Token(id, "a", 1, EXPIRY);
+        Token e = new Token(new String("unshared-id"), "a", 1, EXPIRY);
+        assertSame(id, d.getId());
+        assertNotSame(d.getId(), e.getId());
+        assertEquals(d, e);
+        assertSame(a.getId(), new Token("shared-id", "a", 1, EXPIRY).getId());
+    }
+}
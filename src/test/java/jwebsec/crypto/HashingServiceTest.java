@@ -0,0 +1,162 @@
+package jwebsec.crypto;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <code>HashingServiceTest</code> checks hashing on the pool, and that the
+ * password is masked when a hash is computed, rejected, times out, fails or
+ * has invalid arguments.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public class HashingServiceTest {
+    
+    /* Salt of test hashes. */
+    private static final byte[] SALT = "saltSALTsaltSALT".getBytes();
+    
+    /**
+     * Create a provider which waits for a latch and then masks the password
+     * and returns its length, or fails if the password is empty.
+     * 
+     * @param latch the latch
+     * @return the provider
+     */
+    private static HashAlgorithmProvider createProvider(CountDownLatch latch) {
+        return (HashAlgorithmProvider)Proxy.newProxyInstance(
+                HashingServiceTest.class.getClassLoader(),
+                new Class<?>[] {HashAlgorithmProvider.class},
+                (proxy, method, args) -> {
+                    if (!"hash".equals(method.getName())) {
+                        return null;
+                    }
+                    latch.await();
+                    char[] password = (char[])args[0];
+                    Arrays.fill(password, '*');
+                    if (password.length == 0) {
+                        throw new HashException("empty password");
+                    }
+                    return new byte[] {(byte)password.length};
+                });
+    }
+    
+    /**
+     * Assert that a password has been masked.
+     * 
+     * @param password the password
+     */
+    private static void assertMasked(char[] password) {
+        char[] masked = new char[password.length];
+        Arrays.fill(masked, '*');
+        assertArrayEquals(masked, password);
+    }
+    
+    /**
+     * Get the cause of a future's failure.
+     * 
+     * @param future the future
+     * @return the cause
+     */
+    private static Throwable getFailure(CompletableFuture<byte[]> future) {
+        return assertThrows(ExecutionException.class,
+                () -> future.get(10, TimeUnit.SECONDS)).getCause();
+    }
+    
+    @Test
+    public void testHash() throws Exception {
+        PBKDF2HashProvider provider = new PBKDF2HashProvider(1000);
+        HashingService service = new HashingService(provider, 2);
+        try {
+            char[] password = "password".toCharArray();
+            byte[] hash = service.hash(password, SALT)
+                    .get(10, TimeUnit.SECONDS);
+            assertMasked(password);
+            assertArrayEquals(provider.hash("password".toCharArray(), SALT),
+                    hash);
+            password = "password".toCharArray();
+            byte[] peppered = service.hash(password,
+                    Arrays.copyOf(SALT, 8), Arrays.copyOfRange(SALT, 8, 16))
+                    .get(10, TimeUnit.SECONDS);
+            assertMasked(password);
+            assertArrayEquals(hash, peppered);
+            assertEquals(2, service.getCompletedCount());
+        } finally {
+            service.shutdown();
+        }
+    }
+    
+    @Test
+    public void testPasswordIsMaskedOnInvalidArguments() {
+        HashingService service =
+                new HashingService(new PBKDF2HashProvider(1000), 1);
+        try {
+            char[] password = "password".toCharArray();
+            assertThrows(IllegalArgumentException.class,
+                    () -> service.hash(password, SALT, null));
+            assertMasked(password);
+            assertEquals(0, service.getSubmittedCount());
+        } finally {
+            service.shutdown();
+        }
+    }
+    
+    @Test
+    public void testPasswordIsMaskedOnRejectionTimeoutAndFailure()
+            throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        HashingService service =
+                new HashingService(createProvider(latch), 1, 2, 20);
+        try {
+            char[] running = "running".toCharArray();
+            CompletableFuture<byte[]> first = service.hash(running, SALT);
+            // wait until the first hash holds the only pool thread
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (service.getActiveCount() == 0
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            char[] queued = "queued".toCharArray();
+            CompletableFuture<byte[]> second = service.hash(queued, SALT);
+            char[] empty = new char[0];
+            CompletableFuture<byte[]> third = service.hash(empty, SALT);
+            char[] rejected = "rejected".toCharArray();
+            CompletableFuture<byte[]> fourth = service.hash(rejected, SALT);
+            assertInstanceOf(RejectedExecutionException.class,
+                    getFailure(fourth));
+            assertMasked(rejected);
+            Thread.sleep(50);
+            latch.countDown();
+            assertArrayEquals(new byte[] {7}, first.get(10, TimeUnit.SECONDS));
+            assertMasked(running);
+            assertInstanceOf(TimeoutException.class, getFailure(second));
+            assertMasked(queued);
+            assertInstanceOf(TimeoutException.class, getFailure(third));
+            assertEquals(1, service.getRejectedCount());
+            assertEquals(2, service.getTimedOutCount());
+            // a failing provider completes the future with its exception
+            CompletableFuture<byte[]> failing = service.hash(empty, SALT);
+            assertInstanceOf(HashException.class, getFailure(failing));
+            assertEquals(1, service.getFailedCount());
+            assertTrue(service.getTotalWaitNanos() > 0);
+        } finally {
+            service.shutdown();
+        }
+        assertTrue(service.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
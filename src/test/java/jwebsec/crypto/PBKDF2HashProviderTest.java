@@ -0,0 +1,100 @@
+package jwebsec.crypto;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <code>PBKDF2HashProviderTest</code> checks that both engines produce the
+ * same hash values and that the password is masked whether hashing
+ * succeeds or its arguments are rejected.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public class PBKDF2HashProviderTest {
+    
+    /* Salt of test hashes. */
+    private static final byte[] SALT = "saltSALTsaltSALT".getBytes();
+    
+    /**
+     * Create a provider.
+     * 
+     * @param engine the engine
+     * @return the provider
+     */
+    private static PBKDF2HashProvider createProvider(
+            PBKDF2HashProvider.Engine engine) {
+        PBKDF2HashProvider provider = new PBKDF2HashProvider(1000);
+        provider.setEngine(engine);
+        return provider;
+    }
+    
+    /**
+     * Assert that a password has been masked.
+     * 
+     * @param password the password
+     */
+    private static void assertMasked(char[] password) {
+        char[] masked = new char[password.length];
+        Arrays.fill(masked, '*');
+        assertArrayEquals(masked, password);
+    }
+    
+    @Test
+    public void testEnginesAgree() throws HashException {
+        PBKDF2HashProvider jce = createProvider(PBKDF2HashProvider.Engine.JCE);
+        PBKDF2HashProvider java =
+                createProvider(PBKDF2HashProvider.Engine.JAVA);
+        for (String s : new String[] {"password", "p\u00E4ssw\u00F6rd", "x"}) {
+            char[] password = s.toCharArray();
+            byte[] expected = jce.hash(password, SALT);
+            assertMasked(password);
+            password = s.toCharArray();
+            byte[] out = new byte[PBKDF2HashProvider.HASH_LENGTH + 8];
+            java.hash(password, SALT, out, 8);
+            assertMasked(password);
+            assertArrayEquals(expected, Arrays.copyOfRange(
+                    out, 8, out.length));
+            password = s.toCharArray();
+            assertArrayEquals(expected, java.hash(password,
+                    Arrays.copyOf(SALT, 8), Arrays.copyOfRange(SALT, 8, 16)));
+            assertMasked(password);
+        }
+    }
+    
+    @Test
+    public void testPasswordIsMaskedOnInvalidArguments() {
+        for (PBKDF2HashProvider.Engine engine
+                : PBKDF2HashProvider.Engine.values()) {
+            PBKDF2HashProvider provider = createProvider(engine);
+            char[] password = "password".toCharArray();
+            assertThrows(IndexOutOfBoundsException.class, () ->
+                    provider.hash(password, SALT, new byte[16], 0));
+            assertMasked(password);
+            char[] password2 = "password".toCharArray();
+            assertThrows(IndexOutOfBoundsException.class, () -> provider.hash(
+                    password2, SALT, new byte[64], -1));
+            assertMasked(password2);
+            char[] password3 = "password".toCharArray();
+            assertThrows(NullPointerException.class, () ->
+                    provider.hash(password3, SALT, null));
+            assertMasked(password3);
+            char[] password4 = "password".toCharArray();
+            assertThrows(RuntimeException.class, () ->
+                    provider.hash(password4, SALT, null, 0));
+            assertMasked(password4);
+            char[] password5 = "password".toCharArray();
+            Exception e = assertThrows(Exception.class, () ->
+                    provider.hash(password5, new byte[0]));
+            assertTrue(e instanceof HashException
+                    || e instanceof IllegalArgumentException, e.toString());
+            assertMasked(password5);
+        }
+    }
+}
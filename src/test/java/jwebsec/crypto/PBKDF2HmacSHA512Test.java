@@ -0,0 +1,187 @@
+package jwebsec.crypto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * <code>PBKDF2HmacSHA512Test</code> checks the pure-Java PBKDF2 engine
+ * against published known-answer vectors and against the JRE's
+ * <code>PBKDF2WithHmacSHA512</code>.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public class PBKDF2HmacSHA512Test {
+    
+    /* Known-answer vectors: password, salt, iterations, derived key. */
+    private static final String[][] VECTORS = {
+        {"password", "salt", "1",
+            "867f70cf1ade02cff3752599a3a53dc4"
+                    + "af34c7a669815ae5d513554e1c8cf252"
+                    + "c02d470a285a0501bad999bfe943c08f"
+                    + "050235d7d68b1da55e63f73b60a57fce"},
+        {"password", "salt", "2",
+            "e1d9c16aa681708a45f5c7c4e215ceb6"
+                    + "6e011a2e9f0040713f18aefdb866d53c"
+                    + "f76cab2868a39b9f7840edce4fef5a82"
+                    + "be67335c77a6068e04112754f27ccf4e"},
+        {"password", "salt", "4096",
+            "d197b1b33db0143e018b12f3d1d1479e"
+                    + "6cdebdcc97c5c0f87f6902e072f457b5"
+                    + "143f30602641b3d55cd335988cb36b84"
+                    + "376060ecd532e039b742a239434af2d5"},
+        {"passwordPASSWORDpassword",
+            "saltSALTsaltSALTsaltSALTsaltSALTsalt", "4096",
+            "8c0511f4c6e597c6ac6315d8f0362e22"
+                    + "5f3c501495ba23b868c005174dc4ee71"
+                    + "115b59f9e60cd9532fa33e0f75aefe30"
+                    + "225c583a186cd82bd4daea9724a3d3b8"}
+    };
+    
+    /**
+     * Derive a key with the JRE's implementation.
+     * 
+     * @param password the ASCII password
+     * @param salt the salt
+     * @param iterations the iteration count
+     * @param length the derived key length in bytes
+     * @return the derived key
+     */
+    private static byte[] jdk(char[] password, byte[] salt, int iterations,
+            int length) throws Exception {
+        return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA512")
+                .generateSecret(new PBEKeySpec(
+                        password, salt, iterations, length * 8))
+                .getEncoded();
+    }
+    
+    /**
+     * Derive a key with the pure-Java engine.
+     * 
+     * @param password the ASCII password
+     * @param salt the salt
+     * @param iterations the iteration count
+     * @param length the derived key length in bytes
+     * @return the derived key
+     */
+    private static byte[] derive(char[] password, byte[] salt, int iterations,
+            int length) {
+        byte[] out = new byte[length];
+        PBKDF2HmacSHA512.derive(new String(password).getBytes(
+                StandardCharsets.UTF_8), salt, iterations, out, 0, length);
+        return out;
+    }
+    
+    /**
+     * Get an ASCII password of the specified length.
+     * 
+     * @param random the random source
+     * @param length the password length
+     * @return the password
+     */
+    private static char[] password(Random random, int length) {
+        char[] password = new char[length];
+        for (int i = 0; i < length; i++) {
+            password[i] = (char)(' ' + random.nextInt(95));
+        }
+        return password;
+    }
+    
+    @Test
+    public void testKnownAnswerVectors() {
+        for (String[] v : VECTORS) {
+            byte[] expected = HexFormat.of().parseHex(v[3]);
+            assertArrayEquals(expected, derive(v[0].toCharArray(),
+                    v[1].getBytes(StandardCharsets.US_ASCII),
+                    Integer.parseInt(v[2]), expected.length),
+                    v[0] + " / " + v[1] + " / " + v[2]);
+        }
+    }
+    
+    @Test
+    public void testPasswordLengths() throws Exception {
+        // passwords shorter than, equal to and longer than the 128-byte
+        // block, which are hashed first
+        final Random random = new Random(1);
+        for (int length : new int[] {0, 1, 64, 127, 128, 129, 200, 256}) {
+            for (int iterations : new int[] {1, 2, 1000}) {
+                char[] password = password(random, length);
+                byte[] salt = new byte[16];
+                random.nextBytes(salt);
+                assertArrayEquals(jdk(password, salt, iterations, 64),
+                        derive(password, salt, iterations, 64),
+                        "password length " + length + ", iterations "
+                                + iterations);
+            }
+        }
+    }
+    
+    @Test
+    public void testMultiBlockOutput() throws Exception {
+        final Random random = new Random(2);
+        for (int length : new int[] {1, 32, 63, 64, 65, 128, 130, 200}) {
+            char[] password = password(random, 12);
+            byte[] salt = new byte[1 + random.nextInt(64)];
+            random.nextBytes(salt);
+            assertArrayEquals(jdk(password, salt, 100, length),
+                    derive(password, salt, 100, length),
+                    "derived key length " + length);
+        }
+    }
+    
+    @Test
+    public void testOutputOffset() {
+        final char[] password = "password".toCharArray();
+        final byte[] salt = "salt".getBytes(StandardCharsets.US_ASCII);
+        final byte[] expected = derive(password, salt, 2, 64);
+        final byte[] out = new byte[80];
+        Arrays.fill(out, (byte)0x55);
+        PBKDF2HmacSHA512.derive("password".getBytes(StandardCharsets.UTF_8),
+                salt, 2, out, 7, 64);
+        assertArrayEquals(expected, Arrays.copyOfRange(out, 7, 71));
+        for (int i = 0; i < out.length; i++) {
+            if (i < 7 || i >= 71) {
+                assertEquals(0x55, out[i], "byte " + i + " overwritten");
+            }
+        }
+    }
+    
+    @Test
+    public void testRandomInputs() throws Exception {
+        final Random random = new Random(3);
+        for (int i = 0; i < 500; i++) {
+            char[] password = password(random, random.nextInt(300));
+            byte[] salt = new byte[1 + random.nextInt(200)];
+            random.nextBytes(salt);
+            int iterations = 1 + random.nextInt(20);
+            int length = 1 + random.nextInt(200);
+            assertArrayEquals(jdk(password, salt, iterations, length),
+                    derive(password, salt, iterations, length),
+                    "case " + i);
+        }
+    }
+    
+    @Test
+    public void testProviderEngines() throws Exception {
+        final byte[] salt = new byte[16];
+        new Random(4).nextBytes(salt);
+        PBKDF2HashProvider jce = new PBKDF2HashProvider(1000);
+        PBKDF2HashProvider pure = new PBKDF2HashProvider(1000);
+        pure.setEngine(PBKDF2HashProvider.Engine.JAVA);
+        char[] password1 = "correct horse battery staple".toCharArray();
+        char[] password2 = password1.clone();
+        assertArrayEquals(jce.hash(password1, salt),
+                pure.hash(password2, salt));
+        assertEquals("****************************", new String(password2));
+    }
+}
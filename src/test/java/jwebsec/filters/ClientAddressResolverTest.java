@@ -0,0 +1,202 @@
+package jwebsec.filters;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import jwebsec.IPAddress;
+import jwebsec.IPPrefixTrie;
+import jwebsec.filters.ClientAddressResolver.ForwardedHeader;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * <code>ClientAddressResolverTest</code> checks client address resolution
+ * from spoofed, malformed and oversized forwarding chains.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public class ClientAddressResolverTest {
+    
+    /* Trusted proxies used by all tests. */
+    private static final IPPrefixTrie PROXIES = IPPrefixTrie.builder()
+            .add("10.0.0.0/8")
+            .add("2001:db8:ffff::/48")
+            .build();
+    
+    /* Remote address of a trusted proxy. */
+    private static final IPAddress PROXY = IPAddress.parse("10.0.0.1");
+    
+    private final ClientAddressResolver xff = new ClientAddressResolver(
+            PROXIES, ForwardedHeader.X_FORWARDED_FOR);
+    private final ClientAddressResolver forwarded = new ClientAddressResolver(
+            PROXIES, ForwardedHeader.FORWARDED);
+    
+    /**
+     * Resolve a client address from one header value.
+     * 
+     * @param resolver the resolver
+     * @param value the header value
+     * @return the resolved address text
+     */
+    private static String resolve(
+            ClientAddressResolver resolver, String value) {
+        return resolver.resolve(PROXY, List.of(value)).toString();
+    }
+    
+    @Test
+    public void testUntrustedRemoteIgnoresHeader() {
+        IPAddress remote = IPAddress.parse("198.51.100.9");
+        assertEquals(remote, xff.resolve(remote, List.of("192.0.2.1")));
+        assertEquals(remote,
+                forwarded.resolve(remote, List.of("for=192.0.2.1")));
+    }
+    
+    @Test
+    public void testForgedLeftHandEntries() {
+        assertEquals("198.51.100.7",
+                resolve(xff, "1.2.3.4, 198.51.100.7, 10.0.0.2"));
+        assertEquals("198.51.100.7",
+                resolve(xff, "10.9.9.9, 198.51.100.7, 10.0.0.2"));
+        assertEquals("198.51.100.7",
+                resolve(xff, "garbage, 198.51.100.7"));
+        assertEquals("198.51.100.7", xff.resolve(PROXY,
+                List.of("1.2.3.4", "198.51.100.7, 10.0.0.2")).toString());
+        assertEquals("198.51.100.7", resolve(forwarded,
+                "for=1.2.3.4, for=198.51.100.7;proto=https, for=10.0.0.2"));
+    }
+    
+    @Test
+    public void testMalformedHopsUseNearestTrustedHop() {
+        assertEquals("10.0.0.2", resolve(xff, "203.0.113.5, bogus, 10.0.0.2"));
+        assertEquals("10.0.0.2", resolve(xff, "203.0.113.5, , 10.0.0.2"));
+        assertEquals("10.0.0.1", resolve(xff, "203.0.113.5, 10.0.0.2,"));
+        assertEquals("10.0.0.1", resolve(xff, "bogus"));
+        assertEquals("10.0.0.1", resolve(xff, ""));
+        assertEquals("10.0.0.1", resolve(xff, "198.51.100.7:70000"));
+        assertEquals("10.0.0.1", resolve(xff, "198.51.100.7:"));
+        assertEquals("10.0.0.1", resolve(xff, "198.51.100.07"));
+        // fullwidth digit two
+        assertEquals("10.0.0.1", resolve(xff, "\uff12001:db8::1"));
+        assertEquals("10.0.0.2",
+                resolve(forwarded, "for=_hidden, for=10.0.0.2"));
+        assertEquals("10.0.0.2",
+                resolve(forwarded, "for=unknown, for=10.0.0.2"));
+        assertEquals("10.0.0.2",
+                resolve(forwarded, "proto=https, for=10.0.0.2"));
+        assertEquals("10.0.0.2",
+                resolve(forwarded, "for=\"19\\2.0.2.1\", for=10.0.0.2"));
+        assertEquals("10.0.0.2",
+                resolve(forwarded, "for=\"192.0.2.1, for=10.0.0.2"));
+    }
+    
+    @Test
+    public void testAllTrustedUsesLeftmostHop() {
+        assertEquals("10.0.0.3", resolve(xff, "10.0.0.3, 10.0.0.2"));
+        assertEquals("2001:db8:ffff::3",
+                resolve(xff, "2001:db8:ffff::3, 10.0.0.2"));
+    }
+    
+    @Test
+    public void testMaxHops() {
+        ClientAddressResolver resolver = new ClientAddressResolver(
+                PROXIES, ForwardedHeader.X_FORWARDED_FOR, 3);
+        assertEquals("198.51.100.7",
+                resolve(resolver, "198.51.100.7, 10.0.0.3, 10.0.0.2"));
+        // the fourth hop is not scanned, the third is the nearest
+        assertEquals("10.0.0.4", resolve(resolver,
+                "198.51.100.7, 10.0.0.4, 10.0.0.3, 10.0.0.2"));
+        assertEquals("10.0.0.4", resolver.resolve(PROXY, List.of(
+                "198.51.100.7, 10.0.0.4", "10.0.0.3, 10.0.0.2")).toString());
+        // the default limit of 20 ends at 10.0.3.212 in a chain of 1,000
+        StringBuilder sb = new StringBuilder("198.51.100.7");
+        for (int i = 0; i < 1000; i++) {
+            sb.append(", 10.0.").append(i >>> 8).append('.').append(i & 0xFF);
+        }
+        assertEquals("10.0.3.212", resolve(xff, sb.toString()));
+    }
+    
+    @Test
+    public void testIPv6WithPorts() {
+        assertEquals("2001:db8::1", resolve(xff, "[2001:db8::1]:8080"));
+        assertEquals("2001:db8::1", resolve(xff, "[2001:db8::1]"));
+        assertEquals("2001:db8::1", resolve(xff, "2001:db8::1"));
+        assertEquals("2001:db8::1",
+                resolve(xff, "[2001:db8::1]:443, [2001:db8:ffff::2]:80"));
+        assertEquals("198.51.100.7", resolve(xff, "198.51.100.7:443"));
+        assertEquals("10.0.0.1", resolve(xff, "[2001:db8::1]:65536"));
+        assertEquals("10.0.0.1", resolve(xff, "[2001:db8::1"));
+        assertEquals("10.0.0.1", resolve(xff, "[2001:db8::1]8080"));
+        assertEquals("10.0.0.1", resolve(xff, "[198.51.100.7:80]"));
+        assertEquals("2001:db8:cafe::17", resolve(forwarded,
+                "for=192.0.2.60;proto=http;by=203.0.113.43, "
+                        + "For=\"[2001:db8:cafe::17]:4711\""));
+        assertEquals("2001:db8:cafe::17", resolve(forwarded,
+                "for=\"[2001:db8:cafe::17]\", for=\"[2001:db8:ffff::1]\""));
+    }
+    
+    @Test
+    public void testResolveCachesAddress() {
+        Map<String, Object> attributes = new HashMap<>();
+        HttpServletRequest request = (HttpServletRequest)
+                Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {HttpServletRequest.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getRemoteAddr" -> "10.0.0.1";
+                    case "getHeaders" -> Collections.enumeration(
+                            "X-Forwarded-For".equals(args[0]) ?
+                                    List.of("1.2.3.4, 198.51.100.7") :
+                                    List.of());
+                    case "getAttribute" -> attributes.get(args[0]);
+                    case "setAttribute" -> attributes.put(
+                            (String)args[0], args[1]);
+                    default -> null;
+                });
+        assertEquals("198.51.100.7", xff.resolve(request).toString());
+        assertEquals("198.51.100.7",
+                ClientAddressResolver.getClientAddress(request).toString());
+        assertEquals(IPAddress.parse("198.51.100.7"), attributes.get(
+                ClientAddressResolver.CLIENT_ADDRESS_ATTRIBUTE));
+    }
+    
+    @Test
+    public void testFuzz() {
+        // random chains never throw, and once a chain resolves to an
+        // untrusted client, entries forged to its left never change it
+        final String alphabet = "0123456789abcdefABCDEF:.[]\", ;=_\\\tfor";
+        final String[] pieces = {"10.0.0.2", "198.51.100.7", "[2001:db8::1]",
+            "2001:db8:ffff::2", ":8080", "for=", "\"", ", ", ";", "unknown"};
+        final Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int n = random.nextInt(12);
+            for (int k = 0; k < n; k++) {
+                if (random.nextBoolean()) {
+                    sb.append(pieces[random.nextInt(pieces.length)]);
+                } else {
+                    sb.append(alphabet.charAt(
+                            random.nextInt(alphabet.length())));
+                }
+            }
+            String value = sb.toString();
+            for (ClientAddressResolver resolver :
+                    new ClientAddressResolver[] {xff, forwarded}) {
+                IPAddress client = resolver.resolve(PROXY, List.of(value));
+                assertNotNull(client, value);
+                if (!PROXIES.contains(client)) {
+                    assertEquals(client, resolver.resolve(PROXY,
+                            List.of("1.2.3.4, for=5.6.7.8, " + value)),
+                            value);
+                }
+            }
+        }
+    }
+}
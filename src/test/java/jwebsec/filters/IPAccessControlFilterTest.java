@@ -0,0 +1,117 @@
+package jwebsec.filters;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * <code>IPAccessControlFilterTest</code> checks that allowed and local
+ * clients pass the filter and that other clients are refused.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public class IPAccessControlFilterTest {
+    
+    private final AtomicInteger passed = new AtomicInteger();
+    private final AtomicInteger refused = new AtomicInteger();
+    
+    /**
+     * Create a filter from init parameters.
+     * 
+     * @param params the init parameters
+     * @return the filter
+     * @throws Exception if the filter cannot be initialized
+     */
+    private static IPAccessControlFilter createFilter(
+            Map<String, String> params) throws Exception {
+        IPAccessControlFilter filter = new IPAccessControlFilter();
+        filter.init((FilterConfig)Proxy.newProxyInstance(
+                IPAccessControlFilterTest.class.getClassLoader(),
+                new Class<?>[] {FilterConfig.class},
+                (proxy, method, args) ->
+                        "getInitParameter".equals(method.getName()) ?
+                                params.get((String)args[0]) : null));
+        return filter;
+    }
+    
+    /**
+     * Pass a request through a filter.
+     * 
+     * @param filter the filter
+     * @param remote the remote address text
+     * @param local the local address text
+     * @throws Exception if the filter fails
+     */
+    private void request(IPAccessControlFilter filter, String remote,
+            String local) throws Exception {
+        ClassLoader loader = getClass().getClassLoader();
+        HttpServletRequest request = (HttpServletRequest)
+                Proxy.newProxyInstance(loader,
+                new Class<?>[] {HttpServletRequest.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getRemoteAddr" -> remote;
+                    case "getLocalAddr" -> local;
+                    case "getMethod" -> "GET";
+                    case "getRequestURL" ->
+                            new StringBuffer("http://localhost/");
+                    default -> null;
+                });
+        HttpServletResponse response = (HttpServletResponse)
+                Proxy.newProxyInstance(loader,
+                new Class<?>[] {HttpServletResponse.class},
+                (proxy, method, args) -> {
+                    if ("sendError".equals(method.getName())) {
+                        assertEquals(403, args[0]);
+                        refused.incrementAndGet();
+                    }
+                    return null;
+                });
+        FilterChain chain = (req, resp) -> passed.incrementAndGet();
+        filter.doFilter(request, response, chain);
+    }
+    
+    @Test
+    public void testAllowedAndLocalClients() throws Exception {
+        IPAccessControlFilter filter = createFilter(Map.of(
+                "ALLOWED_IP_ADDRESSES", "192.0.2.0/24, ::ffff:10.0.0.0/104",
+                "LOG_BLOCKED_REQUESTS", "false"));
+        request(filter, "192.0.2.9", "198.51.100.1");
+        request(filter, "10.1.2.3", "198.51.100.1");
+        assertEquals(2, passed.get());
+        request(filter, "203.0.113.5", "198.51.100.1");
+        request(filter, "garbage", "198.51.100.1");
+        assertEquals(2, refused.get());
+        // local clients pass while the local address alternates
+        for (int i = 0; i < 3; i++) {
+            request(filter, "127.0.0.1", "127.0.0.1");
+            request(filter, "::1", "0:0:0:0:0:0:0:1");
+            request(filter, "0:0:0:0:0:0:0:1", "::1");
+        }
+        assertEquals(11, passed.get());
+        request(filter, "127.0.0.1", "::1");
+        request(filter, "203.0.113.5", "127.0.0.1");
+        assertEquals(4, refused.get());
+        filter.destroy();
+    }
+    
+    @Test
+    public void testLocalhostCanBeRefused() throws Exception {
+        IPAccessControlFilter filter = createFilter(Map.of(
+                "ALWAYS_ALLOW_LOCALHOST", "false",
+                "LOG_BLOCKED_REQUESTS", "false"));
+        request(filter, "127.0.0.1", "127.0.0.1");
+        assertEquals(0, passed.get());
+        assertEquals(1, refused.get());
+        filter.destroy();
+    }
+}
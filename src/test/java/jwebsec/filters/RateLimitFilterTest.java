@@ -0,0 +1,147 @@
+package jwebsec.filters;
+
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import jwebsec.IPAddress;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * <code>RateLimitFilterTest</code> checks that requests over the limit are
+ * refused with <code>429</code> and a <code>Retry-After</code> header, that
+ * clients behind trusted proxies are limited separately, and that invalid
+ * limits are rejected.
+ * <p>
+ *   &copy;2025 jWebSec. All rights reserved.
+ * </p>
+ * 
+ * @version 0.1.0
+ * @author <a href="mailto:andrew_glasgow.dev@outlook.com">Andrew Glasgow</a>
+ */
+public class RateLimitFilterTest {
+    
+    private final AtomicInteger passed = new AtomicInteger();
+    private final Map<String, String> headers = new HashMap<>();
+    private int status = 0;
+    
+    /**
+     * Create a filter from init parameters.
+     * 
+     * @param params the init parameters
+     * @return the filter
+     * @throws ServletException if the filter cannot be initialized
+     */
+    private static RateLimitFilter createFilter(Map<String, String> params)
+            throws ServletException {
+        RateLimitFilter filter = new RateLimitFilter();
+        filter.init((FilterConfig)Proxy.newProxyInstance(
+                RateLimitFilterTest.class.getClassLoader(),
+                new Class<?>[] {FilterConfig.class},
+                (proxy, method, args) ->
+                        "getInitParameter".equals(method.getName()) ?
+                                params.get((String)args[0]) : null));
+        return filter;
+    }
+    
+    /**
+     * Pass a request through a filter.
+     * 
+     * @param filter the filter
+     * @param remote the remote address text
+     * @param forwardedFor the X-Forwarded-For header value, or null
+     * @throws Exception if the filter fails
+     */
+    private void request(RateLimitFilter filter, String remote,
+            String forwardedFor) throws Exception {
+        ClassLoader loader = getClass().getClassLoader();
+        Map<String, Object> attributes = new HashMap<>();
+        HttpServletRequest request = (HttpServletRequest)
+                Proxy.newProxyInstance(loader,
+                new Class<?>[] {HttpServletRequest.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getRemoteAddr" -> remote;
+                    case "getHeaders" -> Collections.enumeration(
+                            forwardedFor != null
+                                    && "X-Forwarded-For".equals(args[0]) ?
+                                            List.of(forwardedFor) :
+                                            List.<String>of());
+                    case "getAttribute" -> attributes.get(args[0]);
+                    case "setAttribute" -> attributes.put(
+                            (String)args[0], args[1]);
+                    case "getMethod" -> "GET";
+                    case "getRequestURL" ->
+                            new StringBuffer("http://localhost/");
+                    default -> null;
+                });
+        HttpServletResponse response = (HttpServletResponse)
+                Proxy.newProxyInstance(loader,
+                new Class<?>[] {HttpServletResponse.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "setHeader" -> headers.put(
+                                (String)args[0], (String)args[1]);
+                        case "sendError" -> status = (Integer)args[0];
+                        default -> { }
+                    }
+                    return null;
+                });
+        filter.doFilter(request, response,
+                (req, resp) -> passed.incrementAndGet());
+    }
+    
+    @Test
+    public void testLimit() throws Exception {
+        RateLimitFilter filter = createFilter(Map.of(
+                "REQUESTS_PER_SECOND", "0.5", "BURST", "3"));
+        for (int i = 0; i < 3; i++) {
+            request(filter, "192.0.2.1", null);
+        }
+        assertEquals(3, passed.get());
+        assertEquals(0, status);
+        request(filter, "192.0.2.1", null);
+        assertEquals(3, passed.get());
+        assertEquals(429, status);
+        assertEquals("2", headers.get("Retry-After"));
+        request(filter, "192.0.2.2", null);
+        assertEquals(4, passed.get());
+        assertEquals(3, filter.getRateLimiter()
+                .getAllowedCount(IPAddress.parse("192.0.2.1")));
+        filter.destroy();
+        assertEquals(0, filter.getRateLimiter().size());
+    }
+    
+    @Test
+    public void testClientsBehindTrustedProxies() throws Exception {
+        RateLimitFilter filter = createFilter(Map.of(
+                "BURST", "1", "TRUSTED_PROXIES", "10.0.0.0/8"));
+        request(filter, "10.0.0.1", "198.51.100.1");
+        request(filter, "10.0.0.1", "198.51.100.2");
+        request(filter, "10.0.0.2", "198.51.100.3");
+        assertEquals(3, passed.get());
+        // the forwarded address of an untrusted remote is ignored
+        request(filter, "203.0.113.9", "198.51.100.4");
+        request(filter, "203.0.113.9", "198.51.100.5");
+        assertEquals(4, passed.get());
+        assertEquals(429, status);
+    }
+    
+    @Test
+    public void testInvalidLimits() {
+        for (Map<String, String> params : List.of(
+                Map.of("REQUESTS_PER_SECOND", "0"),
+                Map.of("REQUESTS_PER_SECOND", "fast"),
+                Map.of("BURST", "0"),
+                Map.of("MAX_CLIENTS", "-1"))) {
+            assertThrows(ServletException.class, () -> createFilter(params));
+        }
+    }
+}